@@ -0,0 +1,10 @@
+package com.i3m.analytics.cohort;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Users who entered in one interval, and how many of them returned in each
+ * following interval; {@code retained.get(0)} is the entry interval itself.
+ */
+public record Cohort(LocalDate start, long users, List<Long> retained) {}
@@ -0,0 +1,6 @@
+package com.i3m.analytics.cohort;
+
+/**
+ * Number of users who reached a funnel step.
+ */
+public record FunnelStep(String eventName, long users) {}
@@ -0,0 +1,133 @@
+package com.i3m.analytics.cohort;
+
+import org.roaringbitmap.RoaringBitmap;
+
+import java.util.NavigableMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Users of one tenant as dense int ordinals, with a compressed bitmap of the
+ * users who fired each event name on each day, plus one of the users active on
+ * each day. Bitmaps are mutated under their own monitor; reads copy or combine
+ * them under the same monitor. Adds share a lock that retention takes
+ * exclusively while it forgets users, so a user's ordinal is never dropped
+ * between being looked up and being marked.
+ */
+class TenantUserBitmaps {
+
+    private final ConcurrentHashMap<UUID, Integer> ordinals = new ConcurrentHashMap<>();
+    private final AtomicInteger nextOrdinal = new AtomicInteger();
+    private final ConcurrentHashMap<String, ConcurrentSkipListMap<Long, RoaringBitmap>> byEventName =
+        new ConcurrentHashMap<>();
+    private final ConcurrentSkipListMap<Long, RoaringBitmap> active = new ConcurrentSkipListMap<>();
+    private final ReadWriteLock ordinalLock = new ReentrantReadWriteLock();
+
+    void add(String eventName, UUID userId, long epochDay) {
+        ordinalLock.readLock().lock();
+        try {
+            int ordinal = ordinals.computeIfAbsent(userId, id -> nextOrdinal.getAndIncrement());
+            mark(byEventName.computeIfAbsent(eventName, name -> new ConcurrentSkipListMap<>()), epochDay, ordinal);
+            mark(active, epochDay, ordinal);
+        } finally {
+            ordinalLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Drops every bitmap of a day before {@code firstKeptDay} and forgets the users
+     * left without an active day. Ordinals are not reused.
+     */
+    void dropBefore(long firstKeptDay) {
+        ordinalLock.writeLock().lock();
+        try {
+            byEventName.values().forEach(days -> days.headMap(firstKeptDay).clear());
+            byEventName.values().removeIf(NavigableMap::isEmpty);
+            active.headMap(firstKeptDay).clear();
+            RoaringBitmap remaining = union(null, firstDay(), lastDay());
+            ordinals.values().removeIf(ordinal -> !remaining.contains(ordinal));
+        } finally {
+            ordinalLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Clears a user from the day's bitmap for {@code eventName}, and from the day's
+     * active users unless {@code stillActive}.
+     */
+    void clear(String eventName, UUID userId, long epochDay, boolean stillActive) {
+        Integer ordinal = ordinals.get(userId);
+        if (ordinal == null) {
+            return;
+        }
+        unmark(byEventName.get(eventName), epochDay, ordinal);
+        if (!stillActive) {
+            unmark(active, epochDay, ordinal);
+        }
+    }
+
+    /**
+     * Users who fired {@code eventName} (or any event, when null) on any day in [fromDay, toDay].
+     */
+    RoaringBitmap union(String eventName, long fromDay, long toDay) {
+        RoaringBitmap result = new RoaringBitmap();
+        if (fromDay > toDay) {
+            return result;
+        }
+        for (RoaringBitmap day : days(eventName).subMap(fromDay, true, toDay, true).values()) {
+            synchronized (day) {
+                result.or(day);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Days in [fromDay, toDay] on which {@code eventName} (or any event, when null) was fired.
+     */
+    NavigableMap<Long, RoaringBitmap> days(String eventName, long fromDay, long toDay) {
+        return fromDay > toDay ? new ConcurrentSkipListMap<>() : days(eventName).subMap(fromDay, true, toDay, true);
+    }
+
+    static RoaringBitmap copy(RoaringBitmap bitmap) {
+        synchronized (bitmap) {
+            return bitmap.clone();
+        }
+    }
+
+    long firstDay() {
+        return active.isEmpty() ? 0 : active.firstKey();
+    }
+
+    long lastDay() {
+        return active.isEmpty() ? -1 : active.lastKey();
+    }
+
+    private NavigableMap<Long, RoaringBitmap> days(String eventName) {
+        if (eventName == null) {
+            return active;
+        }
+        NavigableMap<Long, RoaringBitmap> days = byEventName.get(eventName);
+        return days == null ? new ConcurrentSkipListMap<>() : days;
+    }
+
+    private static void unmark(ConcurrentSkipListMap<Long, RoaringBitmap> days, long epochDay, int ordinal) {
+        RoaringBitmap bitmap = days == null ? null : days.get(epochDay);
+        if (bitmap != null) {
+            synchronized (bitmap) {
+                bitmap.remove(ordinal);
+            }
+        }
+    }
+
+    private static void mark(ConcurrentSkipListMap<Long, RoaringBitmap> days, long epochDay, int ordinal) {
+        RoaringBitmap bitmap = days.computeIfAbsent(epochDay, day -> new RoaringBitmap());
+        synchronized (bitmap) {
+            bitmap.add(ordinal);
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package com.i3m.analytics.cohort;
+
+import com.i3m.analytics.dto.AnalyticsEventDto;
+import com.i3m.analytics.query.Granularity;
+import com.i3m.analytics.query.TimeRange;
+import com.i3m.analytics.store.AnalyticsEventStore;
+import com.i3m.analytics.store.EventTime;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-tenant user bitmaps by event name and day, updated on every ingest of an
+ * event with a user. Funnels and retention cohorts are answered with bitmap
+ * unions and intersections, at day resolution, without reading events.
+ */
+@Component
+public class UserBitmapStore {
+
+    private final AnalyticsEventStore eventStore;
+    private final ConcurrentHashMap<UUID, TenantUserBitmaps> tenants = new ConcurrentHashMap<>();
+
+    public UserBitmapStore(AnalyticsEventStore eventStore) {
+        this.eventStore = eventStore;
+    }
+
+    public void record(AnalyticsEventDto event) {
+        if (event.getUserId() == null || event.getEventName() == null) {
+            return;
+        }
+        long epochDay = epochDay(EventTime.toMillis(event.getTimestamp()));
+        tenants.computeIfAbsent(event.getTenantId(), id -> new TenantUserBitmaps())
+            .add(event.getEventName(), event.getUserId(), epochDay);
+    }
+
+    /**
+     * Takes a deleted event, or the previous version of an updated one, back out of
+     * the bitmaps. A bitmap bit does not count events, so the user's bits for the
+     * event's day are re-derived from the events the store still holds for that
+     * user and day. Call after the event store has been changed.
+     */
+    public void remove(AnalyticsEventDto event) {
+        TenantUserBitmaps bitmaps = event.getUserId() == null || event.getEventName() == null
+            ? null : tenants.get(event.getTenantId());
+        if (bitmaps == null) {
+            return;
+        }
+        long epochDay = epochDay(EventTime.toMillis(event.getTimestamp()));
+        LocalDateTime dayStart = EventTime.fromMillis(epochDay * Granularity.DAY.getMillis());
+        LocalDateTime dayEnd = EventTime.fromMillis((epochDay + 1) * Granularity.DAY.getMillis() - 1);
+        boolean stillFired = eventStore.count(event.getTenantId(), dayStart, dayEnd,
+            null, event.getEventName(), event.getUserId()) > 0;
+        if (stillFired) {
+            return;
+        }
+        boolean stillActive = eventStore.count(event.getTenantId(), dayStart, dayEnd,
+            null, null, event.getUserId()) > 0;
+        bitmaps.clear(event.getEventName(), event.getUserId(), epochDay, stillActive);
+    }
+
+    /**
+     * Drops a tenant's day bitmaps for days that end at or before the cutoff, and
+     * forgets the users who no longer appear in any remaining day.
+     */
+    public void dropBefore(UUID tenantId, long cutoffMillis) {
+        TenantUserBitmaps bitmaps = tenants.get(tenantId);
+        if (bitmaps != null) {
+            // Every day before the one holding the cutoff has ended by then
+            bitmaps.dropBefore(epochDay(cutoffMillis));
+        }
+    }
+
+    /**
+     * Counts users through an ordered funnel. A user enters on the first day in the
+     * range they fired the first step, and reaches each later step if they fired it
+     * within {@code windowDays} days of reaching the previous one. Steps on the same
+     * day count as in order.
+     */
+    public List<FunnelStep> funnel(UUID tenantId, TimeRange range, List<String> steps, int windowDays) {
+        if (steps == null || steps.isEmpty()) {
+            throw new IllegalArgumentException("At least one funnel step is required");
+        }
+        if (windowDays < 0) {
+            throw new IllegalArgumentException("windowDays must not be negative");
+        }
+        List<FunnelStep> result = new ArrayList<>(steps.size());
+        TenantUserBitmaps bitmaps = tenants.get(tenantId);
+        if (bitmaps == null) {
+            steps.forEach(step -> result.add(new FunnelStep(step, 0)));
+            return result;
+        }
+        long firstDay = firstDay(bitmaps, range);
+        long lastDay = lastDay(bitmaps, range);
+
+        // Users reaching the current step, keyed by the day they reached it
+        NavigableMap<Long, RoaringBitmap> reached = firstOccurrences(bitmaps, steps.get(0), firstDay, lastDay);
+        result.add(new FunnelStep(steps.get(0), cardinality(reached)));
+        long horizon = lastDay;
+        for (String step : steps.subList(1, steps.size())) {
+            horizon += windowDays;
+            NavigableMap<Long, RoaringBitmap> next = new TreeMap<>();
+            RoaringBitmap seen = new RoaringBitmap();
+            for (Map.Entry<Long, RoaringBitmap> day : bitmaps.days(step, firstDay, horizon).entrySet()) {
+                RoaringBitmap eligible = new RoaringBitmap();
+                reached.subMap(day.getKey() - windowDays, true, day.getKey(), true).values().forEach(eligible::or);
+                if (eligible.isEmpty()) {
+                    continue;
+                }
+                RoaringBitmap converted = TenantUserBitmaps.copy(day.getValue());
+                converted.and(eligible);
+                converted.andNot(seen);
+                if (!converted.isEmpty()) {
+                    next.put(day.getKey(), converted);
+                    seen.or(converted);
+                }
+            }
+            reached = next;
+            result.add(new FunnelStep(step, seen.getLongCardinality()));
+        }
+        return result;
+    }
+
+    /**
+     * Groups users into cohorts by the interval in which they first fired
+     * {@code cohortEvent} within the range, and counts how many fired
+     * {@code returnEvent} (any event, when null) in each of the following intervals.
+     */
+    public List<Cohort> cohorts(UUID tenantId, TimeRange range, String cohortEvent, String returnEvent,
+                                int intervalDays, int periods) {
+        if (cohortEvent == null || cohortEvent.isBlank()) {
+            throw new IllegalArgumentException("cohortEvent is required");
+        }
+        if (intervalDays <= 0 || periods <= 0) {
+            throw new IllegalArgumentException("interval and periods must be positive");
+        }
+        List<Cohort> result = new ArrayList<>();
+        TenantUserBitmaps bitmaps = tenants.get(tenantId);
+        if (bitmaps == null) {
+            return result;
+        }
+        long firstDay = firstDay(bitmaps, range);
+        long lastDay = lastDay(bitmaps, range);
+        long dataEnd = bitmaps.lastDay();
+        RoaringBitmap seen = new RoaringBitmap();
+        for (long start = firstDay; start <= lastDay; start += intervalDays) {
+            RoaringBitmap cohort = bitmaps.union(cohortEvent, start, Math.min(start + intervalDays - 1, lastDay));
+            cohort.andNot(seen);
+            seen.or(cohort);
+            if (cohort.isEmpty()) {
+                continue;
+            }
+            List<Long> retained = new ArrayList<>(periods);
+            for (int period = 0; period < periods; period++) {
+                long periodStart = start + (long) period * intervalDays;
+                if (periodStart > dataEnd) {
+                    break;
+                }
+                RoaringBitmap returned = bitmaps.union(returnEvent, periodStart, periodStart + intervalDays - 1);
+                retained.add((long) RoaringBitmap.andCardinality(cohort, returned));
+            }
+            result.add(new Cohort(LocalDate.ofEpochDay(start), cohort.getLongCardinality(), retained));
+        }
+        return result;
+    }
+
+    private static NavigableMap<Long, RoaringBitmap> firstOccurrences(TenantUserBitmaps bitmaps, String eventName,
+                                                                      long fromDay, long toDay) {
+        NavigableMap<Long, RoaringBitmap> first = new TreeMap<>();
+        RoaringBitmap seen = new RoaringBitmap();
+        bitmaps.days(eventName, fromDay, toDay).forEach((day, bitmap) -> {
+            RoaringBitmap entered = TenantUserBitmaps.copy(bitmap);
+            entered.andNot(seen);
+            if (!entered.isEmpty()) {
+                first.put(day, entered);
+                seen.or(entered);
+            }
+        });
+        return first;
+    }
+
+    private static long cardinality(NavigableMap<Long, RoaringBitmap> days) {
+        long users = 0;
+        for (RoaringBitmap bitmap : days.values()) {
+            users += bitmap.getLongCardinality();
+        }
+        return users;
+    }
+
+    private static long firstDay(TenantUserBitmaps bitmaps, TimeRange range) {
+        return range.startMillis() == Long.MIN_VALUE ? bitmaps.firstDay() : epochDay(range.startMillis());
+    }
+
+    private static long lastDay(TenantUserBitmaps bitmaps, TimeRange range) {
+        return range.endMillis() == Long.MAX_VALUE ? bitmaps.lastDay() : epochDay(range.endMillis());
+    }
+
+    private static long epochDay(long timestampMillis) {
+        return Math.floorDiv(timestampMillis, Granularity.DAY.getMillis());
+    }
+}
@@ -1,16 +1,30 @@
 package com.i3m.analytics.controller;
 
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.i3m.analytics.dto.AnalyticsEventDto;
 import com.i3m.analytics.dto.DashboardDto;
+import com.i3m.analytics.export.ExportFormat;
+import com.i3m.analytics.ingest.IngestResult;
 import com.i3m.analytics.service.AnalyticsService;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import reactor.core.publisher.Flux;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
@@ -20,9 +34,17 @@ import java.util.UUID;
 @CrossOrigin(origins = "*")
 public class AnalyticsController {
 
+    private static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+
     @Autowired
     private AnalyticsService analyticsService;
 
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${analytics.ingest.max-batch-events:5000}")
+    private int maxBatchEvents;
+
     @GetMapping("/health")
     public ResponseEntity<Map<String, Object>> health() {
         return ResponseEntity.ok(Map.of(
@@ -35,23 +57,80 @@ public class AnalyticsController {
     }
 
     // Event Tracking
+    // A retry (same id or Idempotency-Key) returns the event accepted earlier with 200;
+    // an id taken by another tenant's event is refused with 409
     @PostMapping("/events")
     public ResponseEntity<AnalyticsEventDto> trackEvent(
             @RequestHeader("X-Tenant-ID") UUID tenantId,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
             @Valid @RequestBody AnalyticsEventDto eventDto) {
-        AnalyticsEventDto tracked = analyticsService.trackEvent(tenantId, eventDto);
-        return new ResponseEntity<>(tracked, HttpStatus.CREATED);
+        IngestResult tracked = analyticsService.trackEvent(tenantId, eventDto, idempotencyKey);
+        if (!tracked.rejected().isEmpty()) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+        HttpStatus status = tracked.duplicates() > 0 ? HttpStatus.OK : HttpStatus.CREATED;
+        return new ResponseEntity<>(tracked.events().get(0), status);
+    }
+
+    @PostMapping(value = "/events/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<Map<String, Object>> trackEvents(
+            @RequestHeader("X-Tenant-ID") UUID tenantId,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
+            @RequestBody List<AnalyticsEventDto> eventDtos) {
+        return batchAccepted(tenantId, eventDtos, idempotencyKey);
+    }
+
+    @PostMapping(value = "/events/batch", consumes = APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<Map<String, Object>> trackEventsNdjson(
+            @RequestHeader("X-Tenant-ID") UUID tenantId,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
+            InputStream body) throws IOException {
+        List<AnalyticsEventDto> eventDtos = new ArrayList<>();
+        try (MappingIterator<AnalyticsEventDto> lines =
+                 objectMapper.readerFor(AnalyticsEventDto.class).readValues(body)) {
+            while (lines.hasNextValue()) {
+                eventDtos.add(lines.nextValue());
+                if (eventDtos.size() > maxBatchEvents) {
+                    break;
+                }
+            }
+        }
+        return batchAccepted(tenantId, eventDtos, idempotencyKey);
+    }
+
+    private ResponseEntity<Map<String, Object>> batchAccepted(UUID tenantId, List<AnalyticsEventDto> eventDtos,
+                                                              String idempotencyKey) {
+        if (eventDtos.size() > maxBatchEvents) {
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).body(Map.of(
+                "error", "Batch exceeds " + maxBatchEvents + " events",
+                "timestamp", LocalDateTime.now()));
+        }
+        IngestResult tracked = analyticsService.trackEvents(tenantId, eventDtos, idempotencyKey);
+        return new ResponseEntity<>(Map.of(
+            "accepted", tracked.events().size() - tracked.duplicates(),
+            "duplicates", tracked.duplicates(),
+            "rejectedIds", tracked.rejected(),
+            "eventIds", tracked.events().stream().map(AnalyticsEventDto::getId).toList(),
+            "timestamp", LocalDateTime.now()), HttpStatus.CREATED);
     }
 
+    // Offset pages by default; passing cursor (empty for the first page) switches
+    // to keyset pages that carry a nextCursor token instead
     @GetMapping("/events")
-    public ResponseEntity<Page<AnalyticsEventDto>> getEvents(
+    public ResponseEntity<?> getEvents(
             @RequestHeader("X-Tenant-ID") UUID tenantId,
             @RequestParam(required = false) String eventType,
             @RequestParam(required = false) String eventName,
             @RequestParam(required = false) UUID userId,
             @RequestParam(required = false) String startDate,
             @RequestParam(required = false) String endDate,
+            @RequestParam(required = false) String cursor,
             Pageable pageable) {
+        if (cursor != null) {
+            Map<String, Object> page = analyticsService.getEventPage(
+                tenantId, eventType, eventName, userId, startDate, endDate, cursor, pageable.getPageSize());
+            return ResponseEntity.ok(page);
+        }
         Page<AnalyticsEventDto> events = analyticsService.getEvents(
             tenantId, eventType, eventName, userId, startDate, endDate, pageable);
         return ResponseEntity.ok(events);
@@ -86,6 +165,21 @@ public class AnalyticsController {
         return ResponseEntity.ok(dashboard);
     }
 
+    @GetMapping("/dashboards/{id}/data")
+    public ResponseEntity<Map<String, Object>> getDashboardWidgets(
+            @RequestHeader("X-Tenant-ID") UUID tenantId,
+            @PathVariable UUID id) {
+        Map<String, Object> data = analyticsService.getDashboardWidgets(tenantId, id);
+        return ResponseEntity.ok(data);
+    }
+
+    @GetMapping(value = "/dashboards/{id}/render", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<Object>> streamDashboard(
+            @RequestHeader("X-Tenant-ID") UUID tenantId,
+            @PathVariable UUID id) {
+        return analyticsService.streamDashboard(tenantId, id);
+    }
+
     @PutMapping("/dashboards/{id}")
     public ResponseEntity<DashboardDto> updateDashboard(
             @RequestHeader("X-Tenant-ID") UUID tenantId,
@@ -115,8 +209,9 @@ public class AnalyticsController {
     public ResponseEntity<Map<String, Object>> getKPIs(
             @RequestHeader("X-Tenant-ID") UUID tenantId,
             @RequestParam(required = false) String timeRange,
-            @RequestParam(required = false) String[] kpiNames) {
-        Map<String, Object> kpis = analyticsService.getKPIs(tenantId, timeRange, kpiNames);
+            @RequestParam(required = false) String[] kpiNames,
+            @RequestParam(defaultValue = "false") boolean exact) {
+        Map<String, Object> kpis = analyticsService.getKPIs(tenantId, timeRange, kpiNames, exact);
         return ResponseEntity.ok(kpis);
     }
 
@@ -124,13 +219,65 @@ public class AnalyticsController {
     public ResponseEntity<Map<String, Object>> getMetrics(
             @RequestHeader("X-Tenant-ID") UUID tenantId,
             @RequestParam(required = false) String metricType,
+            @RequestParam(required = false) String metric,
             @RequestParam(required = false) String timeRange,
-            @RequestParam(required = false) String aggregation) {
+            @RequestParam(required = false) String aggregation,
+            @RequestParam(defaultValue = "false") boolean exact,
+            @RequestParam(required = false) String eventName) {
         Map<String, Object> metrics = analyticsService.getMetrics(
-            tenantId, metricType, timeRange, aggregation);
+            tenantId, metricType != null ? metricType : metric, timeRange, aggregation, exact, eventName);
         return ResponseEntity.ok(metrics);
     }
 
+    @GetMapping("/groupby")
+    public ResponseEntity<Map<String, Object>> getGroupBy(
+            @RequestHeader("X-Tenant-ID") UUID tenantId,
+            @RequestParam List<String> dimensions,
+            @RequestParam(required = false) String filter,
+            @RequestParam(required = false) String timeRange,
+            @RequestParam(required = false) String granularity,
+            @RequestParam(defaultValue = "0") int limit) {
+        Map<String, Object> table = analyticsService.getGroupBy(
+            tenantId, dimensions, filter, timeRange, granularity, limit);
+        return ResponseEntity.ok(table);
+    }
+
+    @GetMapping("/funnel")
+    public ResponseEntity<Map<String, Object>> getFunnel(
+            @RequestHeader("X-Tenant-ID") UUID tenantId,
+            @RequestParam List<String> steps,
+            @RequestParam(required = false) String timeRange,
+            @RequestParam(defaultValue = "7") int windowDays) {
+        Map<String, Object> funnel = analyticsService.getFunnel(tenantId, steps, timeRange, windowDays);
+        return ResponseEntity.ok(funnel);
+    }
+
+    @GetMapping("/cohorts")
+    public ResponseEntity<Map<String, Object>> getCohorts(
+            @RequestHeader("X-Tenant-ID") UUID tenantId,
+            @RequestParam String cohortEvent,
+            @RequestParam(required = false) String returnEvent,
+            @RequestParam(required = false) String timeRange,
+            @RequestParam(defaultValue = "day") String interval,
+            @RequestParam(defaultValue = "8") int periods) {
+        Map<String, Object> cohorts = analyticsService.getCohorts(
+            tenantId, cohortEvent, returnEvent, timeRange, interval, periods);
+        return ResponseEntity.ok(cohorts);
+    }
+
+    @GetMapping("/timeseries")
+    public ResponseEntity<Map<String, Object>> getTimeSeries(
+            @RequestHeader("X-Tenant-ID") UUID tenantId,
+            @RequestParam(required = false) String eventType,
+            @RequestParam(required = false) String eventName,
+            @RequestParam(required = false) String timeRange,
+            @RequestParam(required = false) String granularity,
+            @RequestParam(required = false) String groupBy) {
+        Map<String, Object> timeSeries = analyticsService.getTimeSeries(
+            tenantId, eventType, eventName, timeRange, granularity, groupBy);
+        return ResponseEntity.ok(timeSeries);
+    }
+
     @GetMapping("/reports")
     public ResponseEntity<Map<String, Object>> getReports(
             @RequestHeader("X-Tenant-ID") UUID tenantId,
@@ -154,29 +301,44 @@ public class AnalyticsController {
     // Real-time Analytics
     @GetMapping("/realtime/metrics")
     public ResponseEntity<Map<String, Object>> getRealtimeMetrics(
-            @RequestHeader("X-Tenant-ID") UUID tenantId) {
-        Map<String, Object> metrics = analyticsService.getRealtimeMetrics(tenantId);
+            @RequestHeader("X-Tenant-ID") UUID tenantId,
+            @RequestParam(required = false) String[] window) {
+        Map<String, Object> metrics = analyticsService.getRealtimeMetrics(tenantId, window);
         return ResponseEntity.ok(metrics);
     }
 
+    @GetMapping(value = "/realtime/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<Object>> streamRealtime(
+            @RequestHeader("X-Tenant-ID") UUID tenantId) {
+        return analyticsService.streamRealtime(tenantId);
+    }
+
     @GetMapping("/realtime/events")
     public ResponseEntity<List<AnalyticsEventDto>> getRealtimeEvents(
             @RequestHeader("X-Tenant-ID") UUID tenantId,
-            @RequestParam(defaultValue = "100") int limit) {
-        List<AnalyticsEventDto> events = analyticsService.getRealtimeEvents(tenantId, limit);
+            @RequestParam(defaultValue = "100") int limit,
+            @RequestParam(required = false) String eventType,
+            @RequestParam(required = false) UUID userId) {
+        List<AnalyticsEventDto> events = analyticsService.getRealtimeEvents(tenantId, limit, eventType, userId);
         return ResponseEntity.ok(events);
     }
 
     // Data Export
     @GetMapping("/export/events")
-    public ResponseEntity<Map<String, Object>> exportEvents(
+    public ResponseEntity<StreamingResponseBody> exportEvents(
             @RequestHeader("X-Tenant-ID") UUID tenantId,
             @RequestParam(required = false) String format,
             @RequestParam(required = false) String startDate,
             @RequestParam(required = false) String endDate) {
-        Map<String, Object> export = analyticsService.exportEvents(
+        StreamingResponseBody export = analyticsService.exportEvents(
             tenantId, format, startDate, endDate);
-        return ResponseEntity.ok(export);
+        ExportFormat exportFormat = ExportFormat.parse(format);
+        boolean gzip = ExportFormat.isGzip(format);
+        String filename = "events-" + tenantId + "." + exportFormat.getExtension() + (gzip ? ".gz" : "");
+        return ResponseEntity.ok()
+            .contentType(gzip ? MediaType.parseMediaType("application/gzip") : exportFormat.getMediaType())
+            .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"")
+            .body(export);
     }
 
     @GetMapping("/export/dashboard/{id}")
@@ -0,0 +1,178 @@
+package com.i3m.analytics.dashboard;
+
+import com.i3m.analytics.store.EventTime;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Accumulates dashboard views in memory and writes them to
+ * {@code analytics.dashboards} with one batched UPDATE per flush, instead of
+ * one row update per view. Counts are cumulative and only the part not yet
+ * written is flushed, so increments racing a flush are picked up by the next
+ * one and a failed flush is retried in full. Views of dashboards whose row no
+ * longer exists are dropped instead of being retried forever.
+ */
+@Component
+public class DashboardViewCounter {
+
+    private static final Logger log = LoggerFactory.getLogger(DashboardViewCounter.class);
+
+    private static final String UPDATE_SQL = "UPDATE analytics.dashboards "
+        + "SET view_count = COALESCE(view_count, 0) + ?, "
+        + "last_accessed_at = GREATEST(COALESCE(last_accessed_at, ?), ?) "
+        + "WHERE id = ? AND tenant_id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ConcurrentHashMap<UUID, ViewCell> cells = new ConcurrentHashMap<>();
+    private final Timer flushLatency;
+    private final Counter flushedViews;
+    private final Counter failedFlushes;
+
+    public DashboardViewCounter(JdbcTemplate jdbcTemplate,
+                                PlatformTransactionManager transactionManager,
+                                MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.flushLatency = Timer.builder("analytics.dashboard.views.flush.latency").register(meterRegistry);
+        this.flushedViews = Counter.builder("analytics.dashboard.views.flushed").register(meterRegistry);
+        this.failedFlushes = Counter.builder("analytics.dashboard.views.flush.failures").register(meterRegistry);
+        Gauge.builder("analytics.dashboard.views.pending", this, DashboardViewCounter::pendingViews)
+            .description("Views counted in memory but not yet written")
+            .register(meterRegistry);
+        Gauge.builder("analytics.dashboard.views.flush.lag", this, DashboardViewCounter::flushLagSeconds)
+            .description("Age in seconds of the oldest view not yet written")
+            .baseUnit("seconds")
+            .register(meterRegistry);
+    }
+
+    public void recordView(UUID tenantId, UUID dashboardId) {
+        long now = System.currentTimeMillis();
+        ViewCell cell = cells.computeIfAbsent(dashboardId, id -> new ViewCell(tenantId));
+        cell.views.increment();
+        cell.lastAccessMillis.accumulateAndGet(now, Math::max);
+        cell.pendingSinceMillis.compareAndSet(0, now);
+    }
+
+    /**
+     * Returns the views of the dashboard counted in memory but not yet written to
+     * its row, so readers can add them to the persisted count.
+     */
+    public long pending(UUID dashboardId) {
+        ViewCell cell = cells.get(dashboardId);
+        return cell == null ? 0 : Math.max(0, cell.views.sum() - cell.flushed);
+    }
+
+    /**
+     * Discards the counts of a deleted dashboard.
+     */
+    public void forget(UUID dashboardId) {
+        cells.remove(dashboardId);
+    }
+
+    @Scheduled(fixedDelayString = "${analytics.dashboard.view-flush-interval-ms:5000}")
+    public synchronized void flush() {
+        List<Object[]> rows = new ArrayList<>();
+        List<UUID> flushedIds = new ArrayList<>();
+        List<ViewCell> flushedCells = new ArrayList<>();
+        List<Long> deltas = new ArrayList<>();
+        cells.forEach((dashboardId, cell) -> {
+            long delta = cell.views.sum() - cell.flushed;
+            if (delta <= 0) {
+                return;
+            }
+            Timestamp lastAccess = Timestamp.valueOf(EventTime.fromMillis(cell.lastAccessMillis.get()));
+            rows.add(new Object[] {delta, lastAccess, lastAccess, dashboardId, cell.tenantId});
+            flushedIds.add(dashboardId);
+            flushedCells.add(cell);
+            deltas.add(delta);
+        });
+        if (rows.isEmpty()) {
+            return;
+        }
+        long start = System.nanoTime();
+        int[] updated;
+        try {
+            updated = transactionTemplate.execute(status -> jdbcTemplate.batchUpdate(UPDATE_SQL, rows));
+        } catch (RuntimeException e) {
+            log.warn("Failed to flush views of {} dashboards, will retry", rows.size(), e);
+            failedFlushes.increment();
+            return;
+        }
+        flushLatency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < flushedCells.size(); i++) {
+            ViewCell cell = flushedCells.get(i);
+            if (updated != null && i < updated.length && updated[i] == 0) {
+                // The dashboard was deleted, or never persisted for this tenant
+                log.warn("Dropping {} views of missing dashboard {}", deltas.get(i), flushedIds.get(i));
+                cells.remove(flushedIds.get(i), cell);
+                continue;
+            }
+            cell.flushed += deltas.get(i);
+            flushedViews.increment(deltas.get(i));
+            cell.pendingSinceMillis.set(0);
+            if (cell.views.sum() > cell.flushed) {
+                // Views that arrived during the flush are still pending
+                cell.pendingSinceMillis.compareAndSet(0, now);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    private double pendingViews() {
+        long pending = 0;
+        for (ViewCell cell : cells.values()) {
+            pending += Math.max(0, cell.views.sum() - cell.flushed);
+        }
+        return pending;
+    }
+
+    private double flushLagSeconds() {
+        long oldest = Long.MAX_VALUE;
+        for (ViewCell cell : cells.values()) {
+            long since = cell.pendingSinceMillis.get();
+            if (since != 0) {
+                oldest = Math.min(oldest, since);
+            }
+        }
+        return oldest == Long.MAX_VALUE ? 0 : (System.currentTimeMillis() - oldest) / 1000.0;
+    }
+
+    private static final class ViewCell {
+
+        final UUID tenantId;
+        final LongAdder views = new LongAdder();
+        final AtomicLong lastAccessMillis = new AtomicLong();
+        final AtomicLong pendingSinceMillis = new AtomicLong();
+        // Only written by the synchronized flush
+        volatile long flushed;
+
+        ViewCell(UUID tenantId) {
+            this.tenantId = tenantId;
+        }
+    }
+}
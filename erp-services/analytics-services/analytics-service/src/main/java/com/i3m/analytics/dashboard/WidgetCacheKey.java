@@ -0,0 +1,9 @@
+package com.i3m.analytics.dashboard;
+
+import java.util.UUID;
+
+/**
+ * Identifies one widget result: the tenant, digests of the widget definition and
+ * of the dashboard filters, and the refresh-interval bucket it was computed in.
+ */
+public record WidgetCacheKey(UUID tenantId, String widgetHash, String filterHash, long timeBucket) {}
@@ -0,0 +1,62 @@
+package com.i3m.analytics.dashboard;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Bounded pool that evaluates dashboard widgets concurrently, so a dashboard
+ * takes as long as its slowest widget rather than the sum of all of them.
+ * When the queue is full, new widgets fail fast instead of piling up.
+ */
+@Component
+public class WidgetExecutor {
+
+    private final ThreadPoolExecutor executor;
+    private final long defaultTimeoutMillis;
+
+    public WidgetExecutor(@Value("${analytics.dashboard.render-threads:8}") int threads,
+                          @Value("${analytics.dashboard.render-queue-capacity:500}") int queueCapacity,
+                          @Value("${analytics.dashboard.widget-timeout-ms:5000}") long defaultTimeoutMillis) {
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                Thread thread = new Thread(runnable, "analytics-widget-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        this.executor.allowCoreThreadTimeOut(true);
+        this.defaultTimeoutMillis = defaultTimeoutMillis;
+    }
+
+    /**
+     * Runs {@code task} on the pool. The task returns a future of its own (e.g. a
+     * cached result another widget is already computing), which is waited on
+     * without holding a pool thread.
+     */
+    public <T> CompletableFuture<T> submit(Supplier<CompletableFuture<T>> task) {
+        try {
+            return CompletableFuture.supplyAsync(task, executor).thenCompose(Function.identity());
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(new IllegalStateException("Too many widgets being rendered", e));
+        }
+    }
+
+    public long getDefaultTimeoutMillis() {
+        return defaultTimeoutMillis;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,153 @@
+package com.i3m.analytics.dashboard;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.i3m.analytics.dto.DashboardDto;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Caches computed widget results per (tenant, widget definition, filters, refresh
+ * bucket). Time is cut into buckets of the dashboard's refresh interval, so every
+ * viewer inside one bucket shares a result and the next bucket recomputes. The
+ * first miss for a key installs a future that concurrent misses wait on, so a
+ * widget is computed once however many viewers open the dashboard together.
+ * The cache holds at most {@code cache-max-entries} results; past that, expired
+ * results go first and then those closest to expiring.
+ */
+@Component
+public class WidgetResultCache {
+
+    private final ObjectWriter canonicalWriter;
+    private final long defaultTtlMillis;
+    private final int maxEntries;
+    private final ConcurrentHashMap<WidgetCacheKey, Entry> entries = new ConcurrentHashMap<>();
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter evictions;
+
+    public WidgetResultCache(ObjectMapper objectMapper,
+                             MeterRegistry meterRegistry,
+                             @Value("${analytics.dashboard.cache-duration-minutes:15}") long cacheDurationMinutes,
+                             @Value("${analytics.dashboard.cache-max-entries:10000}") int maxEntries) {
+        // Map keys are sorted so equal definitions always hash the same
+        this.canonicalWriter = objectMapper.writer().with(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS);
+        this.defaultTtlMillis = Duration.ofMinutes(cacheDurationMinutes).toMillis();
+        this.maxEntries = maxEntries;
+        this.hits = Counter.builder("analytics.dashboard.cache.hits").register(meterRegistry);
+        this.misses = Counter.builder("analytics.dashboard.cache.misses").register(meterRegistry);
+        this.evictions = Counter.builder("analytics.dashboard.cache.evictions").register(meterRegistry);
+        Gauge.builder("analytics.dashboard.cache.size", entries, Map::size).register(meterRegistry);
+    }
+
+    /**
+     * Returns the cached result for the widget, computing it with {@code loader} on
+     * the calling thread when this caller is the first to miss.
+     */
+    public CompletableFuture<Map<String, Object>> get(UUID tenantId, DashboardDto dashboard,
+                                                      DashboardDto.WidgetDto widget,
+                                                      Supplier<Map<String, Object>> loader) {
+        long ttlMillis = ttlMillis(dashboard);
+        long now = System.currentTimeMillis();
+        long bucket = now / ttlMillis;
+        WidgetCacheKey key = new WidgetCacheKey(tenantId, widgetHash(widget), digest(dashboard.getFilters()), bucket);
+
+        Entry entry = entries.get(key);
+        if (entry != null) {
+            hits.increment();
+            return entry.result;
+        }
+        Entry created = new Entry(new CompletableFuture<>(), (bucket + 1) * ttlMillis);
+        entry = entries.putIfAbsent(key, created);
+        if (entry != null) {
+            hits.increment();
+            return entry.result;
+        }
+        misses.increment();
+        if (entries.size() > maxEntries) {
+            trim(now);
+        }
+        try {
+            created.result.complete(loader.get());
+        } catch (RuntimeException e) {
+            // Failures are not cached; the next viewer retries
+            entries.remove(key, created);
+            created.result.completeExceptionally(e);
+        }
+        return created.result;
+    }
+
+    @Scheduled(fixedDelayString = "${analytics.dashboard.cache-sweep-interval-ms:60000}")
+    public void sweep() {
+        evictExpired(System.currentTimeMillis());
+    }
+
+    private void evictExpired(long now) {
+        entries.values().removeIf(entry -> entry.expiresAtMillis <= now);
+    }
+
+    /**
+     * Drops expired entries and, if that is not enough, the entries closest to
+     * expiring until the cache is back below {@code maxEntries}. It trims to a tenth
+     * below the bound so a full cache does not sort itself on every miss.
+     */
+    private synchronized void trim(long now) {
+        evictExpired(now);
+        int excess = entries.size() - (maxEntries - maxEntries / 10);
+        if (excess <= 0 || entries.size() <= maxEntries) {
+            return;
+        }
+        entries.entrySet().stream()
+            .sorted(Comparator.comparingLong(e -> e.getValue().expiresAtMillis))
+            .limit(excess)
+            .toList()
+            .forEach(e -> entries.remove(e.getKey(), e.getValue()));
+        evictions.increment(excess);
+    }
+
+    private long ttlMillis(DashboardDto dashboard) {
+        Integer refresh = dashboard.getRefreshIntervalSeconds();
+        if (Boolean.FALSE.equals(dashboard.getAutoRefresh()) || refresh == null || refresh <= 0) {
+            return defaultTtlMillis;
+        }
+        return refresh * 1000L;
+    }
+
+    private String widgetHash(DashboardDto.WidgetDto widget) {
+        // Only what affects the result: layout, title and id do not
+        Map<String, Object> definition = new LinkedHashMap<>();
+        definition.put("type", widget.getType());
+        definition.put("config", widget.getConfig());
+        return digest(definition);
+    }
+
+    private String digest(Object value) {
+        try {
+            byte[] json = canonicalWriter.writeValueAsString(value).getBytes(StandardCharsets.UTF_8);
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(json), 0, 16);
+        } catch (JsonProcessingException | NoSuchAlgorithmException e) {
+            throw new IllegalArgumentException("Widget definition cannot be hashed", e);
+        }
+    }
+
+    private record Entry(CompletableFuture<Map<String, Object>> result, long expiresAtMillis) {}
+}
@@ -31,6 +31,17 @@ public class AnalyticsEventDto {
     private Map<String, Object> properties;
     private Map<String, Object> metadata;
     
+    private Double value;
+    private String currency;
+    
+    private String pageUrl;
+    private String referrer;
+    private String deviceType;
+    private String browser;
+    private String os;
+    private String country;
+    private String city;
+    
     private LocalDateTime timestamp;
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
@@ -129,6 +140,78 @@ public class AnalyticsEventDto {
         this.metadata = metadata;
     }
     
+    public Double getValue() {
+        return value;
+    }
+    
+    public void setValue(Double value) {
+        this.value = value;
+    }
+    
+    public String getCurrency() {
+        return currency;
+    }
+    
+    public void setCurrency(String currency) {
+        this.currency = currency;
+    }
+    
+    public String getPageUrl() {
+        return pageUrl;
+    }
+    
+    public void setPageUrl(String pageUrl) {
+        this.pageUrl = pageUrl;
+    }
+    
+    public String getReferrer() {
+        return referrer;
+    }
+    
+    public void setReferrer(String referrer) {
+        this.referrer = referrer;
+    }
+    
+    public String getDeviceType() {
+        return deviceType;
+    }
+    
+    public void setDeviceType(String deviceType) {
+        this.deviceType = deviceType;
+    }
+    
+    public String getBrowser() {
+        return browser;
+    }
+    
+    public void setBrowser(String browser) {
+        this.browser = browser;
+    }
+    
+    public String getOs() {
+        return os;
+    }
+    
+    public void setOs(String os) {
+        this.os = os;
+    }
+    
+    public String getCountry() {
+        return country;
+    }
+    
+    public void setCountry(String country) {
+        this.country = country;
+    }
+    
+    public String getCity() {
+        return city;
+    }
+    
+    public void setCity(String city) {
+        this.city = city;
+    }
+    
     public LocalDateTime getTimestamp() {
         return timestamp;
     }
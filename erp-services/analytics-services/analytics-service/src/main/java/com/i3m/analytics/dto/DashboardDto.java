@@ -29,6 +29,11 @@ public class DashboardDto {
     private List<WidgetDto> widgets;
     private Map<String, Object> settings;
     private Map<String, Object> filters;
+    private Integer refreshIntervalSeconds = 300;
+    private Boolean autoRefresh = true;
+    
+    private long viewCount;
+    private LocalDateTime lastAccessedAt;
     
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
@@ -135,6 +140,38 @@ public class DashboardDto {
         this.filters = filters;
     }
     
+    public Integer getRefreshIntervalSeconds() {
+        return refreshIntervalSeconds;
+    }
+    
+    public void setRefreshIntervalSeconds(Integer refreshIntervalSeconds) {
+        this.refreshIntervalSeconds = refreshIntervalSeconds;
+    }
+    
+    public Boolean getAutoRefresh() {
+        return autoRefresh;
+    }
+    
+    public void setAutoRefresh(Boolean autoRefresh) {
+        this.autoRefresh = autoRefresh;
+    }
+    
+    public long getViewCount() {
+        return viewCount;
+    }
+    
+    public void setViewCount(long viewCount) {
+        this.viewCount = viewCount;
+    }
+    
+    public LocalDateTime getLastAccessedAt() {
+        return lastAccessedAt;
+    }
+    
+    public void setLastAccessedAt(LocalDateTime lastAccessedAt) {
+        this.lastAccessedAt = lastAccessedAt;
+    }
+    
     public LocalDateTime getCreatedAt() {
         return createdAt;
     }
@@ -0,0 +1,101 @@
+package com.i3m.analytics.export;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.i3m.analytics.dto.AnalyticsEventDto;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes events to an output stream one row at a time from a forward-only
+ * iterator, so memory use does not depend on the number of rows exported.
+ */
+@Component
+public class EventExportWriter {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int FLUSH_EVERY_ROWS = 1000;
+
+    private static final String[] CSV_HEADER = {
+        "id", "timestamp", "eventType", "eventName", "userId", "sessionId", "value", "currency",
+        "pageUrl", "referrer", "deviceType", "browser", "os", "country", "city", "properties"
+    };
+
+    private final ObjectMapper objectMapper;
+
+    public EventExportWriter(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    public long write(Iterator<AnalyticsEventDto> events, ExportFormat format, boolean gzip,
+                      OutputStream output) throws IOException {
+        OutputStream target = gzip ? new GZIPOutputStream(output, BUFFER_SIZE) : output;
+        Writer writer = new BufferedWriter(new OutputStreamWriter(target, StandardCharsets.UTF_8), BUFFER_SIZE);
+        long rows = 0;
+        if (format == ExportFormat.CSV) {
+            writer.write(String.join(",", CSV_HEADER));
+            writer.write('\n');
+        }
+        while (events.hasNext()) {
+            AnalyticsEventDto event = events.next();
+            if (format == ExportFormat.CSV) {
+                writeCsvRow(writer, event);
+            } else {
+                writer.write(objectMapper.writeValueAsString(event));
+                writer.write('\n');
+            }
+            if (++rows % FLUSH_EVERY_ROWS == 0) {
+                writer.flush();
+            }
+        }
+        writer.flush();
+        if (target instanceof GZIPOutputStream gzipStream) {
+            gzipStream.finish();
+        }
+        return rows;
+    }
+
+    private void writeCsvRow(Writer writer, AnalyticsEventDto event) throws IOException {
+        Object[] values = {
+            event.getId(), event.getTimestamp(), event.getEventType(), event.getEventName(),
+            event.getUserId(), event.getSessionId(), event.getValue(), event.getCurrency(),
+            event.getPageUrl(), event.getReferrer(), event.getDeviceType(), event.getBrowser(),
+            event.getOs(), event.getCountry(), event.getCity(), json(event.getProperties())
+        };
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            writeCsvValue(writer, values[i]);
+        }
+        writer.write('\n');
+    }
+
+    private String json(Map<String, Object> value) throws IOException {
+        return value == null || value.isEmpty() ? null : objectMapper.writeValueAsString(value);
+    }
+
+    private static void writeCsvValue(Writer writer, Object value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        String text = value.toString();
+        boolean quote = text.indexOf(',') >= 0 || text.indexOf('"') >= 0
+            || text.indexOf('\n') >= 0 || text.indexOf('\r') >= 0;
+        if (!quote) {
+            writer.write(text);
+            return;
+        }
+        writer.write('"');
+        writer.write(text.replace("\"", "\"\""));
+        writer.write('"');
+    }
+}
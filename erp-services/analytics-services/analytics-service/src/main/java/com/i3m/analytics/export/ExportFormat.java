@@ -0,0 +1,51 @@
+package com.i3m.analytics.export;
+
+import org.springframework.http.MediaType;
+
+import java.util.Locale;
+
+/**
+ * Output formats supported by the event export. Any format may be gzipped by
+ * suffixing it with {@code .gz}, e.g. {@code ndjson.gz}.
+ */
+public enum ExportFormat {
+    CSV("csv", MediaType.parseMediaType("text/csv")),
+    NDJSON("ndjson", MediaType.parseMediaType("application/x-ndjson"));
+
+    private final String extension;
+    private final MediaType mediaType;
+
+    ExportFormat(String extension, MediaType mediaType) {
+        this.extension = extension;
+        this.mediaType = mediaType;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    public MediaType getMediaType() {
+        return mediaType;
+    }
+
+    public static ExportFormat parse(String format) {
+        if (format == null || format.isBlank()) {
+            return CSV;
+        }
+        String value = stripGzip(format.trim().toLowerCase(Locale.ROOT));
+        for (ExportFormat candidate : values()) {
+            if (candidate.extension.equals(value)) {
+                return candidate;
+            }
+        }
+        throw new IllegalArgumentException("Unsupported export format: " + format);
+    }
+
+    public static boolean isGzip(String format) {
+        return format != null && format.trim().toLowerCase(Locale.ROOT).endsWith(".gz");
+    }
+
+    private static String stripGzip(String format) {
+        return format.endsWith(".gz") ? format.substring(0, format.length() - 3) : format;
+    }
+}
@@ -0,0 +1,350 @@
+package com.i3m.analytics.ingest;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.i3m.analytics.dto.AnalyticsEventDto;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Group-commit writer for analytics events. Submissions from concurrent requests
+ * are collected in a queue bounded by the number of events it holds, and written
+ * to {@code analytics.analytics_events} with one JDBC batch and one commit per
+ * flush. A flush happens when a batch is full or when the oldest queued
+ * submission has waited for the flush interval. A submission is never split
+ * across flushes, so its events are committed or rolled back together.
+ * Event ids are unique across tenants, so an id the client chose may already be
+ * taken by another tenant's event; such events are skipped by the insert and
+ * reported back to the submitter as not stored.
+ * Updates and deletes of stored events are rare and are written through
+ * directly instead of being queued.
+ */
+@Component
+public class EventBatchWriter {
+
+    private static final Logger log = LoggerFactory.getLogger(EventBatchWriter.class);
+
+    private static final String INSERT_SQL = "INSERT INTO analytics.analytics_events "
+        + "(id, tenant_id, event_type, event_name, user_id, session_id, properties, context, timestamp, "
+        + "referrer, page_url, device_type, browser, os, country, city, value, currency, created_at, status) "
+        + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, 'PENDING') "
+        + "ON CONFLICT DO NOTHING";
+
+    // Only the fields an event update can change
+    private static final String UPDATE_SQL = "UPDATE analytics.analytics_events "
+        + "SET event_type = ?, event_name = ?, user_id = ?, session_id = ?, properties = ?, context = ? "
+        + "WHERE id = ? AND tenant_id = ?";
+
+    // Finds which (id, tenant) pairs of a flush are actually in the table
+    private static final String STORED_SQL = "SELECT id, tenant_id FROM analytics.analytics_events WHERE id = ANY (?)";
+
+    private static final String DELETE_SQL = "DELETE FROM analytics.analytics_events WHERE id = ? AND tenant_id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final BlockingQueue<Submission> queue = new LinkedBlockingQueue<>();
+    // One permit per event slot; a submission takes all of its slots before it is queued
+    private final Semaphore capacity;
+    private final AtomicInteger queuedEvents = new AtomicInteger();
+    private final int queueCapacity;
+    private final int batchSize;
+    private final long flushIntervalNanos;
+    private final long offerTimeoutMillis;
+    private final Timer flushLatency;
+    private final Counter flushedEvents;
+    private final Counter failedEvents;
+    private final Counter conflictedEvents;
+    private final DistributionSummary batchSizes;
+    private volatile boolean running = true;
+    private Thread flusher;
+
+    public EventBatchWriter(JdbcTemplate jdbcTemplate,
+                            PlatformTransactionManager transactionManager,
+                            ObjectMapper objectMapper,
+                            MeterRegistry meterRegistry,
+                            @Value("${analytics.collection.batch-size:1000}") int batchSize,
+                            @Value("${analytics.ingest.queue-capacity:20000}") int queueCapacity,
+                            @Value("${analytics.ingest.flush-interval-ms:50}") long flushIntervalMillis,
+                            @Value("${analytics.ingest.offer-timeout-ms:1000}") long offerTimeoutMillis) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.objectMapper = objectMapper;
+        this.capacity = new Semaphore(queueCapacity, true);
+        this.queueCapacity = queueCapacity;
+        this.batchSize = batchSize;
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+        this.offerTimeoutMillis = offerTimeoutMillis;
+        Gauge.builder("analytics.ingest.queue.depth", queuedEvents, AtomicInteger::get)
+            .description("Events waiting to be flushed")
+            .register(meterRegistry);
+        this.flushLatency = Timer.builder("analytics.ingest.flush.latency")
+            .description("Time to write and commit one batch")
+            .publishPercentiles(0.5, 0.95, 0.99)
+            .register(meterRegistry);
+        this.flushedEvents = Counter.builder("analytics.ingest.events.flushed").register(meterRegistry);
+        this.failedEvents = Counter.builder("analytics.ingest.events.failed").register(meterRegistry);
+        this.conflictedEvents = Counter.builder("analytics.ingest.events.conflicted")
+            .description("Events not stored because another tenant's event holds their id")
+            .register(meterRegistry);
+        this.batchSizes = DistributionSummary.builder("analytics.ingest.batch.size").register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        flusher = new Thread(this::run, "analytics-event-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        flusher.interrupt();
+        flusher.join(TimeUnit.SECONDS.toMillis(10));
+    }
+
+    /**
+     * Queues events for persistence. The returned future completes once they have
+     * been committed in one transaction, with the ids of any events that were not
+     * stored because their id belongs to another tenant's event, or exceptionally
+     * if none were, either because the queue stayed full or because their flush
+     * rolled back.
+     */
+    public CompletableFuture<Set<UUID>> submit(List<AnalyticsEventDto> events) {
+        Submission submission = new Submission(List.copyOf(events), new CompletableFuture<>());
+        if (events.isEmpty()) {
+            submission.future.complete(Set.of());
+            return submission.future;
+        }
+        if (events.size() > queueCapacity) {
+            submission.future.completeExceptionally(new IllegalArgumentException(
+                "Batch of " + events.size() + " events exceeds the ingest queue capacity of " + queueCapacity));
+            return submission.future;
+        }
+        try {
+            if (!running || !capacity.tryAcquire(events.size(), offerTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                submission.future.completeExceptionally(new IllegalStateException("Analytics ingest queue is full"));
+                return submission.future;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            submission.future.completeExceptionally(e);
+            return submission.future;
+        }
+        queuedEvents.addAndGet(events.size());
+        queue.add(submission);
+        // The flusher may have drained its last batch just before the submission was queued
+        if (!running && queue.remove(submission)) {
+            dequeued(submission);
+            submission.future.completeExceptionally(new IllegalStateException("Analytics ingest is shutting down"));
+        }
+        return submission.future;
+    }
+
+    /**
+     * Writes an updated event to the table in its own transaction. An event that is
+     * no longer in the table, e.g. because the table already expired it, is
+     * inserted again so the table matches what queries see.
+     */
+    public void update(AnalyticsEventDto event) {
+        transactionTemplate.executeWithoutResult(status -> {
+            int updated = jdbcTemplate.update(UPDATE_SQL, ps -> {
+                ps.setString(1, event.getEventType());
+                ps.setString(2, event.getEventName());
+                ps.setObject(3, event.getUserId());
+                ps.setString(4, event.getSessionId() == null ? null : event.getSessionId().toString());
+                ps.setString(5, toJson(event.getProperties()));
+                ps.setString(6, toJson(event.getMetadata()));
+                ps.setObject(7, event.getId());
+                ps.setObject(8, event.getTenantId());
+            });
+            if (updated == 0) {
+                jdbcTemplate.update(INSERT_SQL, ps -> bind(ps, event));
+            }
+        });
+    }
+
+    /**
+     * Deletes an event from the table. Returns false if it was not there.
+     */
+    public boolean delete(UUID tenantId, UUID eventId) {
+        return jdbcTemplate.update(DELETE_SQL, eventId, tenantId) > 0;
+    }
+
+    public int getQueueDepth() {
+        return queuedEvents.get();
+    }
+
+    private void run() {
+        List<Submission> batch = new ArrayList<>();
+        while (running || !queue.isEmpty()) {
+            int events = 0;
+            try {
+                Submission first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                events += dequeued(first);
+                long deadline = System.nanoTime() + flushIntervalNanos;
+                // Whole submissions are taken, so a batch may run over by less than one submission
+                while (events < batchSize) {
+                    Submission next = queue.poll();
+                    if (next == null) {
+                        long remaining = deadline - System.nanoTime();
+                        if (remaining <= 0 || !running) {
+                            break;
+                        }
+                        next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                        if (next == null) {
+                            break;
+                        }
+                    }
+                    batch.add(next);
+                    events += dequeued(next);
+                }
+            } catch (InterruptedException e) {
+                // Shutdown requested: keep looping until the queue is drained
+            }
+            if (!batch.isEmpty()) {
+                flush(batch, events);
+                batch.clear();
+            }
+        }
+    }
+
+    private int dequeued(Submission submission) {
+        int size = submission.events.size();
+        queuedEvents.addAndGet(-size);
+        capacity.release(size);
+        return size;
+    }
+
+    private void flush(List<Submission> batch, int size) {
+        List<AnalyticsEventDto> events = new ArrayList<>(size);
+        batch.forEach(submission -> events.addAll(submission.events));
+        long start = System.nanoTime();
+        try {
+            Set<AnalyticsEventDto> conflicts = transactionTemplate.execute(status -> {
+                jdbcTemplate.batchUpdate(INSERT_SQL, events, batchSize, this::bind);
+                // Batched inserts are rewritten into multi-row statements, so update counts
+                // do not tell which rows the conflict clause skipped; look them up instead
+                return conflicts(events);
+            });
+            flushLatency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            flushedEvents.increment(size - conflicts.size());
+            conflictedEvents.increment(conflicts.size());
+            batchSizes.record(size);
+            for (Submission submission : batch) {
+                Set<UUID> rejected = new HashSet<>();
+                for (AnalyticsEventDto event : submission.events) {
+                    if (conflicts.contains(event)) {
+                        rejected.add(event.getId());
+                    }
+                }
+                submission.future.complete(rejected);
+            }
+        } catch (RuntimeException e) {
+            log.error("Failed to flush {} analytics events", size, e);
+            failedEvents.increment(size);
+            batch.forEach(submission -> submission.future.completeExceptionally(e));
+        }
+    }
+
+    /**
+     * Returns the events whose id is not stored for their own tenant, i.e. that the
+     * insert skipped because another tenant's event holds the id.
+     */
+    private Set<AnalyticsEventDto> conflicts(List<AnalyticsEventDto> events) {
+        Object[] ids = events.stream().map(AnalyticsEventDto::getId).distinct().toArray();
+        Map<UUID, Set<UUID>> tenantsById = new HashMap<>();
+        jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(STORED_SQL);
+            ps.setArray(1, con.createArrayOf("uuid", ids));
+            return ps;
+        }, (ResultSet rs) -> {
+            tenantsById.computeIfAbsent(rs.getObject(1, UUID.class), id -> new HashSet<>())
+                .add(rs.getObject(2, UUID.class));
+        });
+        Set<AnalyticsEventDto> conflicts = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (AnalyticsEventDto event : events) {
+            if (!tenantsById.getOrDefault(event.getId(), Set.of()).contains(event.getTenantId())) {
+                conflicts.add(event);
+            }
+        }
+        return conflicts;
+    }
+
+    private void bind(PreparedStatement ps, AnalyticsEventDto event) throws SQLException {
+        ps.setObject(1, event.getId());
+        ps.setObject(2, event.getTenantId());
+        ps.setString(3, event.getEventType());
+        ps.setString(4, event.getEventName());
+        ps.setObject(5, event.getUserId());
+        ps.setString(6, event.getSessionId() == null ? null : event.getSessionId().toString());
+        ps.setString(7, toJson(event.getProperties()));
+        ps.setString(8, toJson(event.getMetadata()));
+        ps.setTimestamp(9, Timestamp.valueOf(event.getTimestamp()));
+        ps.setString(10, event.getReferrer());
+        ps.setString(11, event.getPageUrl());
+        ps.setString(12, event.getDeviceType());
+        ps.setString(13, event.getBrowser());
+        ps.setString(14, event.getOs());
+        ps.setString(15, event.getCountry());
+        ps.setString(16, event.getCity());
+        if (event.getValue() == null) {
+            ps.setNull(17, Types.DOUBLE);
+        } else {
+            ps.setDouble(17, event.getValue());
+        }
+        ps.setString(18, event.getCurrency());
+        ps.setTimestamp(19, Timestamp.valueOf(event.getCreatedAt()));
+    }
+
+    private String toJson(Map<String, Object> value) throws SQLException {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            throw new SQLException("Cannot serialize event attributes", e);
+        }
+    }
+
+    private record Submission(List<AnalyticsEventDto> events, CompletableFuture<Set<UUID>> future) {}
+}
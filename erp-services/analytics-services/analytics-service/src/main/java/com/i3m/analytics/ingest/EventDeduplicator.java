@@ -0,0 +1,121 @@
+package com.i3m.analytics.ingest;
+
+import com.i3m.analytics.sketch.BloomFilter;
+import com.i3m.analytics.sketch.HyperLogLog;
+import com.i3m.analytics.store.AnalyticsEventStore;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Drops retried events by their client-supplied id. Ids accepted recently are
+ * remembered in two rotating Bloom filters, so memory stays fixed however many
+ * events arrive. The older filter is dropped when the newer one has covered a
+ * full window, so ids are remembered for one to two windows; if a window brings
+ * more ids than the filters are sized for, they rotate early instead. A filter
+ * hit is only a suspicion and is confirmed against the event store; ids still
+ * being persisted are tracked exactly, so concurrent retries of one event are
+ * caught too.
+ */
+@Component
+public class EventDeduplicator {
+
+    private final AnalyticsEventStore eventStore;
+    private final long expectedEvents;
+    private final double falsePositiveRate;
+    private final long windowNanos;
+    private final Set<EventKey> inFlight = ConcurrentHashMap.newKeySet();
+    private final Counter duplicates;
+    private final Counter falsePositives;
+    private volatile BloomFilter current;
+    private volatile BloomFilter previous;
+    private volatile long rotatedAt;
+
+    public EventDeduplicator(AnalyticsEventStore eventStore,
+                             MeterRegistry meterRegistry,
+                             @Value("${analytics.ingest.dedup-window-minutes:60}") long windowMinutes,
+                             @Value("${analytics.ingest.dedup-expected-events:1000000}") long expectedEvents,
+                             @Value("${analytics.ingest.dedup-false-positive-rate:0.01}") double falsePositiveRate) {
+        this.eventStore = eventStore;
+        this.expectedEvents = expectedEvents;
+        this.falsePositiveRate = falsePositiveRate;
+        this.windowNanos = TimeUnit.MINUTES.toNanos(windowMinutes);
+        this.current = new BloomFilter(expectedEvents, falsePositiveRate);
+        this.previous = new BloomFilter(expectedEvents, falsePositiveRate);
+        this.rotatedAt = System.nanoTime();
+        this.duplicates = Counter.builder("analytics.ingest.events.duplicate")
+            .description("Events dropped as retries of an already accepted event")
+            .register(meterRegistry);
+        this.falsePositives = Counter.builder("analytics.ingest.dedup.false.positives")
+            .description("Filter hits that the exact check cleared")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Derives a stable event id from an idempotency key, so retries carrying the
+     * same key get the same id.
+     */
+    public static UUID idFor(UUID tenantId, String idempotencyKey) {
+        return UUID.nameUUIDFromBytes((tenantId + ":" + idempotencyKey).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Claims an event id for ingestion. Returns false if the event was already
+     * accepted or is being persisted by another request; otherwise the caller
+     * must hand the claim back through {@link #release}.
+     */
+    public boolean tryClaim(UUID tenantId, UUID eventId) {
+        EventKey key = new EventKey(tenantId, eventId);
+        if (!inFlight.add(key)) {
+            duplicates.increment();
+            return false;
+        }
+        long msb = eventId.getMostSignificantBits() ^ HyperLogLog.hash(tenantId);
+        long lsb = eventId.getLeastSignificantBits();
+        if (current.mightContain(msb, lsb) || previous.mightContain(msb, lsb)) {
+            if (eventStore.contains(tenantId, eventId)) {
+                inFlight.remove(key);
+                duplicates.increment();
+                return false;
+            }
+            falsePositives.increment();
+        }
+        return true;
+    }
+
+    /**
+     * Ends a claim. Persisted ids are remembered for the dedup window; ids that
+     * failed to persist are forgotten so the client can retry them.
+     */
+    public void release(UUID tenantId, UUID eventId, boolean persisted) {
+        if (persisted) {
+            rotateIfDue();
+            current.put(eventId.getMostSignificantBits() ^ HyperLogLog.hash(tenantId),
+                eventId.getLeastSignificantBits());
+        }
+        inFlight.remove(new EventKey(tenantId, eventId));
+    }
+
+    private void rotateIfDue() {
+        if (!current.isSaturated() && System.nanoTime() - rotatedAt < windowNanos) {
+            return;
+        }
+        synchronized (this) {
+            if (!current.isSaturated() && System.nanoTime() - rotatedAt < windowNanos) {
+                return;
+            }
+            previous = current;
+            current = new BloomFilter(expectedEvents, falsePositiveRate);
+            rotatedAt = System.nanoTime();
+        }
+    }
+
+    private record EventKey(UUID tenantId, UUID eventId) {}
+}
@@ -0,0 +1,13 @@
+package com.i3m.analytics.ingest;
+
+import com.i3m.analytics.dto.AnalyticsEventDto;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Outcome of an ingest call: the events in request order, where retried events
+ * are reported as the copy accepted earlier, how many of them were retries, and
+ * the ids of events left out because another tenant's event already holds them.
+ */
+public record IngestResult(List<AnalyticsEventDto> events, int duplicates, List<UUID> rejected) {}
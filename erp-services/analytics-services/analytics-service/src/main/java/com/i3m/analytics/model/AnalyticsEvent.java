@@ -6,7 +6,12 @@ import java.time.LocalDateTime;
 import java.util.UUID;
 
 @Entity
-@Table(name = "analytics_events", schema = "analytics")
+@Table(name = "analytics_events", schema = "analytics",
+       indexes = {
+           // Serve the chunked retention deletes, for one tenant and for all others
+           @Index(name = "idx_analytics_events_tenant_timestamp", columnList = "tenant_id, timestamp"),
+           @Index(name = "idx_analytics_events_timestamp", columnList = "timestamp")
+       })
 public class AnalyticsEvent {
     
     @Id
@@ -37,6 +37,12 @@ public class Dashboard {
     @Column(name = "is_public", nullable = false)
     private Boolean isPublic = false;
     
+    @Column(name = "is_default")
+    private Boolean isDefault = false;
+    
+    @Column(name = "settings", columnDefinition = "TEXT")
+    private String settings; // JSON object of dashboard settings
+    
     @Column(name = "owner_id")
     private UUID ownerId;
     
@@ -54,10 +60,11 @@ public class Dashboard {
     @Enumerated(EnumType.STRING)
     private DashboardStatus status = DashboardStatus.ACTIVE;
     
-    @Column(name = "last_accessed_at")
+    // Written only by DashboardViewCounter, so saving the entity never overwrites flushed views
+    @Column(name = "last_accessed_at", updatable = false)
     private LocalDateTime lastAccessedAt;
     
-    @Column(name = "view_count")
+    @Column(name = "view_count", updatable = false)
     private Long viewCount = 0L;
     
     @Column(name = "created_at", nullable = false)
@@ -120,6 +127,12 @@ public class Dashboard {
     public Boolean getIsPublic() { return isPublic; }
     public void setIsPublic(Boolean isPublic) { this.isPublic = isPublic; }
     
+    public Boolean getIsDefault() { return isDefault; }
+    public void setIsDefault(Boolean isDefault) { this.isDefault = isDefault; }
+    
+    public String getSettings() { return settings; }
+    public void setSettings(String settings) { this.settings = settings; }
+    
     public UUID getOwnerId() { return ownerId; }
     public void setOwnerId(UUID ownerId) { this.ownerId = ownerId; }
     
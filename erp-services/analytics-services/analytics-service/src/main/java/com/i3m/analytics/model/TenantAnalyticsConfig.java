@@ -0,0 +1,46 @@
+package com.i3m.analytics.model;
+
+import jakarta.persistence.*;
+import jakarta.validation.constraints.NotNull;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+@Entity
+@Table(name = "tenant_analytics_config", schema = "analytics")
+public class TenantAnalyticsConfig {
+    
+    @Id
+    @Column(name = "tenant_id", nullable = false)
+    private UUID tenantId;
+    
+    @NotNull
+    @Column(name = "retention_days", nullable = false)
+    private Integer retentionDays;
+    
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+    
+    @PrePersist
+    @PreUpdate
+    protected void onSave() {
+        updatedAt = LocalDateTime.now();
+    }
+    
+    // Constructors
+    public TenantAnalyticsConfig() {}
+    
+    public TenantAnalyticsConfig(UUID tenantId, Integer retentionDays) {
+        this.tenantId = tenantId;
+        this.retentionDays = retentionDays;
+    }
+    
+    // Getters and Setters
+    public UUID getTenantId() { return tenantId; }
+    public void setTenantId(UUID tenantId) { this.tenantId = tenantId; }
+    
+    public Integer getRetentionDays() { return retentionDays; }
+    public void setRetentionDays(Integer retentionDays) { this.retentionDays = retentionDays; }
+    
+    public LocalDateTime getUpdatedAt() { return updatedAt; }
+    public void setUpdatedAt(LocalDateTime updatedAt) { this.updatedAt = updatedAt; }
+}
@@ -0,0 +1,172 @@
+package com.i3m.analytics.query;
+
+import com.i3m.analytics.store.AnalyticsEventStore;
+import com.i3m.analytics.store.TenantDictionary;
+import com.i3m.analytics.store.TenantEventPartition;
+import com.i3m.analytics.store.TimeBucket;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Computes every requested measure, or a multi-dimension group-by, in one pass
+ * over a tenant partition. Large ranges are split along time-bucket boundaries
+ * and evaluated with fork/join, then the partial results are merged.
+ */
+@Component
+public class AggregationEngine {
+
+    private final AnalyticsEventStore eventStore;
+    private final ForkJoinPool pool;
+    private final int segmentSize;
+
+    public AggregationEngine(AnalyticsEventStore eventStore,
+                             @Value("${analytics.processing.parallel-threads:4}") int parallelThreads,
+                             @Value("${analytics.processing.chunk-size:10000}") int segmentSize) {
+        this.eventStore = eventStore;
+        this.pool = new ForkJoinPool(parallelThreads);
+        this.segmentSize = segmentSize;
+    }
+
+    public AggregationResult aggregate(UUID tenantId, AggregationRequest request) {
+        Optional<TenantEventPartition> partition = eventStore.partition(tenantId);
+        if (partition.isEmpty()) {
+            return new AggregationResult(request, null);
+        }
+        long from = request.getRange().startMillis();
+        long to = request.getRange().endMillis();
+        List<TimeBucket> buckets = new ArrayList<>(partition.get().buckets(from, to, false));
+        SegmentTask task = new SegmentTask(
+            request, partition.get().getDictionary(), buckets, 0, buckets.size(), from, to);
+        if (task.size() <= segmentSize) {
+            return task.compute();
+        }
+        return pool.invoke(task);
+    }
+
+    public GroupByResult groupBy(UUID tenantId, GroupByQuery query) {
+        Optional<TenantEventPartition> partition = eventStore.partition(tenantId);
+        if (partition.isEmpty()) {
+            return new GroupByResult(query.getDimensions(), List.of(), 0);
+        }
+        long from = query.getRange().startMillis();
+        long to = query.getRange().endMillis();
+        List<TimeBucket> buckets = new ArrayList<>(partition.get().buckets(from, to, false));
+        GroupByPlan plan = new GroupByPlan(query, partition.get().getDictionary());
+        GroupByTask task = new GroupByTask(plan, buckets, 0, buckets.size(), from, to);
+        GroupTable table = sizeOf(buckets, 0, buckets.size()) <= segmentSize ? task.compute() : pool.invoke(task);
+        return plan.collect(table);
+    }
+
+    private static long sizeOf(List<TimeBucket> buckets, int lo, int hi) {
+        long size = 0;
+        for (int i = lo; i < hi; i++) {
+            size += buckets.get(i).size();
+        }
+        return size;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    private class SegmentTask extends RecursiveTask<AggregationResult> {
+
+        private final AggregationRequest request;
+        private final TenantDictionary dictionary;
+        private final List<TimeBucket> buckets;
+        private final int lo;
+        private final int hi;
+        private final long from;
+        private final long to;
+
+        SegmentTask(AggregationRequest request, TenantDictionary dictionary, List<TimeBucket> buckets,
+                    int lo, int hi, long from, long to) {
+            this.request = request;
+            this.dictionary = dictionary;
+            this.buckets = buckets;
+            this.lo = lo;
+            this.hi = hi;
+            this.from = from;
+            this.to = to;
+        }
+
+        long size() {
+            return sizeOf(buckets, lo, hi);
+        }
+
+        @Override
+        protected AggregationResult compute() {
+            if (hi - lo <= 1 || size() <= segmentSize) {
+                AggregationResult result = new AggregationResult(request, dictionary);
+                for (int i = lo; i < hi; i++) {
+                    TimeBucket bucket = buckets.get(i);
+                    if (!request.needsEventScan() && bucket.coveredBy(from, to)) {
+                        result.acceptBucket(bucket);
+                    } else {
+                        bucket.stream(from, to, false).forEach(result::accept);
+                    }
+                }
+                return result;
+            }
+            int mid = (lo + hi) >>> 1;
+            SegmentTask left = new SegmentTask(request, dictionary, buckets, lo, mid, from, to);
+            SegmentTask right = new SegmentTask(request, dictionary, buckets, mid, hi, from, to);
+            left.fork();
+            AggregationResult rightResult = right.compute();
+            return left.join().merge(rightResult);
+        }
+    }
+
+    private class GroupByTask extends RecursiveTask<GroupTable> {
+
+        private final GroupByPlan plan;
+        private final List<TimeBucket> buckets;
+        private final int lo;
+        private final int hi;
+        private final long from;
+        private final long to;
+
+        GroupByTask(GroupByPlan plan, List<TimeBucket> buckets, int lo, int hi, long from, long to) {
+            this.plan = plan;
+            this.buckets = buckets;
+            this.lo = lo;
+            this.hi = hi;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected GroupTable compute() {
+            if (hi - lo <= 1 || sizeOf(buckets, lo, hi) <= segmentSize) {
+                GroupTable table = plan.newTable();
+                int[] key = plan.newKey();
+                for (int i = lo; i < hi; i++) {
+                    buckets.get(i).stream(from, to, false).forEach(event -> plan.accept(event, key, table));
+                }
+                return table;
+            }
+            int mid = (lo + hi) >>> 1;
+            GroupByTask left = new GroupByTask(plan, buckets, lo, mid, from, to);
+            GroupByTask right = new GroupByTask(plan, buckets, mid, hi, from, to);
+            left.fork();
+            GroupTable rightTable = right.compute();
+            GroupTable leftTable = left.join();
+            // Fold the smaller table into the larger one
+            if (leftTable.size() >= rightTable.size()) {
+                leftTable.addAll(rightTable);
+                return leftTable;
+            }
+            rightTable.addAll(leftTable);
+            return rightTable;
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.i3m.analytics.query;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Describes which measures to compute over a tenant's events in a time range.
+ */
+public class AggregationRequest {
+
+    private final TimeRange range;
+    private final Set<Measure> measures = EnumSet.noneOf(Measure.class);
+    private final Set<String> groupBy = new LinkedHashSet<>();
+    private boolean exact;
+
+    private AggregationRequest(TimeRange range) {
+        this.range = range;
+    }
+
+    public static AggregationRequest over(TimeRange range) {
+        return new AggregationRequest(range == null ? TimeRange.ALL : range);
+    }
+
+    public AggregationRequest measure(Measure measure) {
+        measures.add(measure);
+        return this;
+    }
+
+    public AggregationRequest groupBy(String dimension) {
+        measures.add(Measure.GROUP_BY);
+        groupBy.add(dimension);
+        return this;
+    }
+
+    /**
+     * Counts distinct users exactly instead of merging HyperLogLog sketches.
+     */
+    public AggregationRequest exact(boolean exact) {
+        this.exact = exact;
+        return this;
+    }
+
+    public boolean isExact() {
+        return exact;
+    }
+
+    /**
+     * Whether the requested measures need individual events, or can be answered
+     * from per-bucket counts and sketches when a bucket lies fully inside the range.
+     */
+    public boolean needsEventScan() {
+        return has(Measure.GROUP_BY) || has(Measure.SUM_VALUE) || has(Measure.AVG_VALUE)
+            || (exact && has(Measure.DISTINCT_USERS));
+    }
+
+    public boolean has(Measure measure) {
+        return measures.contains(measure);
+    }
+
+    public TimeRange getRange() {
+        return range;
+    }
+
+    public Set<Measure> getMeasures() {
+        return Collections.unmodifiableSet(measures);
+    }
+
+    public Set<String> getGroupBy() {
+        return Collections.unmodifiableSet(groupBy);
+    }
+}
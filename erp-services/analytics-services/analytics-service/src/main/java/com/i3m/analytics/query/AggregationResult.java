@@ -0,0 +1,115 @@
+package com.i3m.analytics.query;
+
+import com.i3m.analytics.sketch.HyperLogLog;
+import com.i3m.analytics.store.CompactEvent;
+import com.i3m.analytics.store.TenantDictionary;
+import com.i3m.analytics.store.TimeBucket;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Function;
+
+/**
+ * Partial or final output of an aggregation. Partials computed over separate
+ * segments are combined with {@link #merge(AggregationResult)}.
+ */
+public class AggregationResult {
+
+    private final AggregationRequest request;
+    private long count;
+    private final Set<UUID> users;
+    private final HyperLogLog userSketch;
+    private final Map<String, Map<String, Long>> groups = new HashMap<>();
+    private final Map<String, Function<CompactEvent, String>> accessors = new HashMap<>();
+    private double valueSum;
+    private long valueCount;
+
+    /**
+     * @param dictionary dictionary of the partition being aggregated, or null when there is none
+     */
+    public AggregationResult(AggregationRequest request, TenantDictionary dictionary) {
+        this.request = request;
+        boolean distinct = request.has(Measure.DISTINCT_USERS);
+        this.users = distinct && request.isExact() ? new HashSet<>() : null;
+        this.userSketch = distinct && !request.isExact() ? new HyperLogLog() : null;
+        for (String dimension : request.getGroupBy()) {
+            groups.put(dimension, new HashMap<>());
+            if (dictionary != null) {
+                accessors.put(dimension, EventDimensions.accessor(dimension, dictionary));
+            }
+        }
+    }
+
+    void accept(CompactEvent event) {
+        count++;
+        if (event.hasUser()) {
+            if (users != null) {
+                users.add(event.getUserId());
+            } else if (userSketch != null) {
+                userSketch.offer(event.getUserMsb(), event.getUserLsb());
+            }
+        }
+        if (request.has(Measure.GROUP_BY)) {
+            for (Map.Entry<String, Map<String, Long>> group : groups.entrySet()) {
+                String key = accessors.get(group.getKey()).apply(event);
+                group.getValue().merge(key == null ? "unknown" : key, 1L, Long::sum);
+            }
+        }
+        if ((request.has(Measure.SUM_VALUE) || request.has(Measure.AVG_VALUE)) && event.hasValue()) {
+            valueSum += event.getValue();
+            valueCount++;
+        }
+    }
+
+    /**
+     * Accounts for a bucket lying fully inside the range using its count and sketch.
+     */
+    void acceptBucket(TimeBucket bucket) {
+        count += bucket.size();
+        if (userSketch != null) {
+            userSketch.merge(bucket.getUserSketch());
+        }
+    }
+
+    AggregationResult merge(AggregationResult other) {
+        count += other.count;
+        if (users != null) {
+            users.addAll(other.users);
+        } else if (userSketch != null) {
+            userSketch.merge(other.userSketch);
+        }
+        other.groups.forEach((dimension, counts) -> {
+            Map<String, Long> target = groups.get(dimension);
+            counts.forEach((key, value) -> target.merge(key, value, Long::sum));
+        });
+        valueSum += other.valueSum;
+        valueCount += other.valueCount;
+        return this;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getUniqueUsers() {
+        if (users != null) {
+            return users.size();
+        }
+        return userSketch == null ? 0 : userSketch.estimate();
+    }
+
+    public Map<String, Long> getGroup(String dimension) {
+        return groups.getOrDefault(dimension, Map.of());
+    }
+
+    public double getValueSum() {
+        return valueSum;
+    }
+
+    public double getAverageValue() {
+        return valueCount == 0 ? 0.0 : valueSum / valueCount;
+    }
+}
@@ -0,0 +1,95 @@
+package com.i3m.analytics.query;
+
+import com.i3m.analytics.dto.AnalyticsEventDto;
+import com.i3m.analytics.store.CompactEvent;
+import com.i3m.analytics.store.TenantDictionary;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Function;
+
+/**
+ * Resolves a named dimension of an event. Names that are not event fields are
+ * looked up as property keys.
+ */
+public final class EventDimensions {
+
+    private EventDimensions() {}
+
+    /**
+     * Returns an accessor for a dimension of stored events. Dictionary-encoded
+     * fields decode through the tenant dictionary and property keys are read from
+     * the packed properties without materialising them.
+     */
+    public static Function<CompactEvent, String> accessor(String dimension, TenantDictionary dictionary) {
+        switch (dimension) {
+            case "eventType":
+                return event -> dictionary.decode(event.getEventType());
+            case "eventName":
+                return event -> dictionary.decode(event.getEventName());
+            case "userId":
+                return event -> toString(event.getUserId());
+            case "sessionId":
+                return event -> toString(event.getSessionId());
+            case "currency":
+                return event -> dictionary.decode(event.getCurrency());
+            case "pageUrl":
+                return CompactEvent::getPageUrl;
+            case "referrer":
+                return CompactEvent::getReferrer;
+            case "deviceType":
+                return event -> dictionary.decode(event.getDeviceType());
+            case "browser":
+                return event -> dictionary.decode(event.getBrowser());
+            case "os":
+                return event -> dictionary.decode(event.getOs());
+            case "country":
+                return event -> dictionary.decode(event.getCountry());
+            case "city":
+                return event -> dictionary.decode(event.getCity());
+            default:
+                int keyId = dictionary.lookup(dimension);
+                return event -> {
+                    Object value = event.getProperty(keyId);
+                    return value == null ? null : value.toString();
+                };
+        }
+    }
+
+    private static String toString(UUID value) {
+        return value == null ? null : value.toString();
+    }
+
+    public static String valueOf(AnalyticsEventDto event, String dimension) {
+        switch (dimension) {
+            case "eventType":
+                return event.getEventType();
+            case "eventName":
+                return event.getEventName();
+            case "userId":
+                return event.getUserId() == null ? null : event.getUserId().toString();
+            case "sessionId":
+                return event.getSessionId() == null ? null : event.getSessionId().toString();
+            case "currency":
+                return event.getCurrency();
+            case "pageUrl":
+                return event.getPageUrl();
+            case "referrer":
+                return event.getReferrer();
+            case "deviceType":
+                return event.getDeviceType();
+            case "browser":
+                return event.getBrowser();
+            case "os":
+                return event.getOs();
+            case "country":
+                return event.getCountry();
+            case "city":
+                return event.getCity();
+            default:
+                Map<String, Object> properties = event.getProperties();
+                Object value = properties == null ? null : properties.get(dimension);
+                return value == null ? null : value.toString();
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.i3m.analytics.query;
+
+import com.i3m.analytics.store.CompactEvent;
+import com.i3m.analytics.store.TenantDictionary;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Conjunction of equality clauses over event dimensions, parsed from
+ * expressions such as {@code country=US|CA; deviceType!=mobile}. Clauses are
+ * separated by {@code ;} or {@code and}, and {@code |} lists alternative values.
+ */
+public class EventFilter {
+
+    public static final EventFilter NONE = new EventFilter(List.of());
+
+    private final List<Clause> clauses;
+
+    private EventFilter(List<Clause> clauses) {
+        this.clauses = clauses;
+    }
+
+    public static EventFilter parse(String expression) {
+        if (expression == null || expression.isBlank()) {
+            return NONE;
+        }
+        List<Clause> clauses = new ArrayList<>();
+        for (String part : expression.split("(?i);|\\s+and\\s+")) {
+            String clause = part.trim();
+            if (clause.isEmpty()) {
+                continue;
+            }
+            boolean negated = clause.contains("!=");
+            String[] sides = clause.split(negated ? "!=" : "=", 2);
+            if (sides.length != 2 || sides[0].isBlank() || sides[1].isBlank()) {
+                throw new IllegalArgumentException("Invalid filter clause: " + clause);
+            }
+            List<String> values = Arrays.stream(sides[1].split("\\|"))
+                .map(String::trim)
+                .filter(value -> !value.isEmpty())
+                .toList();
+            clauses.add(new Clause(sides[0].trim(), negated, values));
+        }
+        return clauses.isEmpty() ? NONE : new EventFilter(List.copyOf(clauses));
+    }
+
+    /**
+     * Binds the filter to a tenant dictionary.
+     */
+    Predicate<CompactEvent> compile(TenantDictionary dictionary) {
+        Predicate<CompactEvent> predicate = event -> true;
+        for (Clause clause : clauses) {
+            Predicate<CompactEvent> matcher = KeyColumn.of(clause.dimension(), dictionary).matcher(clause.values());
+            predicate = predicate.and(clause.negated() ? matcher.negate() : matcher);
+        }
+        return predicate;
+    }
+
+    public boolean isEmpty() {
+        return clauses.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        List<String> parts = new ArrayList<>();
+        for (Clause clause : clauses) {
+            parts.add(clause.dimension() + (clause.negated() ? "!=" : "=") + String.join("|", clause.values()));
+        }
+        return String.join("; ", parts);
+    }
+
+    private record Clause(String dimension, boolean negated, List<String> values) {}
+}
@@ -0,0 +1,37 @@
+package com.i3m.analytics.query;
+
+import java.util.Locale;
+
+/**
+ * Time granularities used to bucket series and rollups.
+ */
+public enum Granularity {
+    MINUTE(60_000L),
+    HOUR(3_600_000L),
+    DAY(86_400_000L);
+
+    private final long millis;
+
+    Granularity(long millis) {
+        this.millis = millis;
+    }
+
+    public long getMillis() {
+        return millis;
+    }
+
+    public long truncate(long timestampMillis) {
+        return Math.floorDiv(timestampMillis, millis) * millis;
+    }
+
+    public static Granularity parse(String value, Granularity defaultValue) {
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        try {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unsupported granularity: " + value);
+        }
+    }
+}
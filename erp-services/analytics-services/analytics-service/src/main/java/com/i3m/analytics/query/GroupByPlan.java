@@ -0,0 +1,134 @@
+package com.i3m.analytics.query;
+
+import com.i3m.analytics.store.CompactEvent;
+import com.i3m.analytics.store.TenantDictionary;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.function.Predicate;
+
+/**
+ * A group-by query bound to one tenant dictionary. Each event is reduced to an
+ * int tuple (time bucket, then one code per dimension) and counted in a
+ * {@link GroupTable}; labels are decoded only for the rows that are returned.
+ */
+final class GroupByPlan {
+
+    private static final String UNKNOWN = "unknown";
+
+    private final GroupByQuery query;
+    private final List<KeyColumn> columns = new ArrayList<>();
+    private final Predicate<CompactEvent> filter;
+    private final Granularity granularity;
+    private final int offset;
+
+    GroupByPlan(GroupByQuery query, TenantDictionary dictionary) {
+        if (query.getDimensions().isEmpty()) {
+            throw new IllegalArgumentException("At least one dimension is required");
+        }
+        this.query = query;
+        for (String dimension : query.getDimensions()) {
+            columns.add(KeyColumn.of(dimension, dictionary));
+        }
+        this.filter = query.getFilter().compile(dictionary);
+        this.granularity = query.getGranularity();
+        this.offset = granularity == null ? 0 : 1;
+    }
+
+    GroupTable newTable() {
+        return new GroupTable(offset + columns.size());
+    }
+
+    int[] newKey() {
+        return new int[offset + columns.size()];
+    }
+
+    /**
+     * Counts one event, reusing {@code key} as scratch space.
+     */
+    void accept(CompactEvent event, int[] key, GroupTable table) {
+        if (!filter.test(event)) {
+            return;
+        }
+        if (granularity != null) {
+            // Bucket index since the epoch; fits an int even at minute granularity
+            key[0] = (int) Math.floorDiv(event.getTimestamp(), granularity.getMillis());
+        }
+        for (int i = 0; i < columns.size(); i++) {
+            key[offset + i] = columns.get(i).code(event);
+        }
+        table.add(key, event.hasValue() ? event.getValue() : 0);
+    }
+
+    /**
+     * Builds the result, keeping per group only the top-N slots by count in a
+     * bounded heap so the full table is never sorted or decoded. The limit is
+     * applied here, after every group has been fully aggregated, rather than per
+     * segment: a value can rank low in each segment and still make the overall
+     * top N, so pruning segments would make the counts and the ranking inexact.
+     */
+    GroupByResult collect(GroupTable table) {
+        int limit = query.getLimit();
+        List<Integer> survivors = new ArrayList<>();
+        if (limit == 0) {
+            for (int slot = 0; slot < table.capacity(); slot++) {
+                if (table.occupied(slot)) {
+                    survivors.add(slot);
+                }
+            }
+        } else {
+            Comparator<Integer> byCount = Comparator.comparingLong(table::count);
+            Map<GroupKey, PriorityQueue<Integer>> heaps = new HashMap<>();
+            int parentWidth = offset + columns.size() - 1;
+            for (int slot = 0; slot < table.capacity(); slot++) {
+                if (!table.occupied(slot)) {
+                    continue;
+                }
+                int[] parent = new int[parentWidth];
+                for (int column = 0; column < parentWidth; column++) {
+                    parent[column] = table.key(slot, column);
+                }
+                PriorityQueue<Integer> heap = heaps.computeIfAbsent(new GroupKey(parent),
+                    k -> new PriorityQueue<>(limit + 1, byCount));
+                heap.offer(slot);
+                if (heap.size() > limit) {
+                    heap.poll();
+                }
+            }
+            heaps.values().forEach(survivors::addAll);
+        }
+        Comparator<Integer> order = Comparator.<Integer>comparingInt(slot -> offset == 0 ? 0 : table.key(slot, 0))
+            .thenComparing(Comparator.comparingLong(table::count).reversed());
+        survivors.sort(order);
+
+        List<GroupByResult.Row> rows = new ArrayList<>(survivors.size());
+        for (int slot : survivors) {
+            List<String> values = new ArrayList<>(columns.size());
+            for (int i = 0; i < columns.size(); i++) {
+                String label = columns.get(i).label(table.key(slot, offset + i));
+                values.add(label == null ? UNKNOWN : label);
+            }
+            Long bucketStart = granularity == null ? null : table.key(slot, 0) * granularity.getMillis();
+            rows.add(new GroupByResult.Row(bucketStart, values, table.count(slot), table.sum(slot)));
+        }
+        return new GroupByResult(query.getDimensions(), rows, table.size());
+    }
+
+    private record GroupKey(int[] codes) {
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof GroupKey key && Arrays.equals(codes, key.codes);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(codes);
+        }
+    }
+}
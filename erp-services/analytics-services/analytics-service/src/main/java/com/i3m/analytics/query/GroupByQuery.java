@@ -0,0 +1,82 @@
+package com.i3m.analytics.query;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Describes a multi-dimension group-by over a tenant's events: the dimensions
+ * forming the group key, an optional filter and time granularity, and a top-N
+ * limit applied to the last dimension within each group of the others.
+ */
+public class GroupByQuery {
+
+    private final TimeRange range;
+    private final List<String> dimensions = new ArrayList<>();
+    private EventFilter filter = EventFilter.NONE;
+    private Granularity granularity;
+    private int limit;
+
+    private GroupByQuery(TimeRange range) {
+        this.range = range;
+    }
+
+    public static GroupByQuery over(TimeRange range) {
+        return new GroupByQuery(range == null ? TimeRange.ALL : range);
+    }
+
+    public GroupByQuery dimension(String dimension) {
+        if (dimension == null || dimension.isBlank()) {
+            throw new IllegalArgumentException("Dimension must not be blank");
+        }
+        if (!dimensions.contains(dimension.trim())) {
+            dimensions.add(dimension.trim());
+        }
+        return this;
+    }
+
+    public GroupByQuery filter(EventFilter filter) {
+        this.filter = filter == null ? EventFilter.NONE : filter;
+        return this;
+    }
+
+    /**
+     * Splits every group by time bucket; null keeps a single bucket for the whole range.
+     */
+    public GroupByQuery granularity(Granularity granularity) {
+        this.granularity = granularity;
+        return this;
+    }
+
+    /**
+     * Keeps only the {@code limit} largest values of the last dimension per group; 0 keeps all.
+     * Every group is still aggregated in full; the limit trims the result.
+     */
+    public GroupByQuery limit(int limit) {
+        if (limit < 0) {
+            throw new IllegalArgumentException("limit must not be negative");
+        }
+        this.limit = limit;
+        return this;
+    }
+
+    public TimeRange getRange() {
+        return range;
+    }
+
+    public List<String> getDimensions() {
+        return Collections.unmodifiableList(dimensions);
+    }
+
+    public EventFilter getFilter() {
+        return filter;
+    }
+
+    public Granularity getGranularity() {
+        return granularity;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+}
@@ -0,0 +1,41 @@
+package com.i3m.analytics.query;
+
+import java.util.List;
+
+/**
+ * Sparse group-by table: one row per non-empty group, ordered by time bucket and
+ * then by descending count.
+ */
+public class GroupByResult {
+
+    private final List<String> dimensions;
+    private final List<Row> rows;
+    private final int groups;
+
+    GroupByResult(List<String> dimensions, List<Row> rows, int groups) {
+        this.dimensions = dimensions;
+        this.rows = rows;
+        this.groups = groups;
+    }
+
+    public List<String> getDimensions() {
+        return dimensions;
+    }
+
+    public List<Row> getRows() {
+        return rows;
+    }
+
+    /**
+     * Number of groups found before the top-N limit was applied.
+     */
+    public int getGroups() {
+        return groups;
+    }
+
+    /**
+     * @param bucketStart start of the time bucket in epoch millis, or null without a granularity
+     * @param values      one value per dimension, in query order
+     */
+    public record Row(Long bucketStart, List<String> values, long count, double valueSum) {}
+}
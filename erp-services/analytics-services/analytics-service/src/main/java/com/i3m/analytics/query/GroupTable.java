@@ -0,0 +1,114 @@
+package com.i3m.analytics.query;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash table from a fixed-width int tuple to an event count and
+ * value sum. Keys live in one flat int array, so aggregating an event allocates
+ * nothing once the table has grown to the number of groups.
+ */
+final class GroupTable {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final int width;
+    private int[] keys;
+    private long[] counts;
+    private double[] sums;
+    private int size;
+
+    GroupTable(int width) {
+        this.width = width;
+        allocate(INITIAL_CAPACITY);
+    }
+
+    void add(int[] key, double value) {
+        int slot = slotFor(key, 0);
+        counts[slot]++;
+        sums[slot] += value;
+    }
+
+    void addAll(GroupTable other) {
+        for (int slot = 0; slot < other.counts.length; slot++) {
+            if (other.counts[slot] != 0) {
+                int target = slotFor(other.keys, slot * width);
+                counts[target] += other.counts[slot];
+                sums[target] += other.sums[slot];
+            }
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    int capacity() {
+        return counts.length;
+    }
+
+    boolean occupied(int slot) {
+        return counts[slot] != 0;
+    }
+
+    int key(int slot, int column) {
+        return keys[slot * width + column];
+    }
+
+    long count(int slot) {
+        return counts[slot];
+    }
+
+    double sum(int slot) {
+        return sums[slot];
+    }
+
+    private int slotFor(int[] source, int offset) {
+        if ((size + 1) * 4 > counts.length * 3) {
+            resize();
+        }
+        int mask = counts.length - 1;
+        int slot = hash(source, offset) & mask;
+        while (counts[slot] != 0) {
+            if (Arrays.equals(keys, slot * width, slot * width + width, source, offset, offset + width)) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        System.arraycopy(source, offset, keys, slot * width, width);
+        size++;
+        return slot;
+    }
+
+    private int hash(int[] source, int offset) {
+        int h = 1;
+        for (int i = offset; i < offset + width; i++) {
+            h = 31 * h + source[i];
+        }
+        // Spread the bits so the mask sees the whole hash
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        return h;
+    }
+
+    private void resize() {
+        int[] oldKeys = keys;
+        long[] oldCounts = counts;
+        double[] oldSums = sums;
+        allocate(oldCounts.length * 2);
+        for (int slot = 0; slot < oldCounts.length; slot++) {
+            if (oldCounts[slot] != 0) {
+                int target = slotFor(oldKeys, slot * width);
+                counts[target] = oldCounts[slot];
+                sums[target] = oldSums[slot];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity * width];
+        counts = new long[capacity];
+        sums = new double[capacity];
+        size = 0;
+    }
+}
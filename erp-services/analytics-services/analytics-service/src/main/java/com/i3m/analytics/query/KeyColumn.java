@@ -0,0 +1,110 @@
+package com.i3m.analytics.query;
+
+import com.i3m.analytics.store.CompactEvent;
+import com.i3m.analytics.store.TenantDictionary;
+
+import java.util.Collection;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.function.Predicate;
+import java.util.function.ToIntFunction;
+
+/**
+ * One dimension of a group-by key, reduced to an int code per event.
+ * Dictionary-encoded fields use their tenant dictionary id directly; free-form
+ * fields and property values are interned into a query-scoped dictionary so
+ * that codes agree across parallel segments.
+ */
+final class KeyColumn {
+
+    private final String dimension;
+    private final ToIntFunction<CompactEvent> codes;
+    private final IntFunction<String> labels;
+    private final TenantDictionary dictionary;
+    private final Function<CompactEvent, String> accessor;
+
+    private KeyColumn(String dimension, ToIntFunction<CompactEvent> codes, IntFunction<String> labels,
+                      TenantDictionary dictionary, Function<CompactEvent, String> accessor) {
+        this.dimension = dimension;
+        this.codes = codes;
+        this.labels = labels;
+        this.dictionary = dictionary;
+        this.accessor = accessor;
+    }
+
+    static KeyColumn of(String dimension, TenantDictionary dictionary) {
+        switch (dimension) {
+            case "eventType":
+                return encoded(dimension, CompactEvent::getEventType, dictionary);
+            case "eventName":
+                return encoded(dimension, CompactEvent::getEventName, dictionary);
+            case "currency":
+                return encoded(dimension, CompactEvent::getCurrency, dictionary);
+            case "deviceType":
+                return encoded(dimension, CompactEvent::getDeviceType, dictionary);
+            case "browser":
+                return encoded(dimension, CompactEvent::getBrowser, dictionary);
+            case "os":
+                return encoded(dimension, CompactEvent::getOs, dictionary);
+            case "country":
+                return encoded(dimension, CompactEvent::getCountry, dictionary);
+            case "city":
+                return encoded(dimension, CompactEvent::getCity, dictionary);
+            default:
+                TenantDictionary values = new TenantDictionary();
+                Function<CompactEvent, String> accessor = EventDimensions.accessor(dimension, dictionary);
+                return new KeyColumn(dimension, event -> values.encode(accessor.apply(event)), values::decode,
+                    null, accessor);
+        }
+    }
+
+    private static KeyColumn encoded(String dimension, ToIntFunction<CompactEvent> codes,
+                                     TenantDictionary dictionary) {
+        return new KeyColumn(dimension, codes, dictionary::decode, dictionary, null);
+    }
+
+    int code(CompactEvent event) {
+        return codes.applyAsInt(event);
+    }
+
+    String label(int code) {
+        return labels.apply(code);
+    }
+
+    String getDimension() {
+        return dimension;
+    }
+
+    /**
+     * Returns a predicate matching events whose value is one of {@code values}.
+     * Dictionary-encoded fields compare ids, so no strings are decoded per event.
+     */
+    Predicate<CompactEvent> matcher(Collection<String> values) {
+        if (dictionary == null) {
+            Set<String> accepted = Set.copyOf(values);
+            return event -> {
+                String value = accessor.apply(event);
+                return value != null && accepted.contains(value);
+            };
+        }
+        int[] ids = values.stream()
+            .mapToInt(dictionary::lookup)
+            .filter(id -> id >= 0)
+            .distinct()
+            .toArray();
+        if (ids.length == 1) {
+            int id = ids[0];
+            return event -> codes.applyAsInt(event) == id;
+        }
+        return event -> {
+            int code = codes.applyAsInt(event);
+            for (int id : ids) {
+                if (id == code) {
+                    return true;
+                }
+            }
+            return false;
+        };
+    }
+}
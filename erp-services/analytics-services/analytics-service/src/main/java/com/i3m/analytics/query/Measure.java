@@ -0,0 +1,12 @@
+package com.i3m.analytics.query;
+
+/**
+ * Aggregates the {@link AggregationEngine} can compute in a single pass.
+ */
+public enum Measure {
+    COUNT,
+    DISTINCT_USERS,
+    GROUP_BY,
+    SUM_VALUE,
+    AVG_VALUE
+}
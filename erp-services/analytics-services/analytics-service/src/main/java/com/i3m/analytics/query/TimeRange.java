@@ -0,0 +1,120 @@
+package com.i3m.analytics.query;
+
+import com.i3m.analytics.store.EventTime;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.format.DateTimeParseException;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A closed [start, end] interval over event timestamps. A null bound is open.
+ */
+public final class TimeRange {
+
+    public static final TimeRange ALL = new TimeRange(null, null);
+
+    private static final Pattern RELATIVE = Pattern.compile("(\\d+)\\s*(m|min|h|d|w|mo|y)");
+
+    private final LocalDateTime start;
+    private final LocalDateTime end;
+
+    private TimeRange(LocalDateTime start, LocalDateTime end) {
+        this.start = start;
+        this.end = end;
+    }
+
+    public static TimeRange of(LocalDateTime start, LocalDateTime end) {
+        return start == null && end == null ? ALL : new TimeRange(start, end);
+    }
+
+    /**
+     * Parses a period such as {@code 15m}, {@code 24h}, {@code 7d}, {@code 2w}, {@code 3mo},
+     * {@code today}, {@code week} or {@code month} into a range ending now.
+     * A blank period or {@code all} means all time.
+     */
+    public static TimeRange parse(String period) {
+        if (period == null || period.isBlank()) {
+            return ALL;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        String value = period.trim().toLowerCase(Locale.ROOT);
+        switch (value) {
+            case "all":
+                return ALL;
+            case "hour":
+                return new TimeRange(now.minusHours(1), null);
+            case "today":
+                return new TimeRange(LocalDate.now().atStartOfDay(), null);
+            case "day":
+                return new TimeRange(now.minusDays(1), null);
+            case "week":
+                return new TimeRange(now.minusWeeks(1), null);
+            case "month":
+                return new TimeRange(now.minusMonths(1), null);
+            case "quarter":
+                return new TimeRange(now.minusMonths(3), null);
+            case "year":
+                return new TimeRange(now.minusYears(1), null);
+            default:
+                break;
+        }
+        Matcher matcher = RELATIVE.matcher(value);
+        if (!matcher.matches()) {
+            throw new IllegalArgumentException("Unsupported period: " + period);
+        }
+        long amount = Long.parseLong(matcher.group(1));
+        LocalDateTime start = switch (matcher.group(2)) {
+            case "m", "min" -> now.minusMinutes(amount);
+            case "h" -> now.minusHours(amount);
+            case "d" -> now.minusDays(amount);
+            case "w" -> now.minusWeeks(amount);
+            case "mo" -> now.minusMonths(amount);
+            default -> now.minusYears(amount);
+        };
+        return new TimeRange(start, null);
+    }
+
+    /**
+     * Builds a range from ISO date-time or date strings. A date-only end bound
+     * includes the whole day.
+     */
+    public static TimeRange between(String startDate, String endDate) {
+        return of(parseBound(startDate, false), parseBound(endDate, true));
+    }
+
+    private static LocalDateTime parseBound(String value, boolean endOfDay) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        String trimmed = value.trim();
+        try {
+            if (trimmed.length() == 10) {
+                LocalDate date = LocalDate.parse(trimmed);
+                return endOfDay ? date.atTime(LocalTime.MAX) : date.atStartOfDay();
+            }
+            return LocalDateTime.parse(trimmed);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid date: " + value, e);
+        }
+    }
+
+    public LocalDateTime getStart() {
+        return start;
+    }
+
+    public LocalDateTime getEnd() {
+        return end;
+    }
+
+    public long startMillis() {
+        return EventTime.toMillis(start, Long.MIN_VALUE);
+    }
+
+    public long endMillis() {
+        return EventTime.toMillis(end, Long.MAX_VALUE);
+    }
+}
@@ -0,0 +1,157 @@
+package com.i3m.analytics.realtime;
+
+import com.i3m.analytics.dto.AnalyticsEventDto;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.BufferOverflowStrategy;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Pushes new events and periodic metric deltas to subscribed dashboards over SSE.
+ * Each tenant has one in-memory channel that fans out to all of its subscribers.
+ * Every subscriber gets its own bounded buffer; when a slow client falls behind,
+ * its oldest undelivered messages are dropped without affecting other clients.
+ * A channel lives only while the tenant has subscribers.
+ */
+@Component
+public class RealtimeBroadcaster {
+
+    private final ConcurrentHashMap<UUID, TenantChannel> channels = new ConcurrentHashMap<>();
+    private final AtomicInteger connections = new AtomicInteger();
+    private final Duration metricsInterval;
+    private final int subscriberBuffer;
+    private final int maxConnections;
+    private final Counter dropped;
+
+    public RealtimeBroadcaster(MeterRegistry meterRegistry,
+                               @Value("${analytics.realtime.update-frequency-seconds:5}") long updateFrequencySeconds,
+                               @Value("${analytics.realtime.subscriber-buffer:256}") int subscriberBuffer,
+                               @Value("${analytics.realtime.max-connections:1000}") int maxConnections) {
+        this.metricsInterval = Duration.ofSeconds(updateFrequencySeconds);
+        this.subscriberBuffer = subscriberBuffer;
+        this.maxConnections = maxConnections;
+        this.dropped = Counter.builder("analytics.realtime.dropped")
+            .description("Messages dropped for slow realtime subscribers")
+            .register(meterRegistry);
+        Gauge.builder("analytics.realtime.connections", connections, AtomicInteger::get)
+            .register(meterRegistry);
+    }
+
+    /**
+     * Fans an ingested event out to the tenant's subscribers. Tenants without an
+     * open channel cost a single map lookup.
+     */
+    public void publish(AnalyticsEventDto event) {
+        TenantChannel channel = channels.get(event.getTenantId());
+        if (channel != null) {
+            channel.publish(event);
+        }
+    }
+
+    /**
+     * Opens a subscriber stream for the tenant. The connection takes its slot here,
+     * so concurrent callers cannot overshoot the limit, and gives it back once the
+     * stream completes, fails or is cancelled. The tenant's channel is opened only
+     * once the stream is subscribed and dropped again when its last subscriber goes
+     * away.
+     */
+    public Flux<ServerSentEvent<Object>> subscribe(UUID tenantId) {
+        if (connections.incrementAndGet() > maxConnections) {
+            connections.decrementAndGet();
+            throw new IllegalStateException("Too many realtime subscribers");
+        }
+        AtomicBoolean released = new AtomicBoolean();
+        return Flux.defer(() -> {
+            TenantChannel channel = join(tenantId);
+            Flux<ServerSentEvent<Object>> events = channel.sink.asFlux()
+                .map(event -> ServerSentEvent.<Object>builder(event)
+                    .event("event")
+                    .id(String.valueOf(event.getId()))
+                    .build());
+            return Flux.merge(events, channel.metrics)
+                .onBackpressureBuffer(subscriberBuffer, message -> dropped.increment(), BufferOverflowStrategy.DROP_OLDEST)
+                .doFinally(signal -> leave(tenantId, channel));
+        }).doFinally(signal -> {
+            if (released.compareAndSet(false, true)) {
+                connections.decrementAndGet();
+            }
+        });
+    }
+
+    private TenantChannel join(UUID tenantId) {
+        return channels.compute(tenantId, (id, existing) -> {
+            TenantChannel channel = existing == null ? new TenantChannel(id) : existing;
+            channel.subscribers++;
+            return channel;
+        });
+    }
+
+    private void leave(UUID tenantId, TenantChannel channel) {
+        channels.computeIfPresent(tenantId, (id, current) -> {
+            if (current != channel || --current.subscribers > 0) {
+                return current;
+            }
+            synchronized (current) {
+                current.sink.tryEmitComplete();
+            }
+            return null;
+        });
+    }
+
+    private class TenantChannel {
+
+        private final Sinks.Many<AnalyticsEventDto> sink = Sinks.many().multicast().directBestEffort();
+        private final LongAdder newEvents = new LongAdder();
+        private final ConcurrentHashMap<String, LongAdder> newEventsByType = new ConcurrentHashMap<>();
+        private final Flux<ServerSentEvent<Object>> metrics;
+        // Guarded by the channel map's per-key compute
+        private int subscribers;
+
+        TenantChannel(UUID tenantId) {
+            // One ticker per tenant, shared by all of its subscribers
+            this.metrics = Flux.interval(metricsInterval)
+                .map(tick -> ServerSentEvent.<Object>builder(delta(tenantId)).event("metrics").build())
+                .share();
+        }
+
+        void publish(AnalyticsEventDto event) {
+            newEvents.increment();
+            newEventsByType.computeIfAbsent(String.valueOf(event.getEventType()), type -> new LongAdder()).increment();
+            // Sinks reject concurrent emission, so emitters take turns
+            synchronized (this) {
+                sink.tryEmitNext(event);
+            }
+        }
+
+        private Map<String, Object> delta(UUID tenantId) {
+            Map<String, Long> byType = new HashMap<>();
+            newEventsByType.forEach((type, count) -> {
+                long value = count.sumThenReset();
+                if (value > 0) {
+                    byType.put(type, value);
+                }
+            });
+            Map<String, Object> delta = new HashMap<>();
+            delta.put("tenantId", tenantId);
+            delta.put("newEvents", newEvents.sumThenReset());
+            delta.put("newEventsByType", byType);
+            delta.put("timestamp", LocalDateTime.now());
+            return delta;
+        }
+    }
+}
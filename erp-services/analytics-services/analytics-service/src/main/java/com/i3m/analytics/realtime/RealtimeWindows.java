@@ -0,0 +1,66 @@
+package com.i3m.analytics.realtime;
+
+import com.i3m.analytics.dto.AnalyticsEventDto;
+import com.i3m.analytics.store.EventTime;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Locale;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Per-tenant sliding-window counters backing the realtime metrics endpoint.
+ */
+@Component
+public class RealtimeWindows {
+
+    private static final Pattern WINDOW = Pattern.compile("(\\d+)\\s*(s|m|h)");
+
+    private final long slotMillis;
+    private final int slotCount;
+    private final ConcurrentHashMap<UUID, SlidingWindowCounter> counters = new ConcurrentHashMap<>();
+
+    public RealtimeWindows(@Value("${analytics.realtime.window-slot-seconds:10}") long slotSeconds,
+                           @Value("${analytics.realtime.max-window-seconds:3600}") long maxWindowSeconds) {
+        this.slotMillis = slotSeconds * 1000L;
+        // One spare slot so a full window never reads the slot currently being recycled
+        this.slotCount = (int) (maxWindowSeconds / slotSeconds) + 1;
+    }
+
+    public void record(AnalyticsEventDto event) {
+        counters.computeIfAbsent(event.getTenantId(), id -> new SlidingWindowCounter(slotMillis, slotCount))
+            .record(EventTime.toMillis(event.getTimestamp()), event.getUserId(), event.getValue());
+    }
+
+    public SlidingWindowCounter.WindowStats query(UUID tenantId, long windowMillis) {
+        SlidingWindowCounter counter = counters.get(tenantId);
+        if (counter == null) {
+            return new SlidingWindowCounter.WindowStats(0, 0, 0.0, 0.0);
+        }
+        return counter.query(EventTime.nowMillis(), windowMillis);
+    }
+
+    /**
+     * Parses a window such as {@code 30s}, {@code 5m} or {@code 1h} into milliseconds.
+     */
+    public long parseWindow(String window) {
+        Matcher matcher = WINDOW.matcher(window.trim().toLowerCase(Locale.ROOT));
+        if (!matcher.matches()) {
+            throw new IllegalArgumentException("Unsupported window: " + window);
+        }
+        long amount = Long.parseLong(matcher.group(1));
+        long millis = switch (matcher.group(2)) {
+            case "s" -> amount * 1000L;
+            case "m" -> amount * 60_000L;
+            default -> amount * 3_600_000L;
+        };
+        if (millis < slotMillis || millis > (slotCount - 1) * slotMillis) {
+            throw new IllegalArgumentException("Window must be between " + slotMillis / 1000 + "s and "
+                + (slotCount - 1) * slotMillis / 1000 + "s: " + window);
+        }
+        return millis;
+    }
+}
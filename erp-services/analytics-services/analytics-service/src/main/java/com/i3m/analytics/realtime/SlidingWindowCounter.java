@@ -0,0 +1,87 @@
+package com.i3m.analytics.realtime;
+
+import com.i3m.analytics.sketch.HyperLogLog;
+
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Ring of fixed-width time slots holding event counts, value sums and a
+ * distinct-user sketch. Slots are recycled by swapping in a fresh slot with CAS
+ * when the ring wraps, so recording never locks and window queries are O(slots).
+ */
+public class SlidingWindowCounter {
+
+    private static final int SKETCH_PRECISION = 10;
+
+    private final long slotMillis;
+    private final AtomicReferenceArray<Slot> slots;
+
+    public SlidingWindowCounter(long slotMillis, int slotCount) {
+        this.slotMillis = slotMillis;
+        this.slots = new AtomicReferenceArray<>(slotCount);
+    }
+
+    public void record(long timestampMillis, UUID userId, Double value) {
+        long epoch = Math.floorDiv(timestampMillis, slotMillis);
+        int index = (int) Math.floorMod(epoch, (long) slots.length());
+        Slot slot = slots.get(index);
+        while (slot == null || slot.epoch < epoch) {
+            Slot fresh = new Slot(epoch);
+            if (slots.compareAndSet(index, slot, fresh)) {
+                slot = fresh;
+                break;
+            }
+            slot = slots.get(index);
+        }
+        if (slot.epoch != epoch) {
+            // Older than the ring can hold
+            return;
+        }
+        slot.count.increment();
+        if (value != null) {
+            slot.valueSum.add(value);
+        }
+        if (userId != null) {
+            slot.users.offer(userId);
+        }
+    }
+
+    /**
+     * Aggregates the slots covering the last {@code windowMillis} up to {@code nowMillis}.
+     */
+    public WindowStats query(long nowMillis, long windowMillis) {
+        long lastEpoch = Math.floorDiv(nowMillis, slotMillis);
+        long slotsInWindow = Math.min(slots.length(), Math.max(1, windowMillis / slotMillis));
+        long firstEpoch = lastEpoch - slotsInWindow + 1;
+        long count = 0;
+        double valueSum = 0;
+        HyperLogLog users = new HyperLogLog(SKETCH_PRECISION);
+        for (int i = 0; i < slots.length(); i++) {
+            Slot slot = slots.get(i);
+            if (slot != null && slot.epoch >= firstEpoch && slot.epoch <= lastEpoch) {
+                count += slot.count.sum();
+                valueSum += slot.valueSum.sum();
+                users.merge(slot.users);
+            }
+        }
+        double seconds = slotsInWindow * slotMillis / 1000.0;
+        return new WindowStats(count, users.estimate(), valueSum, count / seconds);
+    }
+
+    private static final class Slot {
+
+        private final long epoch;
+        private final LongAdder count = new LongAdder();
+        private final DoubleAdder valueSum = new DoubleAdder();
+        private final HyperLogLog users = new HyperLogLog(SKETCH_PRECISION);
+
+        Slot(long epoch) {
+            this.epoch = epoch;
+        }
+    }
+
+    public record WindowStats(long events, long uniqueUsers, double valueSum, double eventsPerSecond) {}
+}
@@ -0,0 +1,21 @@
+package com.i3m.analytics.repository;
+
+import com.i3m.analytics.model.Dashboard;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+@Repository
+public interface DashboardRepository extends JpaRepository<Dashboard, UUID> {
+    
+    Optional<Dashboard> findByIdAndTenantId(UUID id, UUID tenantId);
+    
+    List<Dashboard> findByTenantIdOrderByCreatedAtDesc(UUID tenantId);
+    
+    long countByTenantId(UUID tenantId);
+    
+    long countByTenantIdAndIsPublicTrue(UUID tenantId);
+}
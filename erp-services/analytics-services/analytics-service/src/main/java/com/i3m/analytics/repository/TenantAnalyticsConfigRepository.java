@@ -0,0 +1,11 @@
+package com.i3m.analytics.repository;
+
+import com.i3m.analytics.model.TenantAnalyticsConfig;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.UUID;
+
+@Repository
+public interface TenantAnalyticsConfigRepository extends JpaRepository<TenantAnalyticsConfig, UUID> {
+}
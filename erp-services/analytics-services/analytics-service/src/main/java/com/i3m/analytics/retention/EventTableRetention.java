@@ -0,0 +1,162 @@
+package com.i3m.analytics.retention;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Expires rows of {@code analytics.analytics_events}. When the table is range
+ * partitioned on {@code timestamp}, partitions whose upper bound is past every
+ * tenant's retention are detached and dropped whole. Remaining expired rows are
+ * deleted in bounded chunks with a pause between them, and a run stops after a
+ * fixed number of chunks so it never competes with ingest for long.
+ */
+@Component
+public class EventTableRetention {
+
+    private static final Logger log = LoggerFactory.getLogger(EventTableRetention.class);
+
+    private static final String PARTITION_KEY_SQL = "SELECT pg_get_partkeydef(p.oid) "
+        + "FROM pg_partitioned_table pt "
+        + "JOIN pg_class p ON p.oid = pt.partrelid "
+        + "JOIN pg_namespace n ON n.oid = p.relnamespace "
+        + "WHERE n.nspname = 'analytics' AND p.relname = 'analytics_events'";
+
+    private static final String PARTITIONS_SQL = "SELECT c.relname, pg_get_expr(c.relpartbound, c.oid) "
+        + "FROM pg_inherits i "
+        + "JOIN pg_class c ON c.oid = i.inhrelid "
+        + "JOIN pg_class p ON p.oid = i.inhparent "
+        + "JOIN pg_namespace n ON n.oid = p.relnamespace "
+        + "WHERE n.nspname = 'analytics' AND p.relname = 'analytics_events'";
+
+    private static final Pattern RANGE_BOUND = Pattern.compile("FOR VALUES FROM \\('[^']*'\\) TO \\('([^']+)'\\)");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int chunkSize;
+    private final long chunkPauseMillis;
+    private final int maxChunksPerRun;
+    private final Counter deletedRows;
+    private final Counter droppedPartitions;
+
+    public EventTableRetention(JdbcTemplate jdbcTemplate,
+                               MeterRegistry meterRegistry,
+                               @Value("${analytics.retention.delete-chunk-size:5000}") int chunkSize,
+                               @Value("${analytics.retention.chunk-pause-ms:200}") long chunkPauseMillis,
+                               @Value("${analytics.retention.max-chunks-per-run:200}") int maxChunksPerRun) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.chunkSize = chunkSize;
+        this.chunkPauseMillis = chunkPauseMillis;
+        this.maxChunksPerRun = maxChunksPerRun;
+        this.deletedRows = Counter.builder("analytics.retention.rows.deleted").register(meterRegistry);
+        this.droppedPartitions = Counter.builder("analytics.retention.partitions.dropped").register(meterRegistry);
+    }
+
+    /**
+     * Applies retention as of {@code now}.
+     *
+     * @param defaultRetentionDays retention of tenants without an override
+     * @param overrides            per-tenant retention in days
+     */
+    public void enforce(LocalDateTime now, int defaultRetentionDays, Map<UUID, Integer> overrides) {
+        int longest = Math.max(defaultRetentionDays,
+            overrides.values().stream().mapToInt(Integer::intValue).max().orElse(0));
+        dropExpiredPartitions(now.minusDays(longest));
+
+        int[] budget = {maxChunksPerRun};
+        List<UUID> overridden = new ArrayList<>(overrides.keySet());
+        deleteExpired(null, overridden, now.minusDays(defaultRetentionDays), budget);
+        overrides.forEach((tenantId, days) -> deleteExpired(tenantId, List.of(), now.minusDays(days), budget));
+    }
+
+    private void dropExpiredPartitions(LocalDateTime cutoff) {
+        List<String> keys = jdbcTemplate.queryForList(PARTITION_KEY_SQL, String.class);
+        if (keys.isEmpty() || !keys.get(0).matches("(?i)RANGE \\(\"?timestamp\"?\\)")) {
+            return;
+        }
+        jdbcTemplate.query(PARTITIONS_SQL, (rs, rowNum) -> new String[] {rs.getString(1), rs.getString(2)})
+            .forEach(partition -> {
+                LocalDateTime upper = upperBound(partition[1]);
+                if (upper == null || upper.isAfter(cutoff)) {
+                    return;
+                }
+                String table = "analytics." + quote(partition[0]);
+                jdbcTemplate.execute("ALTER TABLE analytics.analytics_events DETACH PARTITION " + table);
+                jdbcTemplate.execute("DROP TABLE " + table);
+                droppedPartitions.increment();
+                log.info("Dropped expired analytics partition {} (upper bound {})", partition[0], upper);
+            });
+    }
+
+    /**
+     * Deletes rows older than the cutoff for one tenant, or for every tenant except
+     * {@code excluded} when {@code tenantId} is null, spending chunks from {@code budget}.
+     */
+    private void deleteExpired(UUID tenantId, List<UUID> excluded, LocalDateTime cutoff, int[] budget) {
+        StringBuilder where = new StringBuilder("timestamp < ?");
+        List<Object> args = new ArrayList<>();
+        args.add(Timestamp.valueOf(cutoff));
+        if (tenantId != null) {
+            where.append(" AND tenant_id = ?");
+            args.add(tenantId);
+        } else if (!excluded.isEmpty()) {
+            where.append(" AND tenant_id NOT IN (")
+                .append(String.join(", ", Collections.nCopies(excluded.size(), "?")))
+                .append(')');
+            args.addAll(excluded);
+        }
+        args.add(chunkSize);
+        String sql = "DELETE FROM analytics.analytics_events WHERE id IN "
+            + "(SELECT id FROM analytics.analytics_events WHERE " + where + " LIMIT ?)";
+
+        while (budget[0] > 0) {
+            budget[0]--;
+            int deleted = jdbcTemplate.update(sql, args.toArray());
+            deletedRows.increment(deleted);
+            if (deleted < chunkSize) {
+                return;
+            }
+            try {
+                Thread.sleep(chunkPauseMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private static LocalDateTime upperBound(String bound) {
+        Matcher matcher = bound == null ? null : RANGE_BOUND.matcher(bound);
+        if (matcher == null || !matcher.find()) {
+            return null;
+        }
+        String value = matcher.group(1);
+        try {
+            if (value.length() == 10) {
+                return LocalDate.parse(value).atStartOfDay();
+            }
+            return LocalDateTime.parse(value.substring(0, 19).replace(' ', 'T'));
+        } catch (DateTimeParseException | IndexOutOfBoundsException e) {
+            return null;
+        }
+    }
+
+    private static String quote(String identifier) {
+        return '"' + identifier.replace("\"", "\"\"") + '"';
+    }
+}
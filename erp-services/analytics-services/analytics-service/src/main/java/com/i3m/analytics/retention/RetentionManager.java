@@ -0,0 +1,166 @@
+package com.i3m.analytics.retention;
+
+import com.i3m.analytics.cohort.UserBitmapStore;
+import com.i3m.analytics.model.TenantAnalyticsConfig;
+import com.i3m.analytics.repository.TenantAnalyticsConfigRepository;
+import com.i3m.analytics.rollup.DistributionStore;
+import com.i3m.analytics.rollup.RollupStore;
+import com.i3m.analytics.session.SessionStore;
+import com.i3m.analytics.store.AnalyticsEventStore;
+import com.i3m.analytics.store.EventTime;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Enforces per-tenant retention in the background. Expired time buckets are
+ * dropped from the in-memory store together with the session stats and user
+ * bitmaps built from them, and expired rows or partitions are removed from the
+ * events table. Rollups and value distributions are compacted first and their
+ * day cells are kept for the longer rollup retention, so expired events still
+ * answer coarse time series. Runs on its own thread,
+ * since the chunked table deletes pause between chunks and would otherwise hold
+ * up the other scheduled jobs. Per-tenant overrides are stored in
+ * {@code analytics.tenant_analytics_config} and re-read at the start of every
+ * run, so every instance applies the same retention; a run that cannot read
+ * them deletes nothing.
+ */
+@Component
+public class RetentionManager {
+
+    private static final Logger log = LoggerFactory.getLogger(RetentionManager.class);
+
+    private static final int MAX_RETENTION_DAYS = 36_500;
+
+    private final AnalyticsEventStore eventStore;
+    private final RollupStore rollupStore;
+    private final DistributionStore distributionStore;
+    private final UserBitmapStore userBitmapStore;
+    private final SessionStore sessionStore;
+    private final EventTableRetention eventTableRetention;
+    private final TenantAnalyticsConfigRepository configRepository;
+    private final int defaultRetentionDays;
+    private final int rollupRetentionDays;
+    private final long intervalMillis;
+    private final long initialDelayMillis;
+    private final Counter droppedEvents;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "analytics-retention");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public RetentionManager(AnalyticsEventStore eventStore,
+                            RollupStore rollupStore,
+                            DistributionStore distributionStore,
+                            UserBitmapStore userBitmapStore,
+                            SessionStore sessionStore,
+                            EventTableRetention eventTableRetention,
+                            TenantAnalyticsConfigRepository configRepository,
+                            MeterRegistry meterRegistry,
+                            @Value("${analytics.collection.retention-days:365}") int defaultRetentionDays,
+                            @Value("${analytics.retention.rollup-retention-days:1825}") int rollupRetentionDays,
+                            @Value("${analytics.retention.interval-ms:3600000}") long intervalMillis,
+                            @Value("${analytics.retention.initial-delay-ms:300000}") long initialDelayMillis) {
+        this.eventStore = eventStore;
+        this.rollupStore = rollupStore;
+        this.distributionStore = distributionStore;
+        this.userBitmapStore = userBitmapStore;
+        this.sessionStore = sessionStore;
+        this.eventTableRetention = eventTableRetention;
+        this.configRepository = configRepository;
+        this.defaultRetentionDays = defaultRetentionDays;
+        this.rollupRetentionDays = rollupRetentionDays;
+        this.intervalMillis = intervalMillis;
+        this.initialDelayMillis = initialDelayMillis;
+        this.droppedEvents = Counter.builder("analytics.retention.events.dropped").register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                enforce();
+            } catch (RuntimeException e) {
+                // A failure must not cancel the schedule
+                log.error("Retention run failed", e);
+            }
+        }, initialDelayMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        // Interrupts a chunk pause so shutdown is not held up by a long run
+        scheduler.shutdownNow();
+    }
+
+    public int getRetentionDays(UUID tenantId) {
+        return configRepository.findById(tenantId)
+            .map(TenantAnalyticsConfig::getRetentionDays)
+            .orElse(defaultRetentionDays);
+    }
+
+    public void setRetentionDays(UUID tenantId, int days) {
+        if (days <= 0 || days > MAX_RETENTION_DAYS) {
+            throw new IllegalArgumentException("retentionDays must be between 1 and " + MAX_RETENTION_DAYS);
+        }
+        TenantAnalyticsConfig config = configRepository.findById(tenantId)
+            .orElseGet(() -> new TenantAnalyticsConfig(tenantId, days));
+        config.setRetentionDays(days);
+        configRepository.save(config);
+    }
+
+    public void enforce() {
+        LocalDateTime now = EventTime.fromMillis(EventTime.nowMillis());
+        Map<UUID, Integer> overrides = new HashMap<>();
+        try {
+            configRepository.findAll().forEach(config -> overrides.put(config.getTenantId(), config.getRetentionDays()));
+        } catch (DataAccessException e) {
+            // Deleting with the default could remove rows a longer override still keeps
+            log.warn("Failed to read retention overrides, skipping this run", e);
+            return;
+        }
+
+        // Fold whatever is still fine-grained into day cells before the raw events go
+        rollupStore.compact();
+        distributionStore.compact();
+
+        Set<UUID> tenants = new HashSet<>(eventStore.tenants());
+        tenants.addAll(overrides.keySet());
+        long dropped = 0;
+        for (UUID tenantId : tenants) {
+            int days = overrides.getOrDefault(tenantId, defaultRetentionDays);
+            LocalDateTime cutoff = now.minusDays(days);
+            long cutoffMillis = EventTime.toMillis(cutoff);
+            long rollupCutoffMillis = EventTime.toMillis(now.minusDays(Math.max(days, rollupRetentionDays)));
+            dropped += eventStore.dropBefore(tenantId, cutoff);
+            rollupStore.dropBefore(tenantId, rollupCutoffMillis);
+            distributionStore.dropBefore(tenantId, rollupCutoffMillis);
+            sessionStore.dropBefore(tenantId, cutoffMillis);
+            userBitmapStore.dropBefore(tenantId, cutoffMillis);
+        }
+        droppedEvents.increment(dropped);
+
+        try {
+            eventTableRetention.enforce(now, defaultRetentionDays, overrides);
+        } catch (DataAccessException e) {
+            log.warn("Failed to expire analytics events in the database", e);
+        }
+    }
+}
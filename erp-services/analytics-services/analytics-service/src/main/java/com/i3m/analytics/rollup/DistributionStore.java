@@ -0,0 +1,154 @@
+package com.i3m.analytics.rollup;
+
+import com.i3m.analytics.dto.AnalyticsEventDto;
+import com.i3m.analytics.query.Granularity;
+import com.i3m.analytics.query.TimeRange;
+import com.i3m.analytics.store.EventTime;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.NavigableMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Value distributions keyed by tenant x eventName x time slice, updated on every
+ * ingest of an event that carries a value. Slices are hourly and are folded into
+ * daily slices once they pass the rollup hour retention, so percentiles and
+ * histograms over any range merge a bounded number of sketches.
+ */
+@Component
+public class DistributionStore {
+
+    private final double relativeAccuracy;
+    private final double[] histogramBounds;
+    private final long hourRetentionMillis;
+    private final ConcurrentHashMap<UUID, Tiers> distributions = new ConcurrentHashMap<>();
+
+    public DistributionStore(@Value("${analytics.distribution.relative-accuracy:0.01}") double relativeAccuracy,
+                             @Value("${analytics.distribution.histogram-bounds:0,10,50,100,250,500,1000,2500,5000,10000}")
+                             double[] histogramBounds,
+                             @Value("${analytics.rollup.hour-retention-days:7}") long hourRetentionDays) {
+        this.relativeAccuracy = relativeAccuracy;
+        this.histogramBounds = histogramBounds.clone();
+        Arrays.sort(this.histogramBounds);
+        this.hourRetentionMillis = hourRetentionDays * Granularity.DAY.getMillis();
+        // Fail at startup rather than on the first event
+        new ValueDistribution(relativeAccuracy, this.histogramBounds);
+    }
+
+    public void record(AnalyticsEventDto event) {
+        if (event.getValue() == null || event.getEventName() == null) {
+            return;
+        }
+        long timestamp = EventTime.toMillis(event.getTimestamp());
+        Granularity tier = EventTime.nowMillis() - timestamp > hourRetentionMillis ? Granularity.DAY : Granularity.HOUR;
+        distributions.computeIfAbsent(event.getTenantId(), id -> new Tiers())
+            .get(tier)
+            .computeIfAbsent(tier.truncate(timestamp), start -> new ConcurrentHashMap<>())
+            .computeIfAbsent(event.getEventName(), name -> newDistribution())
+            .add(event.getValue());
+    }
+
+    /**
+     * Takes a deleted event, or the previous version of an updated one, back out of
+     * the distribution it was recorded in. The hourly slice is tried before the
+     * daily one it may since have been folded into.
+     */
+    public boolean remove(AnalyticsEventDto event) {
+        Tiers tiers = event.getValue() == null || event.getEventName() == null
+            ? null : distributions.get(event.getTenantId());
+        if (tiers == null) {
+            return false;
+        }
+        long timestamp = EventTime.toMillis(event.getTimestamp());
+        for (Granularity tier : new Granularity[] {Granularity.HOUR, Granularity.DAY}) {
+            ConcurrentHashMap<String, ValueDistribution> slice = tiers.get(tier).get(tier.truncate(timestamp));
+            ValueDistribution distribution = slice == null ? null : slice.get(event.getEventName());
+            if (distribution != null && distribution.remove(event.getValue())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Merges the distributions of slices starting inside the range.
+     *
+     * @param eventName optional filter; all event names are merged when null
+     */
+    public ValueDistribution query(UUID tenantId, TimeRange range, String eventName) {
+        ValueDistribution merged = newDistribution();
+        Tiers tiers = distributions.get(tenantId);
+        if (tiers == null) {
+            return merged;
+        }
+        long from = range.startMillis();
+        long to = range.endMillis();
+        for (Granularity tier : new Granularity[] {Granularity.HOUR, Granularity.DAY}) {
+            long first = from == Long.MIN_VALUE ? Long.MIN_VALUE : tier.truncate(from);
+            tiers.get(tier).subMap(first, true, to, true).values().forEach(slice -> {
+                if (eventName != null) {
+                    ValueDistribution distribution = slice.get(eventName);
+                    if (distribution != null) {
+                        merged.addAll(distribution);
+                    }
+                } else {
+                    slice.values().forEach(merged::addAll);
+                }
+            });
+        }
+        return merged;
+    }
+
+    /**
+     * Drops a tenant's distributions in slices that end at or before the cutoff.
+     */
+    public void dropBefore(UUID tenantId, long cutoffMillis) {
+        Tiers tiers = distributions.get(tenantId);
+        if (tiers != null) {
+            tiers.hours.headMap(cutoffMillis - Granularity.HOUR.getMillis(), true).clear();
+            tiers.days.headMap(cutoffMillis - Granularity.DAY.getMillis(), true).clear();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${analytics.rollup.compaction-interval-ms:60000}")
+    public void compact() {
+        // Same horizon as the rollup hour tier so writers never target a slice being moved
+        long horizon = Granularity.DAY.truncate(EventTime.nowMillis() - hourRetentionMillis)
+            - Granularity.DAY.getMillis();
+        distributions.values().forEach(tiers -> {
+            NavigableMap<Long, ConcurrentHashMap<String, ValueDistribution>> expired =
+                tiers.hours.headMap(horizon, false);
+            for (Long start : expired.keySet()) {
+                ConcurrentHashMap<String, ValueDistribution> slice = expired.remove(start);
+                if (slice == null) {
+                    continue;
+                }
+                ConcurrentHashMap<String, ValueDistribution> target =
+                    tiers.days.computeIfAbsent(Granularity.DAY.truncate(start), s -> new ConcurrentHashMap<>());
+                slice.forEach((name, distribution) ->
+                    target.computeIfAbsent(name, n -> newDistribution()).addAll(distribution));
+            }
+        });
+    }
+
+    private ValueDistribution newDistribution() {
+        return new ValueDistribution(relativeAccuracy, histogramBounds);
+    }
+
+    private static final class Tiers {
+
+        final ConcurrentSkipListMap<Long, ConcurrentHashMap<String, ValueDistribution>> hours =
+            new ConcurrentSkipListMap<>();
+        final ConcurrentSkipListMap<Long, ConcurrentHashMap<String, ValueDistribution>> days =
+            new ConcurrentSkipListMap<>();
+
+        ConcurrentSkipListMap<Long, ConcurrentHashMap<String, ValueDistribution>> get(Granularity tier) {
+            return tier == Granularity.DAY ? days : hours;
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.i3m.analytics.rollup;
+
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Event count and value sum for one rollup cell.
+ */
+public class RollupCell {
+
+    private final LongAdder count = new LongAdder();
+    private final DoubleAdder valueSum = new DoubleAdder();
+
+    void add(Double value) {
+        count.increment();
+        if (value != null) {
+            valueSum.add(value);
+        }
+    }
+
+    /**
+     * Takes back one event recorded with {@code value}. Returns false, leaving the
+     * cell unchanged, when it holds no events.
+     */
+    boolean subtract(Double value) {
+        // Not atomic with concurrent adds, but the count can only dip below zero
+        // if two removals race for the last event
+        if (count.sum() <= 0) {
+            return false;
+        }
+        count.decrement();
+        if (value != null) {
+            valueSum.add(-value);
+        }
+        return true;
+    }
+
+    void addAll(RollupCell other) {
+        count.add(other.getCount());
+        valueSum.add(other.getValueSum());
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public double getValueSum() {
+        return valueSum.sum();
+    }
+}
@@ -0,0 +1,166 @@
+package com.i3m.analytics.rollup;
+
+import com.i3m.analytics.dto.AnalyticsEventDto;
+import com.i3m.analytics.query.EventDimensions;
+import com.i3m.analytics.query.Granularity;
+import com.i3m.analytics.query.TimeRange;
+import com.i3m.analytics.store.EventTime;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Counters keyed by tenant x eventType x eventName x configured dimensions x time
+ * bucket, updated on every ingest. Recent events land in minute cells; the
+ * compactor folds old minute slices into hours and old hours into days, so long
+ * time series read a few thousand cells instead of raw events.
+ */
+@Component
+public class RollupStore {
+
+    private static final String TOTAL = "total";
+
+    private final List<String> dimensions;
+    private final long minuteRetentionMillis;
+    private final long hourRetentionMillis;
+    private final ConcurrentHashMap<UUID, TenantRollup> rollups = new ConcurrentHashMap<>();
+
+    public RollupStore(@Value("${analytics.rollup.dimensions:country,deviceType}") String[] dimensions,
+                       @Value("${analytics.rollup.minute-retention-hours:6}") long minuteRetentionHours,
+                       @Value("${analytics.rollup.hour-retention-days:7}") long hourRetentionDays) {
+        this.dimensions = List.of(dimensions);
+        this.minuteRetentionMillis = minuteRetentionHours * Granularity.HOUR.getMillis();
+        this.hourRetentionMillis = hourRetentionDays * Granularity.DAY.getMillis();
+    }
+
+    public void record(AnalyticsEventDto event) {
+        long timestamp = EventTime.toMillis(event.getTimestamp());
+        rollups.computeIfAbsent(event.getTenantId(), id -> new TenantRollup())
+            .add(tierFor(timestamp), timestamp, cellKey(event), event.getValue());
+    }
+
+    /**
+     * Takes a deleted event, or the previous version of an updated one, back out of
+     * its cell. {@code event} must carry the values it was recorded with.
+     *
+     * @return false if no cell held the event
+     */
+    public boolean remove(AnalyticsEventDto event) {
+        TenantRollup rollup = rollups.get(event.getTenantId());
+        return rollup != null
+            && rollup.subtract(EventTime.toMillis(event.getTimestamp()), cellKey(event), event.getValue());
+    }
+
+    /**
+     * Returns counts and value sums per time bucket and group. Cells coarser than the
+     * requested granularity are reported at their own bucket start, and cells are
+     * included only when their bucket starts inside the range, so a range starting
+     * mid-hour or mid-day leaves out the coarse cell it starts in.
+     *
+     * @param groupBy   eventType, eventName, one of the configured dimensions, or null for a single total
+     * @param eventType optional filter
+     * @param eventName optional filter
+     */
+    public NavigableMap<Long, Map<String, RollupCell>> query(UUID tenantId, TimeRange range, Granularity granularity,
+                                                             String groupBy, String eventType, String eventName) {
+        int dimensionIndex = groupBy == null ? -1 : dimensions.indexOf(groupBy);
+        if (groupBy != null && dimensionIndex < 0 && !"eventType".equals(groupBy) && !"eventName".equals(groupBy)) {
+            throw new IllegalArgumentException("Dimension is not rolled up: " + groupBy);
+        }
+        NavigableMap<Long, Map<String, RollupCell>> series = new TreeMap<>();
+        TenantRollup rollup = rollups.get(tenantId);
+        if (rollup == null) {
+            return series;
+        }
+        long from = range.startMillis();
+        long to = range.endMillis();
+        for (Granularity tier : Granularity.values()) {
+            rollup.slices(tier, from, to).forEach((start, cells) -> {
+                long bucket = tier.getMillis() > granularity.getMillis() ? start : granularity.truncate(start);
+                Map<String, RollupCell> groups = series.computeIfAbsent(bucket, b -> new HashMap<>());
+                cells.forEach((key, cell) -> {
+                    if ((eventType != null && !eventType.equals(key.eventType()))
+                            || (eventName != null && !eventName.equals(key.eventName()))) {
+                        return;
+                    }
+                    String group = groupKey(key, groupBy, dimensionIndex);
+                    groups.computeIfAbsent(group == null ? "unknown" : group, g -> new RollupCell()).addAll(cell);
+                });
+            });
+        }
+        series.values().removeIf(Map::isEmpty);
+        return series;
+    }
+
+    /**
+     * Sums counts per group over the whole range.
+     */
+    public Map<String, Long> totals(UUID tenantId, TimeRange range, String groupBy) {
+        Map<String, Long> totals = new HashMap<>();
+        query(tenantId, range, Granularity.DAY, groupBy, null, null).values()
+            .forEach(groups -> groups.forEach((group, cell) -> totals.merge(group, cell.getCount(), Long::sum)));
+        return totals;
+    }
+
+    @Scheduled(fixedDelayString = "${analytics.rollup.compaction-interval-ms:60000}")
+    public void compact() {
+        long now = EventTime.nowMillis();
+        // Slices are only folded once they are a full bucket past the ingest horizon,
+        // so writers never target a slice that is being moved.
+        long minuteHorizon = Granularity.HOUR.truncate(now - minuteRetentionMillis) - Granularity.HOUR.getMillis();
+        long hourHorizon = Granularity.DAY.truncate(now - hourRetentionMillis) - Granularity.DAY.getMillis();
+        rollups.values().forEach(rollup -> {
+            rollup.fold(Granularity.MINUTE, Granularity.HOUR, minuteHorizon);
+            rollup.fold(Granularity.HOUR, Granularity.DAY, hourHorizon);
+        });
+    }
+
+    /**
+     * Drops a tenant's cells in slices that end at or before the cutoff.
+     */
+    public void dropBefore(UUID tenantId, long cutoffMillis) {
+        TenantRollup rollup = rollups.get(tenantId);
+        if (rollup != null) {
+            rollup.dropBefore(cutoffMillis);
+        }
+    }
+
+    public List<String> getDimensions() {
+        return dimensions;
+    }
+
+    private TenantRollup.CellKey cellKey(AnalyticsEventDto event) {
+        List<String> values = new ArrayList<>(dimensions.size());
+        for (String dimension : dimensions) {
+            values.add(EventDimensions.valueOf(event, dimension));
+        }
+        return new TenantRollup.CellKey(event.getEventType(), event.getEventName(), values);
+    }
+
+    private Granularity tierFor(long timestampMillis) {
+        long age = EventTime.nowMillis() - timestampMillis;
+        if (age > hourRetentionMillis) {
+            return Granularity.DAY;
+        }
+        return age > minuteRetentionMillis ? Granularity.HOUR : Granularity.MINUTE;
+    }
+
+    private static String groupKey(TenantRollup.CellKey key, String groupBy, int dimensionIndex) {
+        if (groupBy == null) {
+            return TOTAL;
+        }
+        if (dimensionIndex >= 0) {
+            return key.dimensions().get(dimensionIndex);
+        }
+        return "eventType".equals(groupBy) ? key.eventType() : key.eventName();
+    }
+}
@@ -0,0 +1,83 @@
+package com.i3m.analytics.rollup;
+
+import com.i3m.analytics.query.Granularity;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Rollup cells of one tenant. Each granularity tier maps a slice start time to
+ * the cells recorded in that slice.
+ */
+class TenantRollup {
+
+    private final Map<Granularity, ConcurrentSkipListMap<Long, ConcurrentHashMap<CellKey, RollupCell>>> tiers =
+        new EnumMap<>(Granularity.class);
+
+    TenantRollup() {
+        for (Granularity granularity : Granularity.values()) {
+            tiers.put(granularity, new ConcurrentSkipListMap<>());
+        }
+    }
+
+    void add(Granularity tier, long timestampMillis, CellKey key, Double value) {
+        tiers.get(tier)
+            .computeIfAbsent(tier.truncate(timestampMillis), start -> new ConcurrentHashMap<>())
+            .computeIfAbsent(key, k -> new RollupCell())
+            .add(value);
+    }
+
+    /**
+     * Takes one event back out of the finest tier whose slice covering
+     * {@code timestampMillis} holds a cell for {@code key}. Compaction may already
+     * have folded the slice the event was recorded in, and late events go straight
+     * to a coarser tier, so the tiers are tried from finest to coarsest.
+     */
+    boolean subtract(long timestampMillis, CellKey key, Double value) {
+        for (Granularity tier : Granularity.values()) {
+            ConcurrentHashMap<CellKey, RollupCell> cells = tiers.get(tier).get(tier.truncate(timestampMillis));
+            RollupCell cell = cells == null ? null : cells.get(key);
+            if (cell != null && cell.subtract(value)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Moves every slice of the {@code from} tier that starts before {@code before}
+     * into the coarser {@code to} tier.
+     */
+    int fold(Granularity from, Granularity to, long before) {
+        NavigableMap<Long, ConcurrentHashMap<CellKey, RollupCell>> expired = tiers.get(from).headMap(before, false);
+        int folded = 0;
+        for (Long start : expired.keySet()) {
+            ConcurrentHashMap<CellKey, RollupCell> cells = expired.remove(start);
+            if (cells == null) {
+                continue;
+            }
+            ConcurrentHashMap<CellKey, RollupCell> target =
+                tiers.get(to).computeIfAbsent(to.truncate(start), s -> new ConcurrentHashMap<>());
+            cells.forEach((key, cell) -> target.computeIfAbsent(key, k -> new RollupCell()).addAll(cell));
+            folded++;
+        }
+        return folded;
+    }
+
+    void dropBefore(long cutoffMillis) {
+        tiers.forEach((tier, slices) -> slices.headMap(cutoffMillis - tier.getMillis(), true).clear());
+    }
+
+    /**
+     * Slices of a tier starting in [from, to].
+     */
+    NavigableMap<Long, ConcurrentHashMap<CellKey, RollupCell>> slices(Granularity tier, long from, long to) {
+        return tiers.get(tier).subMap(from, true, to, true);
+    }
+
+    record CellKey(String eventType, String eventName, List<String> dimensions) {}
+}
@@ -0,0 +1,49 @@
+package com.i3m.analytics.rollup;
+
+import com.i3m.analytics.sketch.QuantileSketch;
+import com.i3m.analytics.sketch.ValueHistogram;
+
+/**
+ * Quantile sketch and fixed-bucket histogram over event values for one
+ * event name and time slice.
+ */
+public class ValueDistribution {
+
+    private final QuantileSketch quantiles;
+    private final ValueHistogram histogram;
+
+    ValueDistribution(double relativeAccuracy, double[] histogramBounds) {
+        this.quantiles = new QuantileSketch(relativeAccuracy);
+        this.histogram = new ValueHistogram(histogramBounds);
+    }
+
+    void add(double value) {
+        quantiles.add(value);
+        histogram.add(value);
+    }
+
+    boolean remove(double value) {
+        if (!quantiles.remove(value)) {
+            return false;
+        }
+        histogram.remove(value);
+        return true;
+    }
+
+    void addAll(ValueDistribution other) {
+        quantiles.merge(other.quantiles);
+        histogram.merge(other.histogram);
+    }
+
+    public QuantileSketch getQuantiles() {
+        return quantiles;
+    }
+
+    public ValueHistogram getHistogram() {
+        return histogram;
+    }
+
+    public long getCount() {
+        return quantiles.getCount();
+    }
+}
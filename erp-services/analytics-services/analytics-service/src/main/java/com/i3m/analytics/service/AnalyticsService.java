@@ -1,26 +1,131 @@
 package com.i3m.analytics.service;
 
+import com.i3m.analytics.cohort.Cohort;
+import com.i3m.analytics.cohort.FunnelStep;
+import com.i3m.analytics.cohort.UserBitmapStore;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.i3m.analytics.dashboard.DashboardViewCounter;
+import com.i3m.analytics.dashboard.WidgetExecutor;
+import com.i3m.analytics.dashboard.WidgetResultCache;
 import com.i3m.analytics.dto.AnalyticsEventDto;
 import com.i3m.analytics.dto.DashboardDto;
+import com.i3m.analytics.export.EventExportWriter;
+import com.i3m.analytics.export.ExportFormat;
+import com.i3m.analytics.ingest.EventBatchWriter;
+import com.i3m.analytics.ingest.EventDeduplicator;
+import com.i3m.analytics.ingest.IngestResult;
+import com.i3m.analytics.model.Dashboard;
+import com.i3m.analytics.query.AggregationEngine;
+import com.i3m.analytics.query.AggregationRequest;
+import com.i3m.analytics.query.AggregationResult;
+import com.i3m.analytics.query.EventFilter;
+import com.i3m.analytics.query.Granularity;
+import com.i3m.analytics.query.GroupByQuery;
+import com.i3m.analytics.query.GroupByResult;
+import com.i3m.analytics.query.Measure;
+import com.i3m.analytics.query.TimeRange;
+import com.i3m.analytics.realtime.RealtimeBroadcaster;
+import com.i3m.analytics.realtime.RealtimeWindows;
+import com.i3m.analytics.realtime.SlidingWindowCounter;
+import com.i3m.analytics.repository.DashboardRepository;
+import com.i3m.analytics.retention.RetentionManager;
+import com.i3m.analytics.rollup.DistributionStore;
+import com.i3m.analytics.rollup.RollupCell;
+import com.i3m.analytics.rollup.RollupStore;
+import com.i3m.analytics.rollup.ValueDistribution;
+import com.i3m.analytics.session.SessionStore;
+import com.i3m.analytics.session.SessionSummary;
+import com.i3m.analytics.session.Sessionizer;
+import com.i3m.analytics.sketch.QuantileSketch;
+import com.i3m.analytics.sketch.ValueHistogram;
+import com.i3m.analytics.store.AnalyticsEventStore;
+import com.i3m.analytics.store.EventCursor;
+import com.i3m.analytics.store.EventTime;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Stream;
 
 @Service
 public class AnalyticsService {
     
+    private static final List<String> DEFAULT_KPIS = List.of("totalEvents", "uniqueUsers");
+    private static final List<String> DEFAULT_REALTIME_WINDOWS = List.of("1m", "5m", "1h");
+    private static final Map<String, Double> PERCENTILE_METRICS = Map.of("p50", 0.5, "p95", 0.95, "p99", 0.99);
+    private static final String HISTOGRAM_METRIC = "histogram";
+    private static final String SESSIONS_METRIC = "sessions";
+    private static final UUID SAMPLE_TENANT_ID = UUID.fromString("00000000-0000-0000-0000-000000000000");
+    private static final TypeReference<List<DashboardDto.WidgetDto>> WIDGETS_TYPE = new TypeReference<>() {};
+    private static final TypeReference<Map<String, Object>> MAP_TYPE = new TypeReference<>() {};
+    
     // In-memory storage for demo purposes
-    private final Map<UUID, AnalyticsEventDto> events = new HashMap<>();
-    private final Map<UUID, DashboardDto> dashboards = new HashMap<>();
+    private final AnalyticsEventStore eventStore;
+    private final AggregationEngine aggregationEngine;
+    private final RollupStore rollupStore;
+    private final DistributionStore distributionStore;
+    private final UserBitmapStore userBitmapStore;
+    private final Sessionizer sessionizer;
+    private final SessionStore sessionStore;
+    private final RetentionManager retentionManager;
+    private final WidgetResultCache widgetResultCache;
+    private final WidgetExecutor widgetExecutor;
+    private final DashboardViewCounter dashboardViewCounter;
+    private final EventBatchWriter eventBatchWriter;
+    private final EventDeduplicator eventDeduplicator;
+    private final EventExportWriter eventExportWriter;
+    private final RealtimeBroadcaster realtimeBroadcaster;
+    private final RealtimeWindows realtimeWindows;
+    private final DashboardRepository dashboardRepository;
+    private final ObjectMapper objectMapper;
     
-    public AnalyticsService() {
+    public AnalyticsService(AnalyticsEventStore eventStore, AggregationEngine aggregationEngine,
+                            RollupStore rollupStore, DistributionStore distributionStore,
+                            UserBitmapStore userBitmapStore, Sessionizer sessionizer,
+                            SessionStore sessionStore, RetentionManager retentionManager,
+                            WidgetResultCache widgetResultCache, WidgetExecutor widgetExecutor,
+                            DashboardViewCounter dashboardViewCounter,
+                            EventBatchWriter eventBatchWriter, EventDeduplicator eventDeduplicator,
+                            EventExportWriter eventExportWriter,
+                            RealtimeBroadcaster realtimeBroadcaster, RealtimeWindows realtimeWindows,
+                            DashboardRepository dashboardRepository, ObjectMapper objectMapper) {
+        this.eventStore = eventStore;
+        this.aggregationEngine = aggregationEngine;
+        this.rollupStore = rollupStore;
+        this.distributionStore = distributionStore;
+        this.userBitmapStore = userBitmapStore;
+        this.sessionizer = sessionizer;
+        this.sessionStore = sessionStore;
+        this.retentionManager = retentionManager;
+        this.widgetResultCache = widgetResultCache;
+        this.widgetExecutor = widgetExecutor;
+        this.dashboardViewCounter = dashboardViewCounter;
+        this.eventBatchWriter = eventBatchWriter;
+        this.eventDeduplicator = eventDeduplicator;
+        this.eventExportWriter = eventExportWriter;
+        this.realtimeBroadcaster = realtimeBroadcaster;
+        this.realtimeWindows = realtimeWindows;
+        this.dashboardRepository = dashboardRepository;
+        this.objectMapper = objectMapper;
         // Initialize with some sample data
         initializeSampleData();
     }
     
     private void initializeSampleData() {
-        UUID tenantId = UUID.fromString("00000000-0000-0000-0000-000000000000");
+        UUID tenantId = SAMPLE_TENANT_ID;
         
         // Sample event
         AnalyticsEventDto event = new AnalyticsEventDto();
@@ -39,63 +144,72 @@ public class AnalyticsService {
         properties.put("ip", "192.168.1.1");
         event.setProperties(properties);
         
-        events.put(event.getId(), event);
-        
-        // Sample dashboard
+        index(event);
+    }
+    
+    /**
+     * Seeds the sample dashboard once the schema is available, unless the sample
+     * tenant already has dashboards from an earlier run.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void initializeSampleDashboard() {
+        if (dashboardRepository.countByTenantId(SAMPLE_TENANT_ID) > 0) {
+            return;
+        }
         DashboardDto dashboard = new DashboardDto();
-        dashboard.setId(UUID.randomUUID());
         dashboard.setName("Main Dashboard");
         dashboard.setDescription("Main analytics dashboard");
-        dashboard.setTenantId(tenantId);
         dashboard.setCreatedBy(UUID.randomUUID());
         dashboard.setPublic(true);
         dashboard.setDefault(true);
-        dashboard.setCreatedAt(LocalDateTime.now());
-        dashboard.setUpdatedAt(LocalDateTime.now());
-        
-        dashboards.put(dashboard.getId(), dashboard);
+        createDashboard(SAMPLE_TENANT_ID, dashboard);
     }
     
-    public AnalyticsEventDto createEvent(UUID tenantId, AnalyticsEventDto eventDto) {
-        eventDto.setId(UUID.randomUUID());
+    private void prepare(UUID tenantId, AnalyticsEventDto eventDto) {
+        if (eventDto.getEventType() == null || eventDto.getEventType().isBlank()
+                || eventDto.getEventName() == null || eventDto.getEventName().isBlank()) {
+            throw new IllegalArgumentException("Event type and event name are required");
+        }
+        // Stored timestamps have millisecond precision
+        LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.MILLIS);
+        // A client-supplied id is kept so retries of the same event can be recognised
+        if (eventDto.getId() == null) {
+            eventDto.setId(UUID.randomUUID());
+        }
         eventDto.setTenantId(tenantId);
-        eventDto.setTimestamp(LocalDateTime.now());
-        eventDto.setCreatedAt(LocalDateTime.now());
-        eventDto.setUpdatedAt(LocalDateTime.now());
-        events.put(eventDto.getId(), eventDto);
-        return eventDto;
+        eventDto.setTimestamp(now);
+        eventDto.setCreatedAt(now);
+        eventDto.setUpdatedAt(now);
+    }
+    
+    private void index(AnalyticsEventDto event) {
+        eventStore.add(event);
+        rollupStore.record(event);
+        distributionStore.record(event);
+        userBitmapStore.record(event);
+        sessionizer.record(event);
+        realtimeWindows.record(event);
+        realtimeBroadcaster.publish(event);
     }
     
     public List<AnalyticsEventDto> getEvents(UUID tenantId, String eventType, UUID userId, 
                                            LocalDateTime startDate, LocalDateTime endDate) {
-        List<AnalyticsEventDto> filteredEvents = new ArrayList<>(events.values());
-        
-        // Apply filters
-        filteredEvents = filteredEvents.stream()
-            .filter(event -> tenantId.equals(event.getTenantId()))
+        // Tenant and date range are resolved by the store, newest first
+        return eventStore.scan(tenantId, startDate, endDate, true)
             .filter(event -> eventType == null || eventType.equals(event.getEventType()))
             .filter(event -> userId == null || userId.equals(event.getUserId()))
-            .filter(event -> startDate == null || !event.getTimestamp().isBefore(startDate))
-            .filter(event -> endDate == null || !event.getTimestamp().isAfter(endDate))
-            .sorted(Comparator.comparing(AnalyticsEventDto::getTimestamp).reversed())
             .toList();
-        
-        return filteredEvents;
     }
     
     public AnalyticsEventDto getEvent(UUID tenantId, UUID eventId) {
-        AnalyticsEventDto event = events.get(eventId);
-        if (event == null || !tenantId.equals(event.getTenantId())) {
-            throw new RuntimeException("Event not found with id: " + eventId);
-        }
-        return event;
+        return eventStore.get(tenantId, eventId)
+            .orElseThrow(() -> new RuntimeException("Event not found with id: " + eventId));
     }
     
     public AnalyticsEventDto updateEvent(UUID tenantId, UUID eventId, AnalyticsEventDto eventDto) {
-        AnalyticsEventDto existingEvent = events.get(eventId);
-        if (existingEvent == null || !tenantId.equals(existingEvent.getTenantId())) {
-            throw new RuntimeException("Event not found with id: " + eventId);
-        }
+        // Reads decode a fresh copy, so the previous version stays intact for retraction
+        AnalyticsEventDto previous = getEvent(tenantId, eventId);
+        AnalyticsEventDto existingEvent = getEvent(tenantId, eventId);
         
         // Update fields
         existingEvent.setEventType(eventDto.getEventType());
@@ -107,102 +221,304 @@ public class AnalyticsService {
         existingEvent.setMetadata(eventDto.getMetadata());
         existingEvent.setUpdatedAt(LocalDateTime.now());
         
-        events.put(eventId, existingEvent);
+        // The table is written first; memory only changes once that succeeded
+        eventBatchWriter.update(existingEvent);
+        // Stored events are compact copies, so the update is written back
+        eventStore.add(existingEvent);
+        boolean sessionOpen = retract(previous);
+        rollupStore.record(existingEvent);
+        distributionStore.record(existingEvent);
+        userBitmapStore.record(existingEvent);
+        if (sessionOpen) {
+            sessionizer.record(existingEvent);
+        }
         return existingEvent;
     }
     
     public void deleteEvent(UUID tenantId, UUID eventId) {
-        AnalyticsEventDto event = events.get(eventId);
-        if (event == null || !tenantId.equals(event.getTenantId())) {
+        AnalyticsEventDto event = getEvent(tenantId, eventId);
+        // The table is written first; memory only changes once that succeeded
+        eventBatchWriter.delete(tenantId, eventId);
+        if (!eventStore.remove(tenantId, eventId)) {
             throw new RuntimeException("Event not found with id: " + eventId);
         }
-        events.remove(eventId);
+        retract(event);
+    }
+    
+    /**
+     * Takes an event that has left the store, or the previous version of an updated
+     * one, back out of the aggregates built at ingest. Rollup cells and value
+     * distributions are decremented; unique-user sketches and user bitmaps cannot
+     * forget a user, so the store's bucket sketch is rebuilt on its next read and
+     * the user's bitmap bits for that day are re-derived from the remaining events.
+     * Sessions that have already closed, and the realtime windows, keep counting it.
+     *
+     * @return whether the event's session was still open and has been adjusted
+     */
+    private boolean retract(AnalyticsEventDto event) {
+        rollupStore.remove(event);
+        distributionStore.remove(event);
+        userBitmapStore.remove(event);
+        return sessionizer.remove(event);
     }
     
     public DashboardDto createDashboard(UUID tenantId, DashboardDto dashboardDto) {
-        dashboardDto.setId(UUID.randomUUID());
-        dashboardDto.setTenantId(tenantId);
-        dashboardDto.setCreatedAt(LocalDateTime.now());
-        dashboardDto.setUpdatedAt(LocalDateTime.now());
-        dashboards.put(dashboardDto.getId(), dashboardDto);
-        return dashboardDto;
+        Dashboard dashboard = new Dashboard(tenantId, dashboardDto.getName());
+        dashboard.setCreatedBy(dashboardDto.getCreatedBy());
+        dashboard.setOwnerId(dashboardDto.getCreatedBy());
+        applyDashboard(dashboard, dashboardDto);
+        return toDashboardDto(dashboardRepository.save(dashboard));
     }
     
     public List<DashboardDto> getDashboards(UUID tenantId, UUID createdBy, Boolean isPublic) {
-        List<DashboardDto> filteredDashboards = new ArrayList<>(dashboards.values());
-        
-        // Apply filters
-        filteredDashboards = filteredDashboards.stream()
-            .filter(dashboard -> tenantId.equals(dashboard.getTenantId()))
+        return dashboardRepository.findByTenantIdOrderByCreatedAtDesc(tenantId).stream()
             .filter(dashboard -> createdBy == null || createdBy.equals(dashboard.getCreatedBy()))
-            .filter(dashboard -> isPublic == null || isPublic.equals(dashboard.isPublic()))
-            .sorted(Comparator.comparing(DashboardDto::getCreatedAt).reversed())
+            .filter(dashboard -> isPublic == null || isPublic.equals(dashboard.getIsPublic()))
+            .map(this::toDashboardDto)
             .toList();
-        
-        return filteredDashboards;
     }
     
     public DashboardDto getDashboard(UUID tenantId, UUID dashboardId) {
-        DashboardDto dashboard = dashboards.get(dashboardId);
-        if (dashboard == null || !tenantId.equals(dashboard.getTenantId())) {
-            throw new RuntimeException("Dashboard not found with id: " + dashboardId);
-        }
-        return dashboard;
+        Dashboard dashboard = findDashboard(tenantId, dashboardId);
+        dashboardViewCounter.recordView(tenantId, dashboardId);
+        return toDashboardDto(dashboard);
     }
     
     public DashboardDto updateDashboard(UUID tenantId, UUID dashboardId, DashboardDto dashboardDto) {
-        DashboardDto existingDashboard = dashboards.get(dashboardId);
-        if (existingDashboard == null || !tenantId.equals(existingDashboard.getTenantId())) {
-            throw new RuntimeException("Dashboard not found with id: " + dashboardId);
+        Dashboard existingDashboard = findDashboard(tenantId, dashboardId);
+        existingDashboard.setName(dashboardDto.getName());
+        applyDashboard(existingDashboard, dashboardDto);
+        return toDashboardDto(dashboardRepository.save(existingDashboard));
+    }
+    
+    public void deleteDashboard(UUID tenantId, UUID dashboardId) {
+        dashboardRepository.delete(findDashboard(tenantId, dashboardId));
+        dashboardViewCounter.forget(dashboardId);
+    }
+    
+    private Dashboard findDashboard(UUID tenantId, UUID dashboardId) {
+        return dashboardRepository.findByIdAndTenantId(dashboardId, tenantId)
+            .orElseThrow(() -> new RuntimeException("Dashboard not found with id: " + dashboardId));
+    }
+    
+    private void applyDashboard(Dashboard dashboard, DashboardDto dashboardDto) {
+        dashboard.setDescription(dashboardDto.getDescription());
+        dashboard.setIsPublic(dashboardDto.isPublic());
+        dashboard.setIsDefault(dashboardDto.isDefault());
+        dashboard.setWidgets(writeJson(dashboardDto.getWidgets()));
+        dashboard.setSettings(writeJson(dashboardDto.getSettings()));
+        dashboard.setFilters(writeJson(dashboardDto.getFilters()));
+        dashboard.setRefreshIntervalSeconds(dashboardDto.getRefreshIntervalSeconds());
+        dashboard.setAutoRefresh(dashboardDto.getAutoRefresh());
+    }
+    
+    /**
+     * Maps a stored dashboard, adding the views still buffered by the view counter
+     * to the persisted count.
+     */
+    private DashboardDto toDashboardDto(Dashboard dashboard) {
+        DashboardDto dto = new DashboardDto();
+        dto.setId(dashboard.getId());
+        dto.setName(dashboard.getName());
+        dto.setDescription(dashboard.getDescription());
+        dto.setTenantId(dashboard.getTenantId());
+        dto.setCreatedBy(dashboard.getCreatedBy());
+        dto.setPublic(Boolean.TRUE.equals(dashboard.getIsPublic()));
+        dto.setDefault(Boolean.TRUE.equals(dashboard.getIsDefault()));
+        dto.setWidgets(readJson(dashboard.getWidgets(), WIDGETS_TYPE));
+        dto.setSettings(readJson(dashboard.getSettings(), MAP_TYPE));
+        dto.setFilters(readJson(dashboard.getFilters(), MAP_TYPE));
+        dto.setRefreshIntervalSeconds(dashboard.getRefreshIntervalSeconds());
+        dto.setAutoRefresh(dashboard.getAutoRefresh());
+        long persistedViews = dashboard.getViewCount() == null ? 0 : dashboard.getViewCount();
+        dto.setViewCount(persistedViews + dashboardViewCounter.pending(dashboard.getId()));
+        dto.setLastAccessedAt(dashboard.getLastAccessedAt());
+        dto.setCreatedAt(dashboard.getCreatedAt());
+        dto.setUpdatedAt(dashboard.getUpdatedAt());
+        return dto;
+    }
+    
+    private String writeJson(Object value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Cannot serialize dashboard definition", e);
+        }
+    }
+    
+    private <T> T readJson(String json, TypeReference<T> type) {
+        if (json == null || json.isBlank()) {
+            return null;
         }
+        try {
+            return objectMapper.readValue(json, type);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Stored dashboard definition is not valid JSON", e);
+        }
+    }
+    
+    /**
+     * Computes every widget of a dashboard concurrently and returns once the slowest
+     * has finished or hit its deadline. Results are shared through the widget cache
+     * for the dashboard's refresh interval, so concurrent viewers trigger one
+     * computation per widget. A widget that fails or times out reports it in place.
+     */
+    public Map<String, Object> getDashboardWidgets(UUID tenantId, UUID dashboardId) {
+        DashboardDto dashboard = getDashboard(tenantId, dashboardId);
+        List<CompletableFuture<Map<String, Object>>> pending = evaluateWidgets(tenantId, dashboard);
+        List<Map<String, Object>> results = pending.stream().map(CompletableFuture::join).toList();
         
-        // Update fields
-        existingDashboard.setName(dashboardDto.getName());
-        existingDashboard.setDescription(dashboardDto.getDescription());
-        existingDashboard.setPublic(dashboardDto.isPublic());
-        existingDashboard.setDefault(dashboardDto.isDefault());
-        existingDashboard.setWidgets(dashboardDto.getWidgets());
-        existingDashboard.setSettings(dashboardDto.getSettings());
-        existingDashboard.setFilters(dashboardDto.getFilters());
-        existingDashboard.setUpdatedAt(LocalDateTime.now());
+        Map<String, Object> data = new HashMap<>();
+        data.put("dashboardId", dashboardId);
+        data.put("widgets", results);
+        data.put("refreshIntervalSeconds", dashboard.getRefreshIntervalSeconds());
+        data.put("timestamp", LocalDateTime.now());
+        return data;
+    }
+    
+    /**
+     * Streams each widget of a dashboard as a {@code widget} event as soon as it is
+     * ready, then a {@code complete} event.
+     */
+    public Flux<ServerSentEvent<Object>> streamDashboard(UUID tenantId, UUID dashboardId) {
+        DashboardDto dashboard = getDashboard(tenantId, dashboardId);
+        List<CompletableFuture<Map<String, Object>>> pending = evaluateWidgets(tenantId, dashboard);
         
-        dashboards.put(dashboardId, existingDashboard);
-        return existingDashboard;
+        Map<String, Object> complete = new HashMap<>();
+        complete.put("dashboardId", dashboardId);
+        complete.put("widgets", pending.size());
+        return Flux.merge(pending.stream().map(Mono::fromFuture).toList())
+            .map(result -> ServerSentEvent.<Object>builder(result).event("widget").build())
+            .concatWith(Mono.just(ServerSentEvent.<Object>builder(complete).event("complete").build()));
     }
     
-    public void deleteDashboard(UUID tenantId, UUID dashboardId) {
-        DashboardDto dashboard = dashboards.get(dashboardId);
-        if (dashboard == null || !tenantId.equals(dashboard.getTenantId())) {
-            throw new RuntimeException("Dashboard not found with id: " + dashboardId);
+    /**
+     * Starts every widget on the widget executor with its own time budget (the
+     * widget's {@code timeoutMs} setting or the configured default). A widget past its
+     * deadline is reported as timed out while its computation carries on to fill the
+     * cache for the next refresh. The returned futures never fail.
+     */
+    private List<CompletableFuture<Map<String, Object>>> evaluateWidgets(UUID tenantId, DashboardDto dashboard) {
+        List<DashboardDto.WidgetDto> widgets = dashboard.getWidgets() == null ? List.of() : dashboard.getWidgets();
+        List<CompletableFuture<Map<String, Object>>> pending = new ArrayList<>(widgets.size());
+        for (DashboardDto.WidgetDto widget : widgets) {
+            Map<String, Object> config = widget.getConfig() == null ? Map.of() : widget.getConfig();
+            long budgetMillis = widgetInt(config, "timeoutMs", (int) widgetExecutor.getDefaultTimeoutMillis());
+            long startNanos = System.nanoTime();
+            pending.add(widgetExecutor.submit(() -> widgetResultCache.get(tenantId, dashboard, widget,
+                    () -> renderWidget(tenantId, widget, dashboard.getFilters())))
+                .orTimeout(budgetMillis, TimeUnit.MILLISECONDS)
+                .handle((data, error) -> widgetResult(widget, data, error, startNanos)));
+        }
+        return pending;
+    }
+    
+    private static Map<String, Object> widgetResult(DashboardDto.WidgetDto widget, Map<String, Object> data,
+                                                    Throwable error, long startNanos) {
+        Map<String, Object> result = new HashMap<>();
+        result.put("id", widget.getId());
+        result.put("type", widget.getType());
+        result.put("title", widget.getTitle());
+        result.put("elapsedMs", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        if (cause == null) {
+            result.put("status", "ok");
+            result.put("data", data);
+        } else if (cause instanceof TimeoutException) {
+            result.put("status", "timeout");
+        } else {
+            result.put("status", "error");
+            result.put("error", cause.getMessage());
+        }
+        return result;
+    }
+    
+    private Map<String, Object> renderWidget(UUID tenantId, DashboardDto.WidgetDto widget,
+                                             Map<String, Object> filters) {
+        Map<String, Object> config = widget.getConfig() == null ? Map.of() : widget.getConfig();
+        String period = widgetSetting(config, filters, "timeRange");
+        String type = widget.getType() == null ? "" : widget.getType().toLowerCase(Locale.ROOT);
+        switch (type) {
+            case "kpi":
+                return getKPIs(tenantId, period, widgetList(config, "kpis").toArray(String[]::new));
+            case "timeseries":
+                return getTimeSeries(tenantId, widgetSetting(config, filters, "eventType"),
+                    widgetSetting(config, filters, "eventName"), period,
+                    widgetSetting(config, filters, "granularity"), widgetSetting(config, null, "groupBy"));
+            case "table":
+                return getGroupBy(tenantId, widgetList(config, "dimensions"), widgetFilter(config, filters), period,
+                    widgetSetting(config, filters, "granularity"), widgetInt(config, "limit", 0));
+            case "metric":
+                return getMetrics(tenantId, widgetSetting(config, null, "metric"), period,
+                    widgetSetting(config, null, "dimension"), false, widgetSetting(config, filters, "eventName"));
+            case "funnel":
+                return getFunnel(tenantId, widgetList(config, "steps"), period, widgetInt(config, "windowDays", 7));
+            case "cohort":
+                return getCohorts(tenantId, widgetSetting(config, null, "cohortEvent"),
+                    widgetSetting(config, null, "returnEvent"), period, widgetSetting(config, null, "interval"),
+                    widgetInt(config, "periods", 8));
+            case "realtime":
+                return getRealtimeMetrics(tenantId, widgetList(config, "windows").toArray(String[]::new));
+            default:
+                throw new IllegalArgumentException("Unsupported widget type: " + widget.getType());
+        }
+    }
+    
+    // Dashboard-level filters override the widget's own settings
+    private static String widgetSetting(Map<String, Object> config, Map<String, Object> filters, String name) {
+        Object value = filters == null ? null : filters.get(name);
+        if (value == null) {
+            value = config.get(name);
+        }
+        return value == null ? null : value.toString();
+    }
+    
+    private static String widgetFilter(Map<String, Object> config, Map<String, Object> filters) {
+        Object own = config.get("filter");
+        Object shared = filters == null ? null : filters.get("filter");
+        if (own == null || shared == null) {
+            return own != null ? own.toString() : shared == null ? null : shared.toString();
+        }
+        return own + "; " + shared;
+    }
+    
+    private static List<String> widgetList(Map<String, Object> config, String name) {
+        Object value = config.get(name);
+        if (value instanceof Collection<?> values) {
+            return values.stream().map(Object::toString).toList();
+        }
+        if (value == null || value.toString().isBlank()) {
+            return List.of();
+        }
+        return Arrays.stream(value.toString().split(",")).map(String::trim).toList();
+    }
+    
+    private static int widgetInt(Map<String, Object> config, String name, int defaultValue) {
+        Object value = config.get(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return value instanceof Number number ? number.intValue() : Integer.parseInt(value.toString().trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Widget setting " + name + " must be a number");
         }
-        dashboards.remove(dashboardId);
     }
     
     public Map<String, Object> getAnalytics(UUID tenantId, String metric, String period) {
         Map<String, Object> analytics = new HashMap<>();
+        TimeRange range = TimeRange.parse(period);
         
-        // Calculate basic analytics
-        long totalEvents = events.values().stream()
-            .filter(event -> tenantId.equals(event.getTenantId()))
-            .count();
-        
-        long uniqueUsers = events.values().stream()
-            .filter(event -> tenantId.equals(event.getTenantId()))
-            .map(AnalyticsEventDto::getUserId)
-            .distinct()
-            .count();
-        
-        // Event type breakdown
-        Map<String, Long> eventTypeCount = new HashMap<>();
-        events.values().stream()
-            .filter(event -> tenantId.equals(event.getTenantId()))
-            .forEach(event -> {
-                String eventType = event.getEventType();
-                eventTypeCount.put(eventType, eventTypeCount.getOrDefault(eventType, 0L) + 1);
-            });
+        // Counts come from the rollup cubes, unique users from the bucket sketches
+        Map<String, Long> eventTypeCount = rollupStore.totals(tenantId, range, "eventType");
+        AggregationResult users = aggregationEngine.aggregate(tenantId,
+            AggregationRequest.over(range).measure(Measure.DISTINCT_USERS));
         
-        analytics.put("totalEvents", totalEvents);
-        analytics.put("uniqueUsers", uniqueUsers);
+        analytics.put("totalEvents", eventTypeCount.values().stream().mapToLong(Long::longValue).sum());
+        analytics.put("uniqueUsers", users.getUniqueUsers());
         analytics.put("eventTypeBreakdown", eventTypeCount);
         analytics.put("metric", metric);
         analytics.put("period", period);
@@ -212,60 +528,233 @@ public class AnalyticsService {
     }
     
     public Map<String, Object> getMetrics(UUID tenantId, String metric, String period) {
+        return getMetrics(tenantId, metric, period, null);
+    }
+    
+    public Map<String, Object> getMetrics(UUID tenantId, String metric, String period, String dimension) {
+        return getMetrics(tenantId, metric, period, dimension, false);
+    }
+    
+    public Map<String, Object> getMetrics(UUID tenantId, String metric, String period, String dimension,
+                                          boolean exact) {
+        return getMetrics(tenantId, metric, period, dimension, exact, null);
+    }
+    
+    /**
+     * Event metrics over a period. {@code p50}, {@code p95}, {@code p99} and {@code histogram}
+     * are answered from the value distribution sketches, optionally for a single event name;
+     * {@code sessions} from the sessionizer.
+     */
+    public Map<String, Object> getMetrics(UUID tenantId, String metric, String period, String dimension,
+                                          boolean exact, String eventName) {
+        if (metric != null && (PERCENTILE_METRICS.containsKey(metric) || HISTOGRAM_METRIC.equals(metric))) {
+            return getValueDistributionMetrics(tenantId, metric, period, eventName);
+        }
+        if (SESSIONS_METRIC.equals(metric)) {
+            return getSessionMetrics(tenantId, period);
+        }
         Map<String, Object> metrics = new HashMap<>();
         
         // Calculate metrics based on events
-        long totalEvents = events.values().stream()
-            .filter(event -> tenantId.equals(event.getTenantId()))
-            .count();
+        AggregationRequest request = AggregationRequest.over(TimeRange.parse(period))
+            .exact(exact)
+            .measure(Measure.COUNT)
+            .measure(Measure.DISTINCT_USERS)
+            .measure(Measure.SUM_VALUE)
+            .measure(Measure.AVG_VALUE);
+        if (dimension != null && !dimension.isBlank()) {
+            request.groupBy(dimension);
+        }
+        AggregationResult result = aggregationEngine.aggregate(tenantId, request);
         
         double averageEventsPerUser = 0.0;
-        long uniqueUsers = events.values().stream()
-            .filter(event -> tenantId.equals(event.getTenantId()))
-            .map(AnalyticsEventDto::getUserId)
-            .distinct()
-            .count();
-        
-        if (uniqueUsers > 0) {
-            averageEventsPerUser = (double) totalEvents / uniqueUsers;
+        if (result.getUniqueUsers() > 0) {
+            averageEventsPerUser = (double) result.getCount() / result.getUniqueUsers();
         }
         
-        metrics.put("totalEvents", totalEvents);
-        metrics.put("uniqueUsers", uniqueUsers);
+        metrics.put("totalEvents", result.getCount());
+        metrics.put("uniqueUsers", result.getUniqueUsers());
         metrics.put("averageEventsPerUser", averageEventsPerUser);
+        metrics.put("totalValue", result.getValueSum());
+        metrics.put("averageValue", result.getAverageValue());
+        metrics.put("exact", exact);
+        if (request.has(Measure.GROUP_BY)) {
+            metrics.put("dimension", dimension);
+            metrics.put("breakdown", result.getGroup(dimension));
+        }
+        metrics.put("metric", metric);
+        metrics.put("period", period);
+        metrics.put("timestamp", LocalDateTime.now());
+        
+        return metrics;
+    }
+    
+    private Map<String, Object> getSessionMetrics(UUID tenantId, String period) {
+        SessionSummary summary = sessionStore.summarize(tenantId, TimeRange.parse(period));
+        
+        Map<String, Object> metrics = new HashMap<>();
+        metrics.put("metric", SESSIONS_METRIC);
+        metrics.put("period", period);
+        metrics.put("sessions", summary.sessions());
+        metrics.put("openSessions", sessionizer.openSessions(tenantId));
+        metrics.put("bounces", summary.bounces());
+        metrics.put("bounceRate", summary.getBounceRate());
+        metrics.put("averageDurationSeconds", summary.getAverageDurationSeconds());
+        metrics.put("averagePageViews", summary.getAveragePageViews());
+        metrics.put("averageEvents", summary.getAverageEvents());
+        metrics.put("topEntryPages", summary.topEntryPages());
+        metrics.put("topExitPages", summary.topExitPages());
+        metrics.put("timestamp", LocalDateTime.now());
+        
+        return metrics;
+    }
+    
+    private Map<String, Object> getValueDistributionMetrics(UUID tenantId, String metric, String period,
+                                                            String eventName) {
+        ValueDistribution distribution = distributionStore.query(tenantId, TimeRange.parse(period), eventName);
+        QuantileSketch quantiles = distribution.getQuantiles();
+        long count = distribution.getCount();
+        
+        Map<String, Object> metrics = new HashMap<>();
         metrics.put("metric", metric);
         metrics.put("period", period);
+        metrics.put("eventName", eventName);
+        metrics.put("count", count);
+        metrics.put("min", count == 0 ? null : quantiles.getMin());
+        metrics.put("max", count == 0 ? null : quantiles.getMax());
+        if (HISTOGRAM_METRIC.equals(metric)) {
+            ValueHistogram histogram = distribution.getHistogram();
+            List<Map<String, Object>> buckets = new ArrayList<>();
+            for (int i = 0; i < histogram.getBucketCount(); i++) {
+                Map<String, Object> bucket = new HashMap<>();
+                double lower = histogram.lowerBound(i);
+                double upper = histogram.upperBound(i);
+                bucket.put("lowerBound", Double.isInfinite(lower) ? null : lower);
+                bucket.put("upperBound", Double.isInfinite(upper) ? null : upper);
+                bucket.put("count", histogram.getCount(i));
+                buckets.add(bucket);
+            }
+            metrics.put("buckets", buckets);
+        } else {
+            metrics.put("value", count == 0 ? null : quantiles.quantile(PERCENTILE_METRICS.get(metric)));
+            metrics.put("relativeAccuracy", quantiles.getRelativeAccuracy());
+        }
         metrics.put("timestamp", LocalDateTime.now());
         
         return metrics;
     }
     
     // Additional methods required by controller
-    public AnalyticsEventDto trackEvent(UUID tenantId, AnalyticsEventDto eventDto) {
-        return createEvent(tenantId, eventDto);
+    public IngestResult trackEvent(UUID tenantId, AnalyticsEventDto eventDto, String idempotencyKey) {
+        if (eventDto.getId() == null && idempotencyKey != null && !idempotencyKey.isBlank()) {
+            eventDto.setId(EventDeduplicator.idFor(tenantId, idempotencyKey));
+        }
+        return trackEvents(tenantId, List.of(eventDto), null);
+    }
+    
+    /**
+     * Persists the events through the group-commit writer and returns once they are
+     * committed, all in one transaction; only then are they made visible to queries.
+     * If the write fails none of them were stored, so the whole batch can be
+     * retried. Events carrying an id,
+     * given in the body or derived from the idempotency key and their position in
+     * the batch, are accepted once and later retries are skipped. An id already
+     * taken by another tenant's event is rejected: that event is neither stored
+     * nor indexed, and is reported back by id.
+     */
+    public IngestResult trackEvents(UUID tenantId, List<AnalyticsEventDto> eventDtos, String idempotencyKey) {
+        Set<AnalyticsEventDto> clientIds = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (int i = 0; i < eventDtos.size(); i++) {
+            AnalyticsEventDto eventDto = eventDtos.get(i);
+            if (eventDto.getId() == null && idempotencyKey != null && !idempotencyKey.isBlank()) {
+                eventDto.setId(EventDeduplicator.idFor(tenantId, idempotencyKey + ":" + i));
+            }
+            if (eventDto.getId() != null) {
+                clientIds.add(eventDto);
+            }
+            prepare(tenantId, eventDto);
+        }
+        
+        List<AnalyticsEventDto> results = new ArrayList<>(eventDtos.size());
+        List<AnalyticsEventDto> accepted = new ArrayList<>(eventDtos.size());
+        List<AnalyticsEventDto> claimed = new ArrayList<>();
+        for (AnalyticsEventDto eventDto : eventDtos) {
+            if (!clientIds.contains(eventDto)) {
+                accepted.add(eventDto);
+                results.add(eventDto);
+            } else if (eventDeduplicator.tryClaim(tenantId, eventDto.getId())) {
+                claimed.add(eventDto);
+                accepted.add(eventDto);
+                results.add(eventDto);
+            } else {
+                // Report the copy accepted earlier; it may still be in flight
+                results.add(eventStore.get(tenantId, eventDto.getId()).orElse(eventDto));
+            }
+        }
+        
+        boolean persisted = false;
+        Set<UUID> rejected = Set.of();
+        try {
+            rejected = eventBatchWriter.submit(accepted).join();
+            persisted = true;
+        } catch (CompletionException e) {
+            throw new RuntimeException("Failed to persist analytics events", e.getCause());
+        } finally {
+            if (persisted) {
+                for (AnalyticsEventDto eventDto : accepted) {
+                    if (!rejected.contains(eventDto.getId())) {
+                        index(eventDto);
+                    }
+                }
+            }
+            for (AnalyticsEventDto eventDto : claimed) {
+                eventDeduplicator.release(tenantId, eventDto.getId(), persisted && !rejected.contains(eventDto.getId()));
+            }
+        }
+        if (!rejected.isEmpty()) {
+            Set<UUID> notStored = rejected;
+            results.removeIf(eventDto -> notStored.contains(eventDto.getId()));
+        }
+        return new IngestResult(results, eventDtos.size() - accepted.size(), List.copyOf(rejected));
     }
     
     public org.springframework.data.domain.Page<AnalyticsEventDto> getEvents(
             UUID tenantId, String eventType, String eventName, UUID userId, 
             String startDate, String endDate, org.springframework.data.domain.Pageable pageable) {
         
-        List<AnalyticsEventDto> filteredEvents = getEvents(tenantId, eventType, userId, null, null);
+        TimeRange range = TimeRange.between(startDate, endDate);
+        String name = eventName == null || eventName.isBlank() ? null : eventName;
+        List<AnalyticsEventDto> pageContent = eventStore.seek(tenantId, range.getStart(), range.getEnd(),
+            eventType, name, userId, null, pageable.getOffset(), pageable.getPageSize(), true);
+        long total = eventStore.count(tenantId, range.getStart(), range.getEnd(), eventType, name, userId);
         
-        // Apply additional filters
-        if (eventName != null && !eventName.trim().isEmpty()) {
-            filteredEvents = filteredEvents.stream()
-                .filter(event -> eventName.equals(event.getEventName()))
-                .toList();
+        return new org.springframework.data.domain.PageImpl<>(pageContent, pageable, total);
+    }
+    
+    /**
+     * Returns the next page of events, newest first, after the position encoded in
+     * {@code cursor}. Each page costs the same however deep it is, since the scan
+     * seeks straight to the cursor instead of skipping earlier events.
+     */
+    public Map<String, Object> getEventPage(UUID tenantId, String eventType, String eventName, UUID userId,
+                                            String startDate, String endDate, String cursor, int size) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("size must be positive");
         }
+        TimeRange range = TimeRange.between(startDate, endDate);
+        String name = eventName == null || eventName.isBlank() ? null : eventName;
+        // One extra event tells whether another page exists
+        List<AnalyticsEventDto> events = eventStore.seek(tenantId, range.getStart(), range.getEnd(),
+            eventType, name, userId, EventCursor.decode(cursor), 0, size + 1, true);
+        boolean hasNext = events.size() > size;
+        List<AnalyticsEventDto> content = hasNext ? events.subList(0, size) : events;
         
-        // Simple pagination
-        int start = (int) pageable.getOffset();
-        int end = Math.min(start + pageable.getPageSize(), filteredEvents.size());
-        List<AnalyticsEventDto> pageContent = start < filteredEvents.size() ? 
-            filteredEvents.subList(start, end) : new ArrayList<>();
-        
-        return new org.springframework.data.domain.PageImpl<>(
-            pageContent, pageable, filteredEvents.size());
+        Map<String, Object> page = new HashMap<>();
+        page.put("content", content);
+        page.put("size", content.size());
+        page.put("hasNext", hasNext);
+        page.put("nextCursor", hasNext ? EventCursor.at(content.get(content.size() - 1)).encode() : null);
+        return page;
     }
     
     public org.springframework.data.domain.Page<DashboardDto> getDashboards(
@@ -294,49 +783,209 @@ public class AnalyticsService {
     public Map<String, Object> getDashboardData(UUID tenantId) {
         Map<String, Object> data = new HashMap<>();
         
-        long totalDashboards = dashboards.values().stream()
-            .filter(dashboard -> tenantId.equals(dashboard.getTenantId()))
-            .count();
-        
-        long publicDashboards = dashboards.values().stream()
-            .filter(dashboard -> tenantId.equals(dashboard.getTenantId()) && dashboard.isPublic())
-            .count();
+        long totalDashboards = dashboardRepository.countByTenantId(tenantId);
+        long publicDashboards = dashboardRepository.countByTenantIdAndIsPublicTrue(tenantId);
         
         data.put("totalDashboards", totalDashboards);
         data.put("publicDashboards", publicDashboards);
         data.put("privateDashboards", totalDashboards - publicDashboards);
+        data.put("eventsLast24Hours", toSeries(rollupStore.query(
+            tenantId, TimeRange.parse("24h"), Granularity.HOUR, null, null, null)));
         data.put("timestamp", LocalDateTime.now());
         
         return data;
     }
     
     public Map<String, Object> getKPIs(UUID tenantId, String period, String[] kpis) {
+        return getKPIs(tenantId, period, kpis, false);
+    }
+    
+    public Map<String, Object> getKPIs(UUID tenantId, String period, String[] kpis, boolean exact) {
         Map<String, Object> kpiData = new HashMap<>();
+        List<String> requested = kpis == null || kpis.length == 0 ? DEFAULT_KPIS : Arrays.asList(kpis);
         
-        // Calculate KPIs based on events
-        long totalEvents = events.values().stream()
-            .filter(event -> tenantId.equals(event.getTenantId()))
-            .count();
-        
-        long uniqueUsers = events.values().stream()
-            .filter(event -> tenantId.equals(event.getTenantId()))
-            .map(AnalyticsEventDto::getUserId)
-            .distinct()
-            .count();
+        // Only the aggregates behind the requested KPIs are computed
+        AggregationRequest request = AggregationRequest.over(TimeRange.parse(period)).exact(exact);
+        requested.forEach(kpi -> addKpiMeasures(request, kpi));
+        AggregationResult result = aggregationEngine.aggregate(tenantId, request);
         
-        kpiData.put("totalEvents", totalEvents);
-        kpiData.put("uniqueUsers", uniqueUsers);
+        requested.forEach(kpi -> kpiData.put(kpi, kpiValue(result, kpi)));
         kpiData.put("period", period);
-        kpiData.put("kpis", Arrays.asList(kpis));
+        kpiData.put("kpis", requested);
+        kpiData.put("exact", exact);
         kpiData.put("timestamp", LocalDateTime.now());
         
         return kpiData;
     }
     
-    public Map<String, Object> getMetrics(UUID tenantId, String metric, String period, String dimension) {
-        Map<String, Object> metrics = getMetrics(tenantId, metric, period);
-        metrics.put("dimension", dimension);
-        return metrics;
+    private void addKpiMeasures(AggregationRequest request, String kpi) {
+        switch (kpi) {
+            case "totalEvents" -> request.measure(Measure.COUNT);
+            case "uniqueUsers" -> request.measure(Measure.DISTINCT_USERS);
+            case "averageEventsPerUser" -> request.measure(Measure.COUNT).measure(Measure.DISTINCT_USERS);
+            case "totalValue" -> request.measure(Measure.SUM_VALUE);
+            case "averageValue" -> request.measure(Measure.AVG_VALUE);
+            case "eventTypeBreakdown" -> request.groupBy("eventType");
+            case "eventNameBreakdown" -> request.groupBy("eventName");
+            default -> throw new IllegalArgumentException("Unknown KPI: " + kpi);
+        }
+    }
+    
+    private Object kpiValue(AggregationResult result, String kpi) {
+        return switch (kpi) {
+            case "totalEvents" -> result.getCount();
+            case "uniqueUsers" -> result.getUniqueUsers();
+            case "averageEventsPerUser" -> result.getUniqueUsers() == 0
+                ? 0.0 : (double) result.getCount() / result.getUniqueUsers();
+            case "totalValue" -> result.getValueSum();
+            case "averageValue" -> result.getAverageValue();
+            case "eventTypeBreakdown" -> result.getGroup("eventType");
+            default -> result.getGroup("eventName");
+        };
+    }
+    
+    public Map<String, Object> getTimeSeries(UUID tenantId, String eventType, String eventName,
+                                             String period, String granularity, String groupBy) {
+        Map<String, Object> timeSeries = new HashMap<>();
+        Granularity resolved = Granularity.parse(granularity, Granularity.HOUR);
+        
+        NavigableMap<Long, Map<String, RollupCell>> series = rollupStore.query(
+            tenantId, TimeRange.parse(period), resolved, groupBy, eventType, eventName);
+        
+        timeSeries.put("series", toSeries(series));
+        timeSeries.put("granularity", resolved);
+        timeSeries.put("groupBy", groupBy);
+        timeSeries.put("eventType", eventType);
+        timeSeries.put("eventName", eventName);
+        timeSeries.put("period", period);
+        timeSeries.put("timestamp", LocalDateTime.now());
+        
+        return timeSeries;
+    }
+    
+    /**
+     * Counts events and sums values per combination of the given dimensions, optionally
+     * split by time bucket, keeping the top {@code limit} values of the last dimension
+     * within each group of the others.
+     */
+    public Map<String, Object> getGroupBy(UUID tenantId, List<String> dimensions, String filter,
+                                          String period, String granularity, int limit) {
+        GroupByQuery query = GroupByQuery.over(TimeRange.parse(period))
+            .filter(EventFilter.parse(filter))
+            .granularity(Granularity.parse(granularity, null))
+            .limit(limit);
+        if (dimensions != null) {
+            dimensions.forEach(query::dimension);
+        }
+        GroupByResult result = aggregationEngine.groupBy(tenantId, query);
+        
+        List<Map<String, Object>> rows = new ArrayList<>(result.getRows().size());
+        for (GroupByResult.Row row : result.getRows()) {
+            Map<String, Object> values = new LinkedHashMap<>();
+            for (int i = 0; i < result.getDimensions().size(); i++) {
+                values.put(result.getDimensions().get(i), row.values().get(i));
+            }
+            Map<String, Object> entry = new HashMap<>();
+            if (row.bucketStart() != null) {
+                entry.put("timestamp", EventTime.fromMillis(row.bucketStart()));
+            }
+            entry.put("dimensions", values);
+            entry.put("count", row.count());
+            entry.put("valueSum", row.valueSum());
+            rows.add(entry);
+        }
+        
+        Map<String, Object> table = new HashMap<>();
+        table.put("dimensions", result.getDimensions());
+        table.put("rows", rows);
+        table.put("groups", result.getGroups());
+        table.put("filter", filter);
+        table.put("granularity", query.getGranularity());
+        table.put("limit", limit);
+        table.put("period", period);
+        table.put("timestamp", LocalDateTime.now());
+        
+        return table;
+    }
+    
+    public Map<String, Object> getFunnel(UUID tenantId, List<String> steps, String period, int windowDays) {
+        List<FunnelStep> funnel = userBitmapStore.funnel(tenantId, TimeRange.parse(period), steps, windowDays);
+        
+        List<Map<String, Object>> stepResults = new ArrayList<>(funnel.size());
+        long entered = funnel.get(0).users();
+        long previous = entered;
+        for (FunnelStep step : funnel) {
+            Map<String, Object> stepResult = new HashMap<>();
+            stepResult.put("eventName", step.eventName());
+            stepResult.put("users", step.users());
+            stepResult.put("conversionRate", previous > 0 ? (double) step.users() / previous : 0.0);
+            stepResult.put("overallConversionRate", entered > 0 ? (double) step.users() / entered : 0.0);
+            stepResults.add(stepResult);
+            previous = step.users();
+        }
+        
+        Map<String, Object> result = new HashMap<>();
+        result.put("steps", stepResults);
+        result.put("windowDays", windowDays);
+        result.put("period", period);
+        result.put("timestamp", LocalDateTime.now());
+        return result;
+    }
+    
+    /**
+     * @param interval {@code day} or {@code week}
+     */
+    public Map<String, Object> getCohorts(UUID tenantId, String cohortEvent, String returnEvent, String period,
+                                          String interval, int periods) {
+        int intervalDays;
+        if (interval == null || interval.isBlank() || "day".equalsIgnoreCase(interval)) {
+            intervalDays = 1;
+        } else if ("week".equalsIgnoreCase(interval)) {
+            intervalDays = 7;
+        } else {
+            throw new IllegalArgumentException("Unsupported cohort interval: " + interval);
+        }
+        List<Cohort> cohorts = userBitmapStore.cohorts(
+            tenantId, TimeRange.parse(period), cohortEvent, returnEvent, intervalDays, periods);
+        
+        List<Map<String, Object>> rows = new ArrayList<>(cohorts.size());
+        for (Cohort cohort : cohorts) {
+            List<Double> rates = new ArrayList<>(cohort.retained().size());
+            cohort.retained().forEach(retained -> rates.add((double) retained / cohort.users()));
+            Map<String, Object> row = new HashMap<>();
+            row.put("cohortStart", cohort.start());
+            row.put("users", cohort.users());
+            row.put("retained", cohort.retained());
+            row.put("retentionRates", rates);
+            rows.add(row);
+        }
+        
+        Map<String, Object> result = new HashMap<>();
+        result.put("cohorts", rows);
+        result.put("cohortEvent", cohortEvent);
+        result.put("returnEvent", returnEvent);
+        result.put("interval", intervalDays == 7 ? "week" : "day");
+        result.put("period", period);
+        result.put("timestamp", LocalDateTime.now());
+        return result;
+    }
+    
+    private List<Map<String, Object>> toSeries(NavigableMap<Long, Map<String, RollupCell>> series) {
+        List<Map<String, Object>> points = new ArrayList<>(series.size());
+        series.forEach((bucket, groups) -> {
+            Map<String, Long> counts = new HashMap<>();
+            Map<String, Double> values = new HashMap<>();
+            groups.forEach((group, cell) -> {
+                counts.put(group, cell.getCount());
+                values.put(group, cell.getValueSum());
+            });
+            Map<String, Object> point = new HashMap<>();
+            point.put("timestamp", EventTime.fromMillis(bucket));
+            point.put("counts", counts);
+            point.put("values", values);
+            points.add(point);
+        });
+        return points;
     }
     
     public Map<String, Object> getReports(UUID tenantId, String reportType, String format, 
@@ -365,41 +1014,63 @@ public class AnalyticsService {
     }
     
     public Map<String, Object> getRealtimeMetrics(UUID tenantId) {
+        return getRealtimeMetrics(tenantId, null);
+    }
+    
+    public Map<String, Object> getRealtimeMetrics(UUID tenantId, String[] windows) {
         Map<String, Object> metrics = new HashMap<>();
+        List<String> requested = windows == null || windows.length == 0
+            ? DEFAULT_REALTIME_WINDOWS : Arrays.asList(windows);
         
-        // Get recent events (last hour)
-        LocalDateTime oneHourAgo = LocalDateTime.now().minusHours(1);
-        long recentEvents = events.values().stream()
-            .filter(event -> tenantId.equals(event.getTenantId()))
-            .filter(event -> event.getTimestamp().isAfter(oneHourAgo))
-            .count();
+        // Each window reads the tenant's ring of time slots, not the events
+        Map<String, Object> windowMetrics = new LinkedHashMap<>();
+        for (String window : requested) {
+            SlidingWindowCounter.WindowStats stats =
+                realtimeWindows.query(tenantId, realtimeWindows.parseWindow(window));
+            Map<String, Object> values = new HashMap<>();
+            values.put("events", stats.events());
+            values.put("uniqueUsers", stats.uniqueUsers());
+            values.put("valueSum", stats.valueSum());
+            values.put("eventsPerSecond", stats.eventsPerSecond());
+            windowMetrics.put(window, values);
+        }
         
-        metrics.put("recentEvents", recentEvents);
+        metrics.put("recentEvents", realtimeWindows.query(tenantId, realtimeWindows.parseWindow("1h")).events());
+        metrics.put("windows", windowMetrics);
         metrics.put("timestamp", LocalDateTime.now());
         
         return metrics;
     }
     
+    public Flux<ServerSentEvent<Object>> streamRealtime(UUID tenantId) {
+        return realtimeBroadcaster.subscribe(tenantId);
+    }
+    
     public List<AnalyticsEventDto> getRealtimeEvents(UUID tenantId, int limit) {
-        return events.values().stream()
-            .filter(event -> tenantId.equals(event.getTenantId()))
-            .sorted(Comparator.comparing(AnalyticsEventDto::getTimestamp).reversed())
-            .limit(limit)
-            .toList();
+        return getRealtimeEvents(tenantId, limit, null, null);
     }
     
-    public Map<String, Object> exportEvents(UUID tenantId, String format, String startDate, String endDate) {
-        Map<String, Object> export = new HashMap<>();
-        
-        List<AnalyticsEventDto> eventsToExport = getEvents(tenantId, null, null, null, null);
-        
-        export.put("exportId", UUID.randomUUID());
-        export.put("format", format);
-        export.put("eventCount", eventsToExport.size());
-        export.put("status", "exported");
-        export.put("timestamp", LocalDateTime.now());
+    public List<AnalyticsEventDto> getRealtimeEvents(UUID tenantId, int limit, String eventType, UUID userId) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("limit must be positive");
+        }
+        return eventStore.recent(tenantId, limit, eventType, userId);
+    }
+    
+    /**
+     * Streams the tenant's events in timestamp order straight to the response.
+     * Arguments are validated up front so bad requests fail before any bytes are sent.
+     */
+    public StreamingResponseBody exportEvents(UUID tenantId, String format, String startDate, String endDate) {
+        ExportFormat exportFormat = ExportFormat.parse(format);
+        boolean gzip = ExportFormat.isGzip(format);
+        TimeRange range = TimeRange.between(startDate, endDate);
         
-        return export;
+        return output -> {
+            try (Stream<AnalyticsEventDto> events = eventStore.scan(tenantId, range.getStart(), range.getEnd(), false)) {
+                eventExportWriter.write(events.iterator(), exportFormat, gzip, output);
+            }
+        };
     }
     
     public Map<String, Object> exportDashboard(UUID tenantId, UUID dashboardId, String format) {
@@ -422,7 +1093,7 @@ public class AnalyticsService {
         
         config.put("tenantId", tenantId);
         config.put("trackingEnabled", true);
-        config.put("retentionDays", 365);
+        config.put("retentionDays", retentionManager.getRetentionDays(tenantId));
         config.put("realTimeEnabled", true);
         config.put("timestamp", LocalDateTime.now());
         
@@ -432,8 +1103,18 @@ public class AnalyticsService {
     public Map<String, Object> updateAnalyticsConfig(UUID tenantId, Map<String, Object> config) {
         Map<String, Object> updatedConfig = new HashMap<>();
         
+        Object retentionDays = config.get("retentionDays");
+        if (retentionDays != null) {
+            try {
+                retentionManager.setRetentionDays(tenantId, Integer.parseInt(retentionDays.toString()));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("retentionDays must be a whole number of days");
+            }
+        }
+        
         updatedConfig.put("tenantId", tenantId);
         updatedConfig.putAll(config);
+        updatedConfig.put("retentionDays", retentionManager.getRetentionDays(tenantId));
         updatedConfig.put("updatedAt", LocalDateTime.now());
         
         return updatedConfig;
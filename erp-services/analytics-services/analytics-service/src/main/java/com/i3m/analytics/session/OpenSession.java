@@ -0,0 +1,86 @@
+package com.i3m.analytics.session;
+
+import com.i3m.analytics.dto.AnalyticsEventDto;
+import com.i3m.analytics.store.EventTime;
+
+import java.util.UUID;
+
+/**
+ * Mutable state of a session that has not yet gone idle. Guarded by the
+ * owning {@link Sessionizer}.
+ */
+class OpenSession {
+
+    final UUID tenantId;
+    final UUID sessionId;
+    final long sequence;
+    private UUID userId;
+    private long firstMillis;
+    private long lastMillis;
+    private long lastPageMillis = Long.MIN_VALUE;
+    private long firstPageMillis = Long.MAX_VALUE;
+    private int events;
+    private int pageViews;
+    private String entryPage;
+    private String exitPage;
+    private String referrer;
+
+    OpenSession(UUID tenantId, UUID sessionId, long sequence, long timestampMillis) {
+        this.tenantId = tenantId;
+        this.sessionId = sessionId;
+        this.sequence = sequence;
+        this.firstMillis = timestampMillis;
+        this.lastMillis = timestampMillis;
+    }
+
+    void add(AnalyticsEventDto event, long timestampMillis) {
+        events++;
+        firstMillis = Math.min(firstMillis, timestampMillis);
+        lastMillis = Math.max(lastMillis, timestampMillis);
+        if (userId == null) {
+            userId = event.getUserId();
+        }
+        if (event.getPageUrl() != null) {
+            pageViews++;
+            // Events may arrive out of order, so entry and exit follow event time
+            if (timestampMillis < firstPageMillis) {
+                firstPageMillis = timestampMillis;
+                entryPage = event.getPageUrl();
+                if (event.getReferrer() != null) {
+                    referrer = event.getReferrer();
+                }
+            }
+            if (timestampMillis >= lastPageMillis) {
+                lastPageMillis = timestampMillis;
+                exitPage = event.getPageUrl();
+            }
+        }
+        if (referrer == null) {
+            referrer = event.getReferrer();
+        }
+    }
+
+    /**
+     * Takes an event back out of the counts. Entry and exit pages and the time
+     * span keep the values the event contributed.
+     */
+    void remove(AnalyticsEventDto event) {
+        if (events > 0) {
+            events--;
+        }
+        if (event.getPageUrl() != null && pageViews > 0) {
+            pageViews--;
+        }
+    }
+
+    long getLastMillis() {
+        return lastMillis;
+    }
+
+    SessionRecord close() {
+        boolean bounce = pageViews > 0 ? pageViews <= 1 : events <= 1;
+        return new SessionRecord(tenantId, sessionId, userId,
+            EventTime.fromMillis(firstMillis), EventTime.fromMillis(lastMillis), lastMillis - firstMillis,
+            events, pageViews, entryPage, exitPage, referrer, bounce);
+    }
+}
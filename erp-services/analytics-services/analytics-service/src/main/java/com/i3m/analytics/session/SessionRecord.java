@@ -0,0 +1,14 @@
+package com.i3m.analytics.session;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * A closed session reconstructed from the events sharing a sessionId.
+ *
+ * @param pageViews events in the session that carried a pageUrl
+ * @param bounce    whether the session viewed at most one page
+ */
+public record SessionRecord(UUID tenantId, UUID sessionId, UUID userId, LocalDateTime start, LocalDateTime end,
+                            long durationMillis, int events, int pageViews, String entryPage, String exitPage,
+                            String referrer, boolean bounce) {}
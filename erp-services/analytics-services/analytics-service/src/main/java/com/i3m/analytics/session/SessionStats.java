@@ -0,0 +1,35 @@
+package com.i3m.analytics.session;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Totals over the sessions that started in one time slice.
+ */
+class SessionStats {
+
+    final LongAdder sessions = new LongAdder();
+    final LongAdder bounces = new LongAdder();
+    final LongAdder events = new LongAdder();
+    final LongAdder pageViews = new LongAdder();
+    final LongAdder durationMillis = new LongAdder();
+    final Map<String, LongAdder> entryPages = new ConcurrentHashMap<>();
+    final Map<String, LongAdder> exitPages = new ConcurrentHashMap<>();
+
+    void add(SessionRecord session) {
+        sessions.increment();
+        if (session.bounce()) {
+            bounces.increment();
+        }
+        events.add(session.events());
+        pageViews.add(session.pageViews());
+        durationMillis.add(session.durationMillis());
+        if (session.entryPage() != null) {
+            entryPages.computeIfAbsent(session.entryPage(), page -> new LongAdder()).increment();
+        }
+        if (session.exitPage() != null) {
+            exitPages.computeIfAbsent(session.exitPage(), page -> new LongAdder()).increment();
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.i3m.analytics.session;
+
+import com.i3m.analytics.query.Granularity;
+import com.i3m.analytics.query.TimeRange;
+import com.i3m.analytics.store.EventTime;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Closed sessions folded into hourly stats per tenant, keyed by session start.
+ */
+@Component
+public class SessionStore {
+
+    private final int topPages;
+    private final ConcurrentHashMap<UUID, ConcurrentSkipListMap<Long, SessionStats>> stats =
+        new ConcurrentHashMap<>();
+
+    public SessionStore(@Value("${analytics.session.top-pages:10}") int topPages) {
+        this.topPages = topPages;
+    }
+
+    void record(SessionRecord session) {
+        long start = Granularity.HOUR.truncate(EventTime.toMillis(session.start()));
+        stats.computeIfAbsent(session.tenantId(), id -> new ConcurrentSkipListMap<>())
+            .computeIfAbsent(start, s -> new SessionStats())
+            .add(session);
+    }
+
+    /**
+     * Sums the stats of hourly slices starting inside the range.
+     */
+    public SessionSummary summarize(UUID tenantId, TimeRange range) {
+        long sessions = 0;
+        long bounces = 0;
+        long events = 0;
+        long pageViews = 0;
+        long durationMillis = 0;
+        Map<String, Long> entryPages = new HashMap<>();
+        Map<String, Long> exitPages = new HashMap<>();
+        ConcurrentSkipListMap<Long, SessionStats> slices = stats.get(tenantId);
+        if (slices != null) {
+            long from = range.startMillis() == Long.MIN_VALUE
+                ? Long.MIN_VALUE : Granularity.HOUR.truncate(range.startMillis());
+            for (SessionStats slice : slices.subMap(from, true, range.endMillis(), true).values()) {
+                sessions += slice.sessions.sum();
+                bounces += slice.bounces.sum();
+                events += slice.events.sum();
+                pageViews += slice.pageViews.sum();
+                durationMillis += slice.durationMillis.sum();
+                slice.entryPages.forEach((page, count) -> entryPages.merge(page, count.sum(), Long::sum));
+                slice.exitPages.forEach((page, count) -> exitPages.merge(page, count.sum(), Long::sum));
+            }
+        }
+        return new SessionSummary(sessions, bounces, events, pageViews, durationMillis,
+            top(entryPages), top(exitPages));
+    }
+
+    /**
+     * Drops a tenant's hourly slices that end at or before the cutoff.
+     */
+    public void dropBefore(UUID tenantId, long cutoffMillis) {
+        ConcurrentSkipListMap<Long, SessionStats> slices = stats.get(tenantId);
+        if (slices != null) {
+            slices.headMap(cutoffMillis - Granularity.HOUR.getMillis(), true).clear();
+        }
+    }
+
+    private Map<String, Long> top(Map<String, Long> counts) {
+        Map<String, Long> top = new LinkedHashMap<>();
+        counts.entrySet().stream()
+            .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+            .limit(topPages)
+            .forEach(entry -> top.put(entry.getKey(), entry.getValue()));
+        return top;
+    }
+}
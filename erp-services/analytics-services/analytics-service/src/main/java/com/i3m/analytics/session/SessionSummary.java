@@ -0,0 +1,29 @@
+package com.i3m.analytics.session;
+
+import java.util.Map;
+
+/**
+ * Session metrics over a time range.
+ *
+ * @param topEntryPages most frequent entry pages with their session counts, largest first
+ * @param topExitPages  most frequent exit pages with their session counts, largest first
+ */
+public record SessionSummary(long sessions, long bounces, long events, long pageViews, long durationMillis,
+                             Map<String, Long> topEntryPages, Map<String, Long> topExitPages) {
+
+    public double getBounceRate() {
+        return sessions == 0 ? 0.0 : (double) bounces / sessions;
+    }
+
+    public double getAverageDurationSeconds() {
+        return sessions == 0 ? 0.0 : durationMillis / 1000.0 / sessions;
+    }
+
+    public double getAveragePageViews() {
+        return sessions == 0 ? 0.0 : (double) pageViews / sessions;
+    }
+
+    public double getAverageEvents() {
+        return sessions == 0 ? 0.0 : (double) events / sessions;
+    }
+}
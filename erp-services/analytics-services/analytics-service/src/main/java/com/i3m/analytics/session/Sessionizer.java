@@ -0,0 +1,125 @@
+package com.i3m.analytics.session;
+
+import com.i3m.analytics.dto.AnalyticsEventDto;
+import com.i3m.analytics.store.EventTime;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.UUID;
+
+/**
+ * Rebuilds sessions incrementally as events are ingested. Open sessions are kept
+ * ordered by last activity, so closing idle ones only looks at the oldest. A
+ * session closes when no event arrives for the inactivity gap, either on the
+ * periodic sweep or when its sessionId reappears after the gap, which then
+ * starts a new session.
+ */
+@Component
+public class Sessionizer {
+
+    private final SessionStore sessionStore;
+    private final long inactivityMillis;
+    private final int maxOpenSessions;
+    private final Map<SessionKey, OpenSession> open = new HashMap<>();
+    private final TreeSet<OpenSession> byLastActivity = new TreeSet<>(
+        Comparator.comparingLong(OpenSession::getLastMillis).thenComparingLong(session -> session.sequence));
+    private final Map<UUID, Integer> openByTenant = new HashMap<>();
+    private long nextSequence;
+
+    public Sessionizer(SessionStore sessionStore,
+                       @Value("${analytics.session.inactivity-minutes:30}") long inactivityMinutes,
+                       @Value("${analytics.session.max-open:100000}") int maxOpenSessions) {
+        this.sessionStore = sessionStore;
+        this.inactivityMillis = inactivityMinutes * 60_000L;
+        this.maxOpenSessions = maxOpenSessions;
+    }
+
+    public void record(AnalyticsEventDto event) {
+        if (event.getSessionId() == null) {
+            return;
+        }
+        long timestamp = EventTime.toMillis(event.getTimestamp());
+        SessionKey key = new SessionKey(event.getTenantId(), event.getSessionId());
+        List<SessionRecord> closed = new ArrayList<>(1);
+        synchronized (this) {
+            OpenSession session = open.get(key);
+            if (session != null && timestamp - session.getLastMillis() > inactivityMillis) {
+                closed.add(close(session));
+                session = null;
+            }
+            if (session == null) {
+                session = new OpenSession(key.tenantId(), key.sessionId(), nextSequence++, timestamp);
+                open.put(key, session);
+                openByTenant.merge(key.tenantId(), 1, Integer::sum);
+            } else {
+                byLastActivity.remove(session);
+            }
+            session.add(event, timestamp);
+            byLastActivity.add(session);
+            while (open.size() > maxOpenSessions) {
+                // Bound memory by closing the least recently active session early
+                closed.add(close(byLastActivity.first()));
+            }
+        }
+        closed.forEach(sessionStore::record);
+    }
+
+    /**
+     * Takes a deleted event, or the previous version of an updated one, back out of
+     * its session while the session is still open. Closed sessions are already
+     * folded into the session store's hourly totals and keep counting the event.
+     *
+     * @return whether the event's session was still open
+     */
+    public synchronized boolean remove(AnalyticsEventDto event) {
+        if (event.getSessionId() == null) {
+            return false;
+        }
+        OpenSession session = open.get(new SessionKey(event.getTenantId(), event.getSessionId()));
+        if (session == null) {
+            return false;
+        }
+        session.remove(event);
+        return true;
+    }
+
+    @Scheduled(fixedDelayString = "${analytics.session.sweep-interval-ms:60000}")
+    public void sweep() {
+        closeIdle(EventTime.nowMillis());
+    }
+
+    /**
+     * Closes every session whose last event is more than the inactivity gap before {@code nowMillis}.
+     */
+    public int closeIdle(long nowMillis) {
+        List<SessionRecord> closed = new ArrayList<>();
+        synchronized (this) {
+            while (!byLastActivity.isEmpty()
+                    && nowMillis - byLastActivity.first().getLastMillis() > inactivityMillis) {
+                closed.add(close(byLastActivity.first()));
+            }
+        }
+        closed.forEach(sessionStore::record);
+        return closed.size();
+    }
+
+    public synchronized int openSessions(UUID tenantId) {
+        return openByTenant.getOrDefault(tenantId, 0);
+    }
+
+    private SessionRecord close(OpenSession session) {
+        byLastActivity.remove(session);
+        open.remove(new SessionKey(session.tenantId, session.sessionId));
+        openByTenant.computeIfPresent(session.tenantId, (tenant, count) -> count == 1 ? null : count - 1);
+        return session.close();
+    }
+
+    private record SessionKey(UUID tenantId, UUID sessionId) {}
+}
@@ -0,0 +1,88 @@
+package com.i3m.analytics.sketch;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed-size Bloom filter over 128-bit keys. Bits are set with CAS so ingest
+ * threads can share one filter without locking. It is sized for an expected
+ * number of insertions; past that the false-positive rate climbs, which is
+ * what {@link #isSaturated()} reports.
+ */
+public class BloomFilter {
+
+    private final AtomicLongArray words;
+    private final long bitCount;
+    private final int hashCount;
+    private final long expectedInsertions;
+    private final AtomicLong insertions = new AtomicLong();
+
+    public BloomFilter(long expectedInsertions, double falsePositiveRate) {
+        if (expectedInsertions <= 0) {
+            throw new IllegalArgumentException("Expected insertions must be positive: " + expectedInsertions);
+        }
+        if (falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("False-positive rate must be in (0, 1): " + falsePositiveRate);
+        }
+        long bits = (long) Math.ceil(-expectedInsertions * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        int wordCount = (int) Math.min(Integer.MAX_VALUE - 8, Math.max(1, (bits + 63) >>> 6));
+        this.words = new AtomicLongArray(wordCount);
+        this.bitCount = (long) wordCount << 6;
+        this.hashCount = Math.max(1, (int) Math.round((double) bitCount / expectedInsertions * Math.log(2)));
+        this.expectedInsertions = expectedInsertions;
+    }
+
+    /**
+     * Adds a key and returns whether any bit changed, i.e. whether the key was
+     * definitely absent before.
+     */
+    public boolean put(long mostSignificantBits, long leastSignificantBits) {
+        long h1 = HyperLogLog.hash(mostSignificantBits, leastSignificantBits);
+        long h2 = HyperLogLog.hash(leastSignificantBits, ~mostSignificantBits) | 1;
+        boolean changed = false;
+        for (int i = 0; i < hashCount; i++) {
+            changed |= setBit(Math.floorMod(h1 + i * h2, bitCount));
+        }
+        if (changed) {
+            insertions.incrementAndGet();
+        }
+        return changed;
+    }
+
+    public boolean mightContain(long mostSignificantBits, long leastSignificantBits) {
+        long h1 = HyperLogLog.hash(mostSignificantBits, leastSignificantBits);
+        long h2 = HyperLogLog.hash(leastSignificantBits, ~mostSignificantBits) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Math.floorMod(h1 + i * h2, bitCount);
+            if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public boolean isSaturated() {
+        return insertions.get() >= expectedInsertions;
+    }
+
+    public long getInsertions() {
+        return insertions.get();
+    }
+
+    public long getBitCount() {
+        return bitCount;
+    }
+
+    private boolean setBit(long bit) {
+        int index = (int) (bit >>> 6);
+        long mask = 1L << bit;
+        long current;
+        do {
+            current = words.get(index);
+            if ((current & mask) != 0) {
+                return false;
+            }
+        } while (!words.compareAndSet(index, current, current | mask));
+        return true;
+    }
+}
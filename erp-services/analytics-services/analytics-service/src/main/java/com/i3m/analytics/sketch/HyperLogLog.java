@@ -0,0 +1,130 @@
+package com.i3m.analytics.sketch;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.UUID;
+
+/**
+ * Mergeable HyperLogLog cardinality sketch. Registers are updated with CAS so
+ * concurrent ingest threads can share one sketch without locking.
+ * The default precision of 12 uses 4 KB and has a standard error of about 1.6%.
+ */
+public class HyperLogLog {
+
+    public static final int DEFAULT_PRECISION = 12;
+
+    private static final VarHandle REGISTERS = MethodHandles.arrayElementVarHandle(byte[].class);
+
+    private final int precision;
+    private final byte[] registers;
+
+    public HyperLogLog() {
+        this(DEFAULT_PRECISION);
+    }
+
+    public HyperLogLog(int precision) {
+        if (precision < 4 || precision > 18) {
+            throw new IllegalArgumentException("Precision must be between 4 and 18: " + precision);
+        }
+        this.precision = precision;
+        this.registers = new byte[1 << precision];
+    }
+
+    public void offer(UUID value) {
+        offerHash(hash(value));
+    }
+
+    public void offer(long mostSignificantBits, long leastSignificantBits) {
+        offerHash(hash(mostSignificantBits, leastSignificantBits));
+    }
+
+    public void offerHash(long hash) {
+        int index = (int) (hash >>> (64 - precision));
+        long remaining = (hash << precision) | (1L << (precision - 1));
+        updateRegister(index, (byte) (Long.numberOfLeadingZeros(remaining) + 1));
+    }
+
+    /**
+     * Folds another sketch of the same precision into this one.
+     */
+    public HyperLogLog merge(HyperLogLog other) {
+        if (other.precision != precision) {
+            throw new IllegalArgumentException("Cannot merge sketches with different precision");
+        }
+        for (int i = 0; i < registers.length; i++) {
+            byte rank = (byte) REGISTERS.getVolatile(other.registers, i);
+            if (rank != 0) {
+                updateRegister(i, rank);
+            }
+        }
+        return this;
+    }
+
+    public long estimate() {
+        int m = registers.length;
+        double sum = 0;
+        int zeros = 0;
+        for (int i = 0; i < m; i++) {
+            byte rank = (byte) REGISTERS.getVolatile(registers, i);
+            sum += 1.0 / (1L << rank);
+            if (rank == 0) {
+                zeros++;
+            }
+        }
+        double estimate = alpha(m) * m * m / sum;
+        if (estimate <= 2.5 * m && zeros > 0) {
+            // Linear counting is more accurate for small cardinalities
+            estimate = m * Math.log((double) m / zeros);
+        }
+        return Math.round(estimate);
+    }
+
+    public HyperLogLog copy() {
+        return new HyperLogLog(precision).merge(this);
+    }
+
+    public int getPrecision() {
+        return precision;
+    }
+
+    public static long hash(UUID value) {
+        return hash(value.getMostSignificantBits(), value.getLeastSignificantBits());
+    }
+
+    public static long hash(long mostSignificantBits, long leastSignificantBits) {
+        return mix(mostSignificantBits ^ mix(leastSignificantBits));
+    }
+
+    private void updateRegister(int index, byte rank) {
+        byte current;
+        do {
+            current = (byte) REGISTERS.getVolatile(registers, index);
+            if (current >= rank) {
+                return;
+            }
+        } while (!REGISTERS.compareAndSet(registers, index, current, rank));
+    }
+
+    private static double alpha(int m) {
+        switch (m) {
+            case 16:
+                return 0.673;
+            case 32:
+                return 0.697;
+            case 64:
+                return 0.709;
+            default:
+                return 0.7213 / (1 + 1.079 / m);
+        }
+    }
+
+    // MurmurHash3 64-bit finalizer
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,230 @@
+package com.i3m.analytics.sketch;
+
+import java.util.Arrays;
+
+/**
+ * Mergeable quantile sketch with logarithmically sized buckets (DDSketch-style).
+ * Every quantile is returned within the configured relative error of the true
+ * value, and sketches of the same accuracy merge without loss, so per-slice
+ * sketches can be combined into any time range.
+ */
+public class QuantileSketch {
+
+    public static final double DEFAULT_RELATIVE_ACCURACY = 0.01;
+
+    // Magnitudes below this are counted as zero
+    private static final double MIN_INDEXABLE_VALUE = 1e-9;
+
+    private final double relativeAccuracy;
+    private final double gamma;
+    private final double logGamma;
+    private final BucketStore positive = new BucketStore();
+    private final BucketStore negative = new BucketStore();
+    private long zeroCount;
+    private long count;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    public QuantileSketch() {
+        this(DEFAULT_RELATIVE_ACCURACY);
+    }
+
+    public QuantileSketch(double relativeAccuracy) {
+        if (relativeAccuracy <= 0 || relativeAccuracy >= 1) {
+            throw new IllegalArgumentException("Relative accuracy must be between 0 and 1: " + relativeAccuracy);
+        }
+        this.relativeAccuracy = relativeAccuracy;
+        this.gamma = (1 + relativeAccuracy) / (1 - relativeAccuracy);
+        this.logGamma = Math.log(gamma);
+    }
+
+    /**
+     * Records a value. NaN and infinite values are ignored.
+     */
+    public synchronized void add(double value) {
+        if (!Double.isFinite(value)) {
+            return;
+        }
+        if (value > MIN_INDEXABLE_VALUE) {
+            positive.add(index(value), 1);
+        } else if (value < -MIN_INDEXABLE_VALUE) {
+            negative.add(index(-value), 1);
+        } else {
+            zeroCount++;
+        }
+        count++;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+    }
+
+    /**
+     * Takes back one earlier {@link #add} of {@code value}. Bucket counts are exact, so
+     * quantiles afterwards are as if the value had never been added; min and max are
+     * only reset once the sketch is empty.
+     *
+     * @return false, leaving the sketch unchanged, if no recorded value falls in the value's bucket
+     */
+    public synchronized boolean remove(double value) {
+        if (!Double.isFinite(value)) {
+            return false;
+        }
+        boolean removed;
+        if (value > MIN_INDEXABLE_VALUE) {
+            removed = positive.remove(index(value));
+        } else if (value < -MIN_INDEXABLE_VALUE) {
+            removed = negative.remove(index(-value));
+        } else {
+            removed = zeroCount > 0;
+            if (removed) {
+                zeroCount--;
+            }
+        }
+        if (removed && --count == 0) {
+            min = Double.POSITIVE_INFINITY;
+            max = Double.NEGATIVE_INFINITY;
+        }
+        return removed;
+    }
+
+    /**
+     * Folds another sketch of the same accuracy into this one.
+     */
+    public QuantileSketch merge(QuantileSketch other) {
+        if (other.relativeAccuracy != relativeAccuracy) {
+            throw new IllegalArgumentException("Cannot merge sketches with different accuracy");
+        }
+        // Snapshot first so two sketches merging into each other cannot deadlock
+        QuantileSketch snapshot = other.copy();
+        synchronized (this) {
+            positive.addAll(snapshot.positive);
+            negative.addAll(snapshot.negative);
+            zeroCount += snapshot.zeroCount;
+            count += snapshot.count;
+            min = Math.min(min, snapshot.min);
+            max = Math.max(max, snapshot.max);
+        }
+        return this;
+    }
+
+    /**
+     * Returns the value at quantile {@code q} in [0, 1], or NaN when the sketch is empty.
+     */
+    public synchronized double quantile(double q) {
+        if (q < 0 || q > 1) {
+            throw new IllegalArgumentException("Quantile must be between 0 and 1: " + q);
+        }
+        if (count == 0) {
+            return Double.NaN;
+        }
+        long rank = (long) (q * (count - 1));
+        double estimate;
+        if (rank < negative.total) {
+            // Negative buckets are ordered by magnitude, so walk them from the largest
+            estimate = -value(negative.indexAtRank(negative.total - 1 - rank));
+        } else if (rank < negative.total + zeroCount) {
+            estimate = 0;
+        } else {
+            estimate = value(positive.indexAtRank(rank - negative.total - zeroCount));
+        }
+        return Math.max(min, Math.min(max, estimate));
+    }
+
+    public synchronized QuantileSketch copy() {
+        QuantileSketch copy = new QuantileSketch(relativeAccuracy);
+        copy.positive.addAll(positive);
+        copy.negative.addAll(negative);
+        copy.zeroCount = zeroCount;
+        copy.count = count;
+        copy.min = min;
+        copy.max = max;
+        return copy;
+    }
+
+    public synchronized long getCount() {
+        return count;
+    }
+
+    public synchronized double getMin() {
+        return count == 0 ? Double.NaN : min;
+    }
+
+    public synchronized double getMax() {
+        return count == 0 ? Double.NaN : max;
+    }
+
+    public double getRelativeAccuracy() {
+        return relativeAccuracy;
+    }
+
+    private int index(double magnitude) {
+        return (int) Math.ceil(Math.log(magnitude) / logGamma);
+    }
+
+    private double value(int index) {
+        // Midpoint of (gamma^(i-1), gamma^i] in relative terms
+        return 2 * Math.pow(gamma, index) / (gamma + 1);
+    }
+
+    /**
+     * Dense counts over the range of bucket indexes seen so far.
+     */
+    private static final class BucketStore {
+
+        private long[] counts = new long[0];
+        private int offset;
+        private long total;
+
+        void add(int index, long n) {
+            ensureCapacity(index);
+            counts[index - offset] += n;
+            total += n;
+        }
+
+        boolean remove(int index) {
+            int slot = index - offset;
+            if (slot < 0 || slot >= counts.length || counts[slot] == 0) {
+                return false;
+            }
+            counts[slot]--;
+            total--;
+            return true;
+        }
+
+        void addAll(BucketStore other) {
+            for (int i = 0; i < other.counts.length; i++) {
+                if (other.counts[i] != 0) {
+                    add(other.offset + i, other.counts[i]);
+                }
+            }
+        }
+
+        int indexAtRank(long rank) {
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen > rank) {
+                    return offset + i;
+                }
+            }
+            return offset + counts.length - 1;
+        }
+
+        private void ensureCapacity(int index) {
+            if (counts.length == 0) {
+                counts = new long[8];
+                offset = index - 4;
+                return;
+            }
+            if (index < offset) {
+                int grow = Math.max(offset - index, counts.length / 2);
+                long[] grown = new long[counts.length + grow];
+                System.arraycopy(counts, 0, grown, grow, counts.length);
+                counts = grown;
+                offset -= grow;
+            } else if (index >= offset + counts.length) {
+                int grow = Math.max(index - offset - counts.length + 1, counts.length / 2);
+                counts = Arrays.copyOf(counts, counts.length + grow);
+            }
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.i3m.analytics.sketch;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts of values falling into fixed buckets. Bucket {@code i} holds values in
+ * [bounds[i - 1], bounds[i]); the first bucket is open below and the last is
+ * open above. Histograms with the same bounds merge by adding counts.
+ */
+public class ValueHistogram {
+
+    private final double[] bounds;
+    private final AtomicLongArray counts;
+
+    public ValueHistogram(double[] bounds) {
+        for (int i = 1; i < bounds.length; i++) {
+            if (bounds[i] <= bounds[i - 1]) {
+                throw new IllegalArgumentException("Histogram bounds must be strictly increasing");
+            }
+        }
+        this.bounds = bounds.clone();
+        this.counts = new AtomicLongArray(bounds.length + 1);
+    }
+
+    public void add(double value) {
+        if (Double.isNaN(value)) {
+            return;
+        }
+        counts.incrementAndGet(bucketOf(value));
+    }
+
+    /**
+     * Takes back one earlier {@link #add} of {@code value}.
+     *
+     * @return false, leaving the histogram unchanged, if the value's bucket is empty
+     */
+    public boolean remove(double value) {
+        if (Double.isNaN(value)) {
+            return false;
+        }
+        int bucket = bucketOf(value);
+        long count;
+        do {
+            count = counts.get(bucket);
+            if (count == 0) {
+                return false;
+            }
+        } while (!counts.compareAndSet(bucket, count, count - 1));
+        return true;
+    }
+
+    public ValueHistogram merge(ValueHistogram other) {
+        if (!Arrays.equals(bounds, other.bounds)) {
+            throw new IllegalArgumentException("Cannot merge histograms with different bounds");
+        }
+        for (int i = 0; i < counts.length(); i++) {
+            long count = other.counts.get(i);
+            if (count != 0) {
+                counts.addAndGet(i, count);
+            }
+        }
+        return this;
+    }
+
+    public ValueHistogram copy() {
+        return new ValueHistogram(bounds).merge(this);
+    }
+
+    /**
+     * Lower bound of bucket {@code i}, or negative infinity for the first bucket.
+     */
+    public double lowerBound(int bucket) {
+        return bucket == 0 ? Double.NEGATIVE_INFINITY : bounds[bucket - 1];
+    }
+
+    /**
+     * Upper bound (exclusive) of bucket {@code i}, or positive infinity for the last bucket.
+     */
+    public double upperBound(int bucket) {
+        return bucket == bounds.length ? Double.POSITIVE_INFINITY : bounds[bucket];
+    }
+
+    public long getCount(int bucket) {
+        return counts.get(bucket);
+    }
+
+    public int getBucketCount() {
+        return counts.length();
+    }
+
+    private int bucketOf(double value) {
+        int position = Arrays.binarySearch(bounds, value);
+        // An exact match belongs to the bucket the bound opens
+        return position >= 0 ? position + 1 : -position - 1;
+    }
+}
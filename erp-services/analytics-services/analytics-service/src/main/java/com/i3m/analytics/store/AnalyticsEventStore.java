@@ -0,0 +1,156 @@
+package com.i3m.analytics.store;
+
+import com.i3m.analytics.dto.AnalyticsEventDto;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * In-memory event store partitioned by tenant and then by time bucket.
+ * Range queries only visit the buckets they overlap and results come back
+ * already ordered by timestamp. Events are held in compact form and turned
+ * back into DTOs only as they are read.
+ */
+@Component
+public class AnalyticsEventStore {
+
+    private final long bucketMillis;
+    private final RecentRingSettings ringSettings;
+    private final ConcurrentHashMap<UUID, TenantEventPartition> partitions = new ConcurrentHashMap<>();
+
+    public AnalyticsEventStore(@Value("${analytics.store.bucket-minutes:60}") long bucketMinutes,
+                               @Value("${analytics.store.recent-capacity:1000}") int recentCapacity,
+                               @Value("${analytics.store.recent-filter-capacity:200}") int recentFilterCapacity,
+                               @Value("${analytics.store.recent-user-rings:10000}") int recentUserRings) {
+        this.bucketMillis = bucketMinutes * 60_000L;
+        this.ringSettings = new RecentRingSettings(recentCapacity, recentFilterCapacity, recentUserRings);
+    }
+
+    public void add(AnalyticsEventDto event) {
+        partitions.computeIfAbsent(event.getTenantId(),
+                id -> new TenantEventPartition(id, bucketMillis, ringSettings))
+            .add(event);
+    }
+
+    public Optional<AnalyticsEventDto> get(UUID tenantId, UUID eventId) {
+        TenantEventPartition partition = partitions.get(tenantId);
+        if (partition == null) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(partition.get(eventId)).map(partition::toDto);
+    }
+
+    public boolean contains(UUID tenantId, UUID eventId) {
+        TenantEventPartition partition = partitions.get(tenantId);
+        return partition != null && partition.get(eventId) != null;
+    }
+
+    public boolean remove(UUID tenantId, UUID eventId) {
+        TenantEventPartition partition = partitions.get(tenantId);
+        return partition != null && partition.remove(eventId) != null;
+    }
+
+    /**
+     * Streams a tenant's events with timestamps in [startDate, endDate]; either bound may be null.
+     */
+    public Stream<AnalyticsEventDto> scan(UUID tenantId, LocalDateTime startDate, LocalDateTime endDate,
+                                          boolean newestFirst) {
+        TenantEventPartition partition = partitions.get(tenantId);
+        if (partition == null) {
+            return Stream.empty();
+        }
+        return partition.stream(
+            EventTime.toMillis(startDate, Long.MIN_VALUE),
+            EventTime.toMillis(endDate, Long.MAX_VALUE),
+            newestFirst).map(partition::toDto);
+    }
+
+    /**
+     * Newest {@code limit} events of a tenant, optionally restricted to an event type
+     * and/or user. Served from the recent-event rings without sorting.
+     */
+    public List<AnalyticsEventDto> recent(UUID tenantId, int limit, String eventType, UUID userId) {
+        TenantEventPartition partition = partitions.get(tenantId);
+        if (partition == null) {
+            return List.of();
+        }
+        return partition.recent(limit, eventType, userId).stream().map(partition::toDto).toList();
+    }
+
+    /**
+     * Returns up to {@code limit} of a tenant's events matching the filters, strictly
+     * after {@code cursor} in (timestamp, id) order. Filters and the date range are
+     * applied while walking the buckets, and only returned events are decoded.
+     *
+     * @param cursor position to resume after, or null for the first page
+     * @param offset matching events to skip before the first returned one
+     */
+    public List<AnalyticsEventDto> seek(UUID tenantId, LocalDateTime startDate, LocalDateTime endDate,
+                                        String eventType, String eventName, UUID userId,
+                                        EventCursor cursor, long offset, int limit, boolean newestFirst) {
+        TenantEventPartition partition = partitions.get(tenantId);
+        if (partition == null) {
+            return List.of();
+        }
+        return partition.seek(
+                EventTime.toMillis(startDate, Long.MIN_VALUE),
+                EventTime.toMillis(endDate, Long.MAX_VALUE),
+                cursor, newestFirst)
+            .filter(partition.matcher(eventType, eventName, userId))
+            .skip(offset)
+            .limit(limit)
+            .map(partition::toDto)
+            .toList();
+    }
+
+    /**
+     * Counts a tenant's events matching the filters without decoding them.
+     */
+    public long count(UUID tenantId, LocalDateTime startDate, LocalDateTime endDate,
+                      String eventType, String eventName, UUID userId) {
+        TenantEventPartition partition = partitions.get(tenantId);
+        if (partition == null) {
+            return 0;
+        }
+        return partition.stream(
+                EventTime.toMillis(startDate, Long.MIN_VALUE),
+                EventTime.toMillis(endDate, Long.MAX_VALUE),
+                false)
+            .filter(partition.matcher(eventType, eventName, userId))
+            .count();
+    }
+
+    /**
+     * Drops a tenant's time buckets that end at or before the cutoff.
+     *
+     * @return number of events dropped
+     */
+    public long dropBefore(UUID tenantId, LocalDateTime cutoff) {
+        TenantEventPartition partition = partitions.get(tenantId);
+        return partition == null ? 0 : partition.dropBefore(EventTime.toMillis(cutoff));
+    }
+
+    public Set<UUID> tenants() {
+        return Set.copyOf(partitions.keySet());
+    }
+
+    public long count(UUID tenantId) {
+        TenantEventPartition partition = partitions.get(tenantId);
+        return partition == null ? 0 : partition.size();
+    }
+
+    public Optional<TenantEventPartition> partition(UUID tenantId) {
+        return Optional.ofNullable(partitions.get(tenantId));
+    }
+
+    public long getBucketMillis() {
+        return bucketMillis;
+    }
+}
@@ -0,0 +1,208 @@
+package com.i3m.analytics.store;
+
+import com.i3m.analytics.dto.AnalyticsEventDto;
+
+import java.util.Comparator;
+import java.util.UUID;
+
+/**
+ * Compact in-memory form of an analytics event. Low-cardinality strings are
+ * tenant dictionary ids, UUIDs are pairs of longs, times are epoch milliseconds
+ * and properties are packed into a byte array. DTOs are only built when events
+ * leave the store.
+ */
+public final class CompactEvent {
+
+    /** Store order: timestamp, then id. */
+    public static final Comparator<CompactEvent> ORDER = Comparator
+        .comparingLong((CompactEvent event) -> event.timestamp)
+        .thenComparingLong(event -> event.idMsb)
+        .thenComparingLong(event -> event.idLsb);
+
+    private static final byte HAS_USER = 1;
+    private static final byte HAS_SESSION = 2;
+    private static final byte HAS_VALUE = 4;
+
+    private final long idMsb;
+    private final long idLsb;
+    private final long timestamp;
+    private long userMsb;
+    private long userLsb;
+    private long sessionMsb;
+    private long sessionLsb;
+    private long createdAt;
+    private long updatedAt;
+    private double value;
+    private byte flags;
+    private int eventType;
+    private int eventName;
+    private int currency;
+    private int deviceType;
+    private int browser;
+    private int os;
+    private int country;
+    private int city;
+    private String pageUrl;
+    private String referrer;
+    private String description;
+    private byte[] properties;
+    private byte[] metadata;
+
+    private CompactEvent(long idMsb, long idLsb, long timestamp) {
+        this.idMsb = idMsb;
+        this.idLsb = idLsb;
+        this.timestamp = timestamp;
+    }
+
+    /**
+     * A key-only instance used to bound range lookups.
+     */
+    static CompactEvent probe(long timestamp, long idMsb, long idLsb) {
+        return new CompactEvent(idMsb, idLsb, timestamp);
+    }
+
+    static CompactEvent encode(AnalyticsEventDto dto, TenantDictionary dictionary) {
+        UUID id = dto.getId();
+        CompactEvent event = new CompactEvent(
+            id.getMostSignificantBits(), id.getLeastSignificantBits(), EventTime.toMillis(dto.getTimestamp()));
+        if (dto.getUserId() != null) {
+            event.flags |= HAS_USER;
+            event.userMsb = dto.getUserId().getMostSignificantBits();
+            event.userLsb = dto.getUserId().getLeastSignificantBits();
+        }
+        if (dto.getSessionId() != null) {
+            event.flags |= HAS_SESSION;
+            event.sessionMsb = dto.getSessionId().getMostSignificantBits();
+            event.sessionLsb = dto.getSessionId().getLeastSignificantBits();
+        }
+        if (dto.getValue() != null) {
+            event.flags |= HAS_VALUE;
+            event.value = dto.getValue();
+        }
+        event.createdAt = EventTime.toMillis(dto.getCreatedAt(), event.timestamp);
+        event.updatedAt = EventTime.toMillis(dto.getUpdatedAt(), event.createdAt);
+        event.eventType = dictionary.encode(dto.getEventType());
+        event.eventName = dictionary.encode(dto.getEventName());
+        event.currency = dictionary.encode(dto.getCurrency());
+        event.deviceType = dictionary.encode(dto.getDeviceType());
+        event.browser = dictionary.encode(dto.getBrowser());
+        event.os = dictionary.encode(dto.getOs());
+        event.country = dictionary.encode(dto.getCountry());
+        event.city = dictionary.encode(dto.getCity());
+        event.pageUrl = dto.getPageUrl();
+        event.referrer = dto.getReferrer();
+        event.description = dto.getDescription();
+        event.properties = PropertyCodec.encode(dto.getProperties(), dictionary);
+        event.metadata = PropertyCodec.encode(dto.getMetadata(), dictionary);
+        return event;
+    }
+
+    public AnalyticsEventDto toDto(UUID tenantId, TenantDictionary dictionary) {
+        AnalyticsEventDto dto = new AnalyticsEventDto();
+        dto.setId(getId());
+        dto.setTenantId(tenantId);
+        dto.setUserId(getUserId());
+        dto.setSessionId(getSessionId());
+        dto.setValue(hasValue() ? value : null);
+        dto.setTimestamp(EventTime.fromMillis(timestamp));
+        dto.setCreatedAt(EventTime.fromMillis(createdAt));
+        dto.setUpdatedAt(EventTime.fromMillis(updatedAt));
+        dto.setEventType(dictionary.decode(eventType));
+        dto.setEventName(dictionary.decode(eventName));
+        dto.setCurrency(dictionary.decode(currency));
+        dto.setDeviceType(dictionary.decode(deviceType));
+        dto.setBrowser(dictionary.decode(browser));
+        dto.setOs(dictionary.decode(os));
+        dto.setCountry(dictionary.decode(country));
+        dto.setCity(dictionary.decode(city));
+        dto.setPageUrl(pageUrl);
+        dto.setReferrer(referrer);
+        dto.setDescription(description);
+        dto.setProperties(PropertyCodec.decode(properties, dictionary));
+        dto.setMetadata(PropertyCodec.decode(metadata, dictionary));
+        return dto;
+    }
+
+    public UUID getId() {
+        return new UUID(idMsb, idLsb);
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public boolean hasUser() {
+        return (flags & HAS_USER) != 0;
+    }
+
+    public long getUserMsb() {
+        return userMsb;
+    }
+
+    public long getUserLsb() {
+        return userLsb;
+    }
+
+    public UUID getUserId() {
+        return hasUser() ? new UUID(userMsb, userLsb) : null;
+    }
+
+    public UUID getSessionId() {
+        return (flags & HAS_SESSION) != 0 ? new UUID(sessionMsb, sessionLsb) : null;
+    }
+
+    public boolean hasValue() {
+        return (flags & HAS_VALUE) != 0;
+    }
+
+    public double getValue() {
+        return value;
+    }
+
+    public int getEventType() {
+        return eventType;
+    }
+
+    public int getEventName() {
+        return eventName;
+    }
+
+    public int getCurrency() {
+        return currency;
+    }
+
+    public int getDeviceType() {
+        return deviceType;
+    }
+
+    public int getBrowser() {
+        return browser;
+    }
+
+    public int getOs() {
+        return os;
+    }
+
+    public int getCountry() {
+        return country;
+    }
+
+    public int getCity() {
+        return city;
+    }
+
+    public String getPageUrl() {
+        return pageUrl;
+    }
+
+    public String getReferrer() {
+        return referrer;
+    }
+
+    /**
+     * Reads one property by dictionary key id without decoding the whole map.
+     */
+    public Object getProperty(int keyId) {
+        return PropertyCodec.lookup(properties, keyId);
+    }
+}
@@ -0,0 +1,59 @@
+package com.i3m.analytics.store;
+
+import com.i3m.analytics.dto.AnalyticsEventDto;
+
+import java.nio.ByteBuffer;
+import java.util.Base64;
+import java.util.UUID;
+
+/**
+ * Position of an event in (timestamp, id) order, exchanged with clients as an
+ * opaque URL-safe token so a page can resume exactly after the last event it saw.
+ */
+public record EventCursor(long timestamp, long idMsb, long idLsb) {
+
+    private static final byte VERSION = 1;
+    private static final int LENGTH = 1 + 3 * Long.BYTES;
+
+    /**
+     * Cursor positioned at a stored event, so the next page starts just past it.
+     */
+    public static EventCursor at(AnalyticsEventDto event) {
+        UUID id = event.getId();
+        return new EventCursor(EventTime.toMillis(event.getTimestamp()), id.getMostSignificantBits(),
+            id.getLeastSignificantBits());
+    }
+
+    /**
+     * Decodes a token produced by {@link #encode()}; null or blank means the first page.
+     */
+    public static EventCursor decode(String token) {
+        if (token == null || token.isBlank()) {
+            return null;
+        }
+        byte[] bytes;
+        try {
+            bytes = Base64.getUrlDecoder().decode(token.trim());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + token);
+        }
+        if (bytes.length != LENGTH || bytes[0] != VERSION) {
+            throw new IllegalArgumentException("Invalid cursor: " + token);
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes, 1, LENGTH - 1);
+        return new EventCursor(buffer.getLong(), buffer.getLong(), buffer.getLong());
+    }
+
+    public String encode() {
+        ByteBuffer buffer = ByteBuffer.allocate(LENGTH)
+            .put(VERSION)
+            .putLong(timestamp)
+            .putLong(idMsb)
+            .putLong(idLsb);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(buffer.array());
+    }
+
+    CompactEvent toProbe() {
+        return CompactEvent.probe(timestamp, idMsb, idLsb);
+    }
+}
@@ -0,0 +1,30 @@
+package com.i3m.analytics.store;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Conversions between the {@link LocalDateTime} values carried by the DTOs and the
+ * epoch milliseconds used to key the in-memory stores.
+ */
+public final class EventTime {
+
+    private EventTime() {}
+
+    public static long toMillis(LocalDateTime time) {
+        return time.toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+    public static long toMillis(LocalDateTime time, long defaultMillis) {
+        return time == null ? defaultMillis : toMillis(time);
+    }
+
+    public static LocalDateTime fromMillis(long millis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneOffset.UTC);
+    }
+
+    public static long nowMillis() {
+        return toMillis(LocalDateTime.now());
+    }
+}
@@ -0,0 +1,147 @@
+package com.i3m.analytics.store;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Packs a property map into a byte array. Keys are dictionary ids; scalar values
+ * are stored in binary form and anything else as JSON text.
+ */
+final class PropertyCodec {
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    private static final byte NULL = 0;
+    private static final byte STRING = 1;
+    private static final byte LONG = 2;
+    private static final byte DOUBLE = 3;
+    private static final byte TRUE = 4;
+    private static final byte FALSE = 5;
+    private static final byte JSON_VALUE = 6;
+
+    private PropertyCodec() {}
+
+    static byte[] encode(Map<String, Object> properties, TenantDictionary dictionary) {
+        if (properties == null || properties.isEmpty()) {
+            return null;
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(16 * properties.size());
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(properties.size());
+            for (Map.Entry<String, Object> entry : properties.entrySet()) {
+                out.writeInt(dictionary.encode(entry.getKey()));
+                writeValue(out, entry.getValue());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    static Map<String, Object> decode(byte[] packed, TenantDictionary dictionary) {
+        if (packed == null) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(packed))) {
+            int count = in.readInt();
+            Map<String, Object> properties = new HashMap<>(count * 2);
+            for (int i = 0; i < count; i++) {
+                String key = dictionary.decode(in.readInt());
+                properties.put(key, readValue(in));
+            }
+            return properties;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Reads a single property without materialising the map.
+     */
+    static Object lookup(byte[] packed, int keyId) {
+        if (packed == null || keyId < 0) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(packed))) {
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                boolean match = in.readInt() == keyId;
+                Object value = readValue(in);
+                if (match) {
+                    return value;
+                }
+            }
+            return null;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void writeValue(DataOutputStream out, Object value) throws IOException {
+        if (value == null) {
+            out.writeByte(NULL);
+        } else if (value instanceof String text) {
+            out.writeByte(STRING);
+            writeText(out, text);
+        } else if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+            out.writeByte(LONG);
+            out.writeLong(((Number) value).longValue());
+        } else if (value instanceof Double || value instanceof Float) {
+            out.writeByte(DOUBLE);
+            out.writeDouble(((Number) value).doubleValue());
+        } else if (value instanceof Boolean bool) {
+            out.writeByte(bool ? TRUE : FALSE);
+        } else {
+            out.writeByte(JSON_VALUE);
+            try {
+                writeText(out, JSON.writeValueAsString(value));
+            } catch (JsonProcessingException e) {
+                throw new IllegalArgumentException("Unsupported property value: " + value, e);
+            }
+        }
+    }
+
+    private static Object readValue(DataInputStream in) throws IOException {
+        byte tag = in.readByte();
+        switch (tag) {
+            case NULL:
+                return null;
+            case STRING:
+                return readText(in);
+            case LONG:
+                return in.readLong();
+            case DOUBLE:
+                return in.readDouble();
+            case TRUE:
+                return Boolean.TRUE;
+            case FALSE:
+                return Boolean.FALSE;
+            case JSON_VALUE:
+                return JSON.readValue(readText(in), Object.class);
+            default:
+                throw new IOException("Corrupt property encoding, tag " + tag);
+        }
+    }
+
+    private static void writeText(DataOutputStream out, String text) throws IOException {
+        byte[] utf8 = text.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(utf8.length);
+        out.write(utf8);
+    }
+
+    private static String readText(DataInputStream in) throws IOException {
+        byte[] utf8 = new byte[in.readInt()];
+        in.readFully(utf8);
+        return new String(utf8, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,62 @@
+package com.i3m.analytics.store;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded lock-free ring of the most recently ingested events. Reads walk back
+ * from the write cursor, so the newest N entries cost O(N) regardless of how
+ * many events the tenant holds.
+ */
+class RecentEventRing {
+
+    private final AtomicReferenceArray<Entry> entries;
+    private final AtomicLong cursor = new AtomicLong();
+    private final boolean complete;
+
+    /**
+     * @param complete whether the ring was created before any matching event was
+     *                 ingested, so that a partially filled ring holds every match
+     */
+    RecentEventRing(int capacity, boolean complete) {
+        this.entries = new AtomicReferenceArray<>(capacity);
+        this.complete = complete;
+    }
+
+    void add(CompactEvent event) {
+        long sequence = cursor.getAndIncrement();
+        entries.set((int) (sequence % entries.length()), new Entry(sequence, event));
+    }
+
+    /**
+     * Returns up to {@code max} entries, newest first. Slots overwritten by a
+     * concurrent writer are skipped.
+     */
+    List<CompactEvent> newest(int max) {
+        long end = cursor.get();
+        long start = Math.max(0, end - Math.min(max, entries.length()));
+        List<CompactEvent> result = new ArrayList<>((int) (end - start));
+        for (long sequence = end - 1; sequence >= start; sequence--) {
+            Entry entry = entries.get((int) (sequence % entries.length()));
+            if (entry != null && entry.sequence == sequence) {
+                result.add(entry.event);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Whether every matching event ever ingested is still in the ring.
+     */
+    boolean holdsAll() {
+        return complete && cursor.get() <= entries.length();
+    }
+
+    int capacity() {
+        return entries.length();
+    }
+
+    private record Entry(long sequence, CompactEvent event) {}
+}
@@ -0,0 +1,10 @@
+package com.i3m.analytics.store;
+
+/**
+ * Sizes of the per-tenant recent-event rings.
+ *
+ * @param capacity       events kept in the unfiltered ring
+ * @param filterCapacity events kept per event type and per user
+ * @param maxUserRings   users tracked per tenant before arbitrary eviction
+ */
+public record RecentRingSettings(int capacity, int filterCapacity, int maxUserRings) {}
@@ -0,0 +1,62 @@
+package com.i3m.analytics.store;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Append-only per-tenant dictionary mapping low-cardinality strings (event types,
+ * names, devices, countries, property keys) to dense int ids. Decoding returns
+ * the shared String instance, so events never carry their own copies.
+ */
+public class TenantDictionary {
+
+    public static final int NULL_ID = -1;
+    public static final int ABSENT = -2;
+
+    private final ConcurrentHashMap<String, Integer> ids = new ConcurrentHashMap<>();
+    private volatile String[] values = new String[64];
+    private int size;
+
+    public int encode(String value) {
+        if (value == null) {
+            return NULL_ID;
+        }
+        Integer id = ids.get(value);
+        if (id != null) {
+            return id;
+        }
+        synchronized (this) {
+            id = ids.get(value);
+            if (id != null) {
+                return id;
+            }
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            // The value is stored before its id is published
+            values[size] = value;
+            ids.put(value, size);
+            return size++;
+        }
+    }
+
+    /**
+     * Returns the id of a known value, {@link #NULL_ID} for null, or {@link #ABSENT}
+     * when the value has never been seen and so cannot match any event.
+     */
+    public int lookup(String value) {
+        if (value == null) {
+            return NULL_ID;
+        }
+        Integer id = ids.get(value);
+        return id == null ? ABSENT : id;
+    }
+
+    public String decode(int id) {
+        return id < 0 ? null : values[id];
+    }
+
+    public int size() {
+        return ids.size();
+    }
+}
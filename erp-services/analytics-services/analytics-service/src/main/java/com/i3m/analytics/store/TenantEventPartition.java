@@ -0,0 +1,325 @@
+package com.i3m.analytics.store;
+
+import com.i3m.analytics.dto.AnalyticsEventDto;
+import com.i3m.analytics.sketch.BloomFilter;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Predicate;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.stream.Stream;
+
+/**
+ * All events of a single tenant, split into fixed-width time buckets and held
+ * as {@link CompactEvent}s encoded against the tenant's dictionary. Recent-event
+ * rings (overall, per event type and per user) serve live feeds without
+ * walking the buckets.
+ */
+public class TenantEventPartition {
+
+    // Evicted users remembered before the filter's false-positive rate starts to climb,
+    // as a multiple of the user ring limit
+    private static final int EVICTED_USERS_PER_RING = 10;
+    private static final double EVICTED_USERS_FALSE_POSITIVE_RATE = 0.01;
+
+    private final UUID tenantId;
+    private final long bucketMillis;
+    private final TenantDictionary dictionary = new TenantDictionary();
+    private final ConcurrentSkipListMap<Long, TimeBucket> buckets = new ConcurrentSkipListMap<>();
+    private final ConcurrentHashMap<UUID, CompactEvent> eventsById = new ConcurrentHashMap<>();
+    private final RecentEventRing recent;
+    private final ConcurrentHashMap<Integer, RecentEventRing> recentByType = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<UUID, RecentEventRing> recentByUser = new ConcurrentHashMap<>();
+    private final int filterRingCapacity;
+    private final int maxUserRings;
+    // Users whose ring has been evicted, so a later ring for them would miss their
+    // older events; created on the first eviction
+    private volatile BloomFilter evictedUsers;
+
+    public TenantEventPartition(UUID tenantId, long bucketMillis, RecentRingSettings ringSettings) {
+        this.tenantId = tenantId;
+        this.bucketMillis = bucketMillis;
+        this.recent = new RecentEventRing(ringSettings.capacity(), true);
+        this.filterRingCapacity = ringSettings.filterCapacity();
+        this.maxUserRings = ringSettings.maxUserRings();
+    }
+
+    CompactEvent add(AnalyticsEventDto dto) {
+        CompactEvent event = CompactEvent.encode(dto, dictionary);
+        CompactEvent previous = eventsById.put(dto.getId(), event);
+        if (previous != null) {
+            // Replacements keep their ring positions and reads resolve the current version
+            // by id, so only the rings of a type or user the event moved to need the new version
+            removeFromBucket(previous);
+            if (event.getEventType() != previous.getEventType()) {
+                addToTypeRing(event);
+            }
+            if (event.hasUser() && !(previous.hasUser() && previous.getUserMsb() == event.getUserMsb()
+                    && previous.getUserLsb() == event.getUserLsb())) {
+                addToUserRing(event);
+            }
+        } else {
+            addToRecentRings(event);
+        }
+        bucketFor(event.getTimestamp()).put(event);
+        return event;
+    }
+
+    /**
+     * Returns the newest {@code limit} events, optionally filtered by event type and
+     * user, from the recent rings. Falls back to a newest-first bucket walk only when
+     * a ring cannot prove it holds enough matches.
+     */
+    List<CompactEvent> recent(int limit, String eventType, UUID userId) {
+        int typeId = eventType == null ? TenantDictionary.NULL_ID : dictionary.lookup(eventType);
+        if (typeId == TenantDictionary.ABSENT || limit <= 0) {
+            return List.of();
+        }
+        RecentEventRing ring;
+        if (userId != null) {
+            ring = recentByUser.get(userId);
+            if (ring == null && !wasEvicted(userId)) {
+                return List.of();
+            }
+        } else if (eventType != null) {
+            ring = recentByType.get(typeId);
+            if (ring == null) {
+                return List.of();
+            }
+        } else {
+            ring = recent;
+        }
+        boolean typeFilteredInRing = userId != null && eventType != null;
+        if (ring != null && limit <= ring.capacity()) {
+            List<CompactEvent> result = fromRing(ring, limit, typeFilteredInRing ? ring.capacity() : limit,
+                typeId, userId);
+            if (result.size() < limit && !typeFilteredInRing) {
+                // Some entries were deleted or moved; look further back in the ring
+                result = fromRing(ring, limit, ring.capacity(), typeId, userId);
+            }
+            if (result.size() >= limit || ring.holdsAll()) {
+                result.sort(CompactEvent.ORDER.reversed());
+                return result;
+            }
+        }
+        return stream(Long.MIN_VALUE, Long.MAX_VALUE, true)
+            .filter(matcher(eventType, null, userId))
+            .limit(limit)
+            .toList();
+    }
+
+    /**
+     * Streams events in [fromMillis, toMillis] strictly after {@code cursor} in the
+     * requested direction. Only buckets on the far side of the cursor are visited.
+     */
+    public Stream<CompactEvent> seek(long fromMillis, long toMillis, EventCursor cursor, boolean newestFirst) {
+        if (cursor == null) {
+            return stream(fromMillis, toMillis, newestFirst);
+        }
+        CompactEvent probe = cursor.toProbe();
+        long from = newestFirst ? fromMillis : Math.max(fromMillis, cursor.timestamp());
+        long to = newestFirst ? Math.min(toMillis, cursor.timestamp()) : toMillis;
+        return buckets(from, to, newestFirst).stream()
+            .flatMap(bucket -> bucket.stream(from, to, probe, newestFirst));
+    }
+
+    /**
+     * Compiles equality filters on event type, event name and user against the
+     * dictionary, so each event is checked with int and long comparisons. Null
+     * arguments do not filter.
+     */
+    public Predicate<CompactEvent> matcher(String eventType, String eventName, UUID userId) {
+        int typeId = dictionary.lookup(eventType);
+        int nameId = dictionary.lookup(eventName);
+        if (typeId == TenantDictionary.ABSENT || nameId == TenantDictionary.ABSENT) {
+            return event -> false;
+        }
+        Predicate<CompactEvent> matcher = event -> true;
+        if (eventType != null) {
+            matcher = matcher.and(event -> event.getEventType() == typeId);
+        }
+        if (eventName != null) {
+            matcher = matcher.and(event -> event.getEventName() == nameId);
+        }
+        if (userId != null) {
+            long msb = userId.getMostSignificantBits();
+            long lsb = userId.getLeastSignificantBits();
+            matcher = matcher.and(event -> event.hasUser() && event.getUserMsb() == msb && event.getUserLsb() == lsb);
+        }
+        return matcher;
+    }
+
+    CompactEvent get(UUID eventId) {
+        return eventsById.get(eventId);
+    }
+
+    CompactEvent remove(UUID eventId) {
+        CompactEvent removed = eventsById.remove(eventId);
+        if (removed != null) {
+            removeFromBucket(removed);
+        }
+        return removed;
+    }
+
+    /**
+     * Streams events with timestamps in [fromMillis, toMillis], touching only the
+     * buckets that overlap the range.
+     */
+    public Stream<CompactEvent> stream(long fromMillis, long toMillis, boolean newestFirst) {
+        return buckets(fromMillis, toMillis, newestFirst).stream()
+            .flatMap(bucket -> bucket.stream(fromMillis, toMillis, newestFirst));
+    }
+
+    /**
+     * Returns the buckets overlapping [fromMillis, toMillis] in time order.
+     */
+    public Collection<TimeBucket> buckets(long fromMillis, long toMillis, boolean newestFirst) {
+        if (fromMillis > toMillis) {
+            return List.of();
+        }
+        long first = fromMillis == Long.MIN_VALUE ? Long.MIN_VALUE : bucketStart(fromMillis);
+        NavigableMap<Long, TimeBucket> range = buckets.subMap(first, true, toMillis, true);
+        return (newestFirst ? range.descendingMap() : range).values();
+    }
+
+    public AnalyticsEventDto toDto(CompactEvent event) {
+        return event.toDto(tenantId, dictionary);
+    }
+
+    public UUID getTenantId() {
+        return tenantId;
+    }
+
+    public TenantDictionary getDictionary() {
+        return dictionary;
+    }
+
+    /**
+     * Drops every whole bucket that ends at or before {@code cutoffMillis}, together
+     * with its events. A bucket straddling the cutoff is kept until it fully expires.
+     *
+     * @return number of events dropped
+     */
+    public long dropBefore(long cutoffMillis) {
+        long dropped = 0;
+        for (TimeBucket bucket : buckets.headMap(bucketStart(cutoffMillis), false).values()) {
+            if (!buckets.remove(bucket.getStartMillis(), bucket)) {
+                continue;
+            }
+            Iterator<CompactEvent> events = bucket.stream(Long.MIN_VALUE, Long.MAX_VALUE, false).iterator();
+            while (events.hasNext()) {
+                CompactEvent event = events.next();
+                // Only unmap the id if it still points at this version of the event
+                if (eventsById.remove(event.getId(), event)) {
+                    dropped++;
+                }
+            }
+        }
+        return dropped;
+    }
+
+    public long size() {
+        return eventsById.size();
+    }
+
+    /**
+     * Resolves ring entries to the current version of each event, keeping those that
+     * still match the ring's type and user. An event that moved away and back is in
+     * a ring twice and is returned once.
+     */
+    private List<CompactEvent> fromRing(RecentEventRing ring, int limit, int scan, int typeId, UUID userId) {
+        List<CompactEvent> result = new ArrayList<>(limit);
+        Set<UUID> seen = new HashSet<>();
+        Predicate<CompactEvent> ofUser = matcher(null, null, userId);
+        Iterator<CompactEvent> candidates = ring.newest(scan).iterator();
+        while (candidates.hasNext() && result.size() < limit) {
+            CompactEvent candidate = candidates.next();
+            CompactEvent current = eventsById.get(candidate.getId());
+            if (current != null && (typeId == TenantDictionary.NULL_ID || current.getEventType() == typeId)
+                    && ofUser.test(current) && seen.add(current.getId())) {
+                result.add(current);
+            }
+        }
+        return result;
+    }
+
+    private void addToRecentRings(CompactEvent event) {
+        recent.add(event);
+        addToTypeRing(event);
+        if (event.hasUser()) {
+            addToUserRing(event);
+        }
+    }
+
+    private void addToTypeRing(CompactEvent event) {
+        recentByType.computeIfAbsent(event.getEventType(), type -> new RecentEventRing(filterRingCapacity, true))
+            .add(event);
+    }
+
+    private void addToUserRing(CompactEvent event) {
+        UUID userId = event.getUserId();
+        RecentEventRing ring = recentByUser.get(userId);
+        if (ring == null) {
+            if (recentByUser.size() >= maxUserRings) {
+                // Evict an arbitrary user; their later reads fall back to the buckets
+                Iterator<UUID> users = recentByUser.keySet().iterator();
+                if (users.hasNext()) {
+                    evict(users.next());
+                }
+            }
+            // Complete only if none of this user's events were dropped with an evicted ring
+            boolean complete = !wasEvicted(userId);
+            ring = recentByUser.computeIfAbsent(userId, id -> new RecentEventRing(filterRingCapacity, complete));
+        }
+        ring.add(event);
+    }
+
+    private void evict(UUID userId) {
+        BloomFilter filter = evictedUsers;
+        if (filter == null) {
+            synchronized (this) {
+                filter = evictedUsers;
+                if (filter == null) {
+                    filter = new BloomFilter((long) maxUserRings * EVICTED_USERS_PER_RING,
+                        EVICTED_USERS_FALSE_POSITIVE_RATE);
+                    evictedUsers = filter;
+                }
+            }
+        }
+        // Recorded before the ring goes, so a ring created for the user meanwhile is marked incomplete
+        filter.put(userId.getMostSignificantBits(), userId.getLeastSignificantBits());
+        recentByUser.remove(userId);
+    }
+
+    /**
+     * Whether the user may have had a ring evicted. False positives only cost a
+     * bucket walk; a user who was evicted is never reported as not evicted.
+     */
+    private boolean wasEvicted(UUID userId) {
+        BloomFilter filter = evictedUsers;
+        return filter != null && filter.mightContain(userId.getMostSignificantBits(), userId.getLeastSignificantBits());
+    }
+
+    private TimeBucket bucketFor(long timestampMillis) {
+        long start = bucketStart(timestampMillis);
+        return buckets.computeIfAbsent(start, key -> new TimeBucket(key, key + bucketMillis));
+    }
+
+    private void removeFromBucket(CompactEvent event) {
+        TimeBucket bucket = buckets.get(bucketStart(event.getTimestamp()));
+        if (bucket != null) {
+            bucket.remove(event);
+        }
+    }
+
+    private long bucketStart(long timestampMillis) {
+        return Math.floorDiv(timestampMillis, bucketMillis) * bucketMillis;
+    }
+}
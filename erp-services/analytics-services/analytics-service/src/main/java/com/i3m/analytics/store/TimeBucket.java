@@ -0,0 +1,140 @@
+package com.i3m.analytics.store;
+
+import com.i3m.analytics.sketch.HyperLogLog;
+
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * One time slice of a tenant partition. Events are kept ordered by
+ * (timestamp, id) so range reads and newest-first reads never sort.
+ * A distinct-user sketch is maintained alongside so unique users over whole
+ * buckets can be answered without touching the events. A sketch cannot forget a
+ * user, so removing an event with a user marks it stale and the next read
+ * rebuilds it from the events still in the bucket.
+ */
+public class TimeBucket {
+
+    private final long startMillis;
+    private final long endMillis;
+    private final ConcurrentSkipListSet<CompactEvent> events = new ConcurrentSkipListSet<>(CompactEvent.ORDER);
+    private final AtomicInteger size = new AtomicInteger();
+    private final AtomicLong userRemovals = new AtomicLong();
+    private volatile HyperLogLog userSketch = new HyperLogLog();
+    private volatile long sketchRemovals;
+
+    public TimeBucket(long startMillis, long endMillis) {
+        this.startMillis = startMillis;
+        this.endMillis = endMillis;
+    }
+
+    void put(CompactEvent event) {
+        if (events.add(event)) {
+            size.incrementAndGet();
+        }
+        if (event.hasUser()) {
+            userSketch.offer(event.getUserMsb(), event.getUserLsb());
+        }
+    }
+
+    void remove(CompactEvent event) {
+        if (events.remove(event)) {
+            size.decrementAndGet();
+            if (event.hasUser()) {
+                userRemovals.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Streams the events of this bucket whose timestamp lies in [fromMillis, toMillis].
+     */
+    public Stream<CompactEvent> stream(long fromMillis, long toMillis, boolean newestFirst) {
+        NavigableSet<CompactEvent> view = coveredBy(fromMillis, toMillis)
+            ? events
+            : events.subSet(
+                CompactEvent.probe(fromMillis, Long.MIN_VALUE, Long.MIN_VALUE), true,
+                CompactEvent.probe(toMillis, Long.MAX_VALUE, Long.MAX_VALUE), true);
+        return (newestFirst ? view.descendingSet() : view).stream();
+    }
+
+    /**
+     * Streams the events in [fromMillis, toMillis] that come strictly after {@code cursor}
+     * in the requested direction; a null cursor starts at the edge of the range.
+     */
+    Stream<CompactEvent> stream(long fromMillis, long toMillis, CompactEvent cursor, boolean newestFirst) {
+        if (cursor == null) {
+            return stream(fromMillis, toMillis, newestFirst);
+        }
+        CompactEvent low = CompactEvent.probe(fromMillis, Long.MIN_VALUE, Long.MIN_VALUE);
+        CompactEvent high = CompactEvent.probe(toMillis, Long.MAX_VALUE, Long.MAX_VALUE);
+        boolean lowInclusive = true;
+        boolean highInclusive = true;
+        if (newestFirst && CompactEvent.ORDER.compare(cursor, high) <= 0) {
+            high = cursor;
+            highInclusive = false;
+        } else if (!newestFirst && CompactEvent.ORDER.compare(cursor, low) >= 0) {
+            low = cursor;
+            lowInclusive = false;
+        }
+        if (CompactEvent.ORDER.compare(low, high) > 0) {
+            return Stream.empty();
+        }
+        NavigableSet<CompactEvent> view = events.subSet(low, lowInclusive, high, highInclusive);
+        return (newestFirst ? view.descendingSet() : view).stream();
+    }
+
+    public boolean coveredBy(long fromMillis, long toMillis) {
+        return fromMillis <= startMillis && toMillis >= endMillis - 1;
+    }
+
+    public long getStartMillis() {
+        return startMillis;
+    }
+
+    public long getEndMillis() {
+        return endMillis;
+    }
+
+    /**
+     * Distinct users of the events in this bucket, rebuilt first if events with a
+     * user have been removed since the sketch was last built.
+     */
+    public HyperLogLog getUserSketch() {
+        // Read before the check, so a sketch caught mid-rebuild is never returned
+        HyperLogLog sketch = userSketch;
+        if (sketchRemovals != userRemovals.get()) {
+            rebuildUserSketch();
+            sketch = userSketch;
+        }
+        return sketch;
+    }
+
+    private synchronized void rebuildUserSketch() {
+        long removals = userRemovals.get();
+        if (sketchRemovals == removals) {
+            return;
+        }
+        // Publishing the empty sketch before the walk means a concurrent put either
+        // offers to it directly or added its event early enough for the walk to see
+        HyperLogLog rebuilt = new HyperLogLog();
+        userSketch = rebuilt;
+        for (CompactEvent event : events) {
+            if (event.hasUser()) {
+                rebuilt.offer(event.getUserMsb(), event.getUserLsb());
+            }
+        }
+        sketchRemovals = removals;
+    }
+
+    public int size() {
+        return size.get();
+    }
+
+    public boolean isEmpty() {
+        return size.get() == 0;
+    }
+}
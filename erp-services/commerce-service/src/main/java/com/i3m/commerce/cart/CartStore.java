@@ -0,0 +1,113 @@
+package com.i3m.commerce.cart;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Carts as Redis hashes of product id to quantity. Every write is one Lua
+ * script that changes a single field and refreshes the TTL, so each operation
+ * is one round trip, carries only the item it touches, and cannot lose a
+ * concurrent change to another item.
+ */
+@Component
+public class CartStore {
+
+    private static final String KEY_PREFIX = "cart:";
+
+    // KEYS: cart; ARGV: product, quantity delta, ttl seconds. Returns {quantity, item count}
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> ADD = new DefaultRedisScript<>("""
+        local quantity = redis.call('HINCRBY', KEYS[1], ARGV[1], ARGV[2])
+        if quantity <= 0 then
+            redis.call('HDEL', KEYS[1], ARGV[1])
+            quantity = 0
+        end
+        redis.call('EXPIRE', KEYS[1], ARGV[3])
+        return {quantity, redis.call('HLEN', KEYS[1])}
+        """, List.class);
+
+    // KEYS: cart; ARGV: product, quantity (0 removes), ttl seconds. Returns the item count
+    private static final RedisScript<Long> SET = new DefaultRedisScript<>("""
+        if tonumber(ARGV[2]) > 0 then
+            redis.call('HSET', KEYS[1], ARGV[1], ARGV[2])
+        else
+            redis.call('HDEL', KEYS[1], ARGV[1])
+        end
+        redis.call('EXPIRE', KEYS[1], ARGV[3])
+        return redis.call('HLEN', KEYS[1])
+        """, Long.class);
+
+    // KEYS: source, target; ARGV: ttl seconds. Adds the source quantities to the target and deletes the source
+    private static final RedisScript<Long> MERGE = new DefaultRedisScript<>("""
+        local items = redis.call('HGETALL', KEYS[1])
+        for i = 1, #items, 2 do
+            redis.call('HINCRBY', KEYS[2], items[i], items[i + 1])
+        end
+        redis.call('DEL', KEYS[1])
+        if redis.call('EXISTS', KEYS[2]) == 1 then
+            redis.call('EXPIRE', KEYS[2], ARGV[1])
+        end
+        return redis.call('HLEN', KEYS[2])
+        """, Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final long ttlSeconds;
+
+    public CartStore(StringRedisTemplate redisTemplate,
+                     @Value("${ecommerce.cart.expiry-hours:24}") long expiryHours) {
+        this.redisTemplate = redisTemplate;
+        this.ttlSeconds = expiryHours * 3600;
+    }
+
+    /**
+     * Adds {@code delta} (which may be negative) to an item and returns the new
+     * quantity and the number of distinct items in the cart.
+     */
+    public long[] add(String cartId, UUID productId, int delta) {
+        List<?> result = redisTemplate.execute(ADD, List.of(key(cartId)),
+            productId.toString(), String.valueOf(delta), String.valueOf(ttlSeconds));
+        return new long[] {toLong(result.get(0)), toLong(result.get(1))};
+    }
+
+    /**
+     * Sets an item's quantity, removing it at zero, and returns the number of items.
+     */
+    public long set(String cartId, UUID productId, int quantity) {
+        Long items = redisTemplate.execute(SET, List.of(key(cartId)),
+            productId.toString(), String.valueOf(quantity), String.valueOf(ttlSeconds));
+        return items != null ? items : 0;
+    }
+
+    /**
+     * Moves every item of {@code sourceCartId} into {@code targetCartId}, adding
+     * quantities of items in both, as one atomic step.
+     */
+    public long merge(String sourceCartId, String targetCartId) {
+        Long items = redisTemplate.execute(MERGE, List.of(key(sourceCartId), key(targetCartId)),
+            String.valueOf(ttlSeconds));
+        return items != null ? items : 0;
+    }
+
+    public Map<UUID, Integer> get(String cartId) {
+        Map<UUID, Integer> items = new LinkedHashMap<>();
+        redisTemplate.<String, String>opsForHash().entries(key(cartId))
+            .forEach((productId, quantity) -> items.put(UUID.fromString(productId), Integer.parseInt(quantity)));
+        return items;
+    }
+
+    private static String key(String cartId) {
+        return KEY_PREFIX + cartId;
+    }
+
+    private static long toLong(Object value) {
+        return value instanceof Number number ? number.longValue() : Long.parseLong(value.toString());
+    }
+}
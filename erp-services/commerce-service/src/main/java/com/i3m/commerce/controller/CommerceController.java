@@ -1,12 +1,17 @@
 package com.i3m.commerce.controller;
 
+import com.i3m.commerce.dto.CartDto;
 import com.i3m.commerce.dto.ProductDto;
 import com.i3m.commerce.dto.OrderDto;
+import com.i3m.commerce.dto.OrderHistoryPageDto;
+import com.i3m.commerce.dto.ProductSearchResultDto;
+import com.i3m.commerce.inventory.Reservation;
 import com.i3m.commerce.service.CommerceService;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -37,21 +42,37 @@ public class CommerceController {
     public ResponseEntity<ProductDto> createProduct(
             @RequestHeader("X-Tenant-ID") UUID tenantId,
             @Valid @RequestBody ProductDto productDto) {
-        ProductDto created = commerceService.createProduct(productDto);
+        ProductDto created = commerceService.createProduct(tenantId, productDto);
         return new ResponseEntity<>(created, HttpStatus.CREATED);
     }
 
+    // slice=true skips the total count, for infinite scroll
     @GetMapping("/products")
-    public ResponseEntity<Page<ProductDto>> getProducts(
+    public ResponseEntity<Slice<ProductDto>> getProducts(
             @RequestHeader("X-Tenant-ID") UUID tenantId,
             @RequestParam(required = false) String category,
             @RequestParam(required = false) String status,
             @RequestParam(required = false) String search,
+            @RequestParam(defaultValue = "false") boolean slice,
             Pageable pageable) {
-        Page<ProductDto> products = commerceService.getAllProducts(pageable);
+        Slice<ProductDto> products = slice
+            ? commerceService.getProductSlice(tenantId, category, status, search, pageable)
+            : commerceService.getProducts(tenantId, category, status, search, pageable);
         return ResponseEntity.ok(products);
     }
 
+    @GetMapping("/products/search")
+    public ResponseEntity<ProductSearchResultDto> searchProducts(
+            @RequestHeader("X-Tenant-ID") UUID tenantId,
+            @RequestParam("q") String query,
+            @RequestParam(required = false) String category,
+            @RequestParam(required = false) String tag,
+            @RequestParam(required = false) String status,
+            Pageable pageable) {
+        ProductSearchResultDto results = commerceService.searchProducts(tenantId, query, category, tag, status, pageable);
+        return ResponseEntity.ok(results);
+    }
+
     @GetMapping("/products/{id}")
     public ResponseEntity<ProductDto> getProduct(
             @RequestHeader("X-Tenant-ID") UUID tenantId,
@@ -82,10 +103,39 @@ public class CommerceController {
             @RequestHeader("X-Tenant-ID") UUID tenantId,
             @PathVariable UUID id,
             @RequestParam Integer quantity) {
-        ProductDto updated = commerceService.updateProduct(id, new ProductDto());
+        ProductDto updated = commerceService.updateInventory(tenantId, id, quantity);
         return ResponseEntity.ok(updated);
     }
 
+    // Inventory reservations: reserve at checkout, then commit on payment or release on abandon
+    @PostMapping("/products/{id}/reservations")
+    public ResponseEntity<Reservation> reserveInventory(
+            @RequestHeader("X-Tenant-ID") UUID tenantId,
+            @PathVariable UUID id,
+            @RequestParam(defaultValue = "1") Integer quantity,
+            @RequestParam(required = false) Long ttlSeconds) {
+        Reservation reservation = commerceService.reserveInventory(tenantId, id, quantity, ttlSeconds);
+        return new ResponseEntity<>(reservation, HttpStatus.CREATED);
+    }
+
+    @PostMapping("/reservations/{reservationId}/commit")
+    public ResponseEntity<Void> commitReservation(
+            @RequestHeader("X-Tenant-ID") UUID tenantId,
+            @PathVariable UUID reservationId) {
+        return commerceService.commitReservation(tenantId, reservationId)
+            ? ResponseEntity.noContent().build()
+            : ResponseEntity.notFound().build();
+    }
+
+    @DeleteMapping("/reservations/{reservationId}")
+    public ResponseEntity<Void> releaseReservation(
+            @RequestHeader("X-Tenant-ID") UUID tenantId,
+            @PathVariable UUID reservationId) {
+        return commerceService.releaseReservation(tenantId, reservationId)
+            ? ResponseEntity.noContent().build()
+            : ResponseEntity.notFound().build();
+    }
+
     // Order Management
     @PostMapping("/orders")
     public ResponseEntity<OrderDto> createOrder(
@@ -113,6 +163,16 @@ public class CommerceController {
         return ResponseEntity.ok(order);
     }
 
+    @GetMapping("/customers/{customerId}/orders")
+    public ResponseEntity<OrderHistoryPageDto> getCustomerOrders(
+            @RequestHeader("X-Tenant-ID") UUID tenantId,
+            @PathVariable UUID customerId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size) {
+        OrderHistoryPageDto orders = commerceService.getOrdersByCustomerId(tenantId, customerId, cursor, size);
+        return ResponseEntity.ok(orders);
+    }
+
     @PutMapping("/orders/{id}/status")
     public ResponseEntity<OrderDto> updateOrderStatus(
             @RequestHeader("X-Tenant-ID") UUID tenantId,
@@ -150,16 +210,65 @@ public class CommerceController {
     // Cart Management (for public API)
     @PostMapping("/public/cart/add")
     public ResponseEntity<Map<String, Object>> addToCart(
+            @RequestHeader("X-Tenant-ID") UUID tenantId,
             @RequestParam UUID productId,
             @RequestParam Integer quantity,
             @RequestParam(required = false) String sessionId) {
-        Map<String, Object> result = Map.of("status", "ok");
+        Map<String, Object> result = commerceService.addToCart(tenantId, productId, quantity, sessionId);
         return ResponseEntity.ok(result);
     }
 
     @GetMapping("/public/cart/{sessionId}")
-    public ResponseEntity<Map<String, Object>> getCart(@PathVariable String sessionId) {
-        Map<String, Object> cart = Map.of("status", "ok");
+    public ResponseEntity<CartDto> getCart(
+            @RequestHeader("X-Tenant-ID") UUID tenantId,
+            @PathVariable String sessionId) {
+        CartDto cart = commerceService.getCart(tenantId, sessionId);
+        return ResponseEntity.ok(cart);
+    }
+
+    @PutMapping("/public/cart/{sessionId}/items/{productId}")
+    public ResponseEntity<CartDto> updateCartItem(
+            @RequestHeader("X-Tenant-ID") UUID tenantId,
+            @PathVariable String sessionId,
+            @PathVariable UUID productId,
+            @RequestParam Integer quantity) {
+        CartDto cart = commerceService.updateCartItem(tenantId, sessionId, productId, quantity);
+        return ResponseEntity.ok(cart);
+    }
+
+    @DeleteMapping("/public/cart/{sessionId}/items/{productId}")
+    public ResponseEntity<CartDto> removeCartItem(
+            @RequestHeader("X-Tenant-ID") UUID tenantId,
+            @PathVariable String sessionId,
+            @PathVariable UUID productId) {
+        CartDto cart = commerceService.updateCartItem(tenantId, sessionId, productId, 0);
+        return ResponseEntity.ok(cart);
+    }
+
+    // A user's cart is only readable by that user, as identified by the gateway
+    @GetMapping("/cart/users/{userId}")
+    public ResponseEntity<CartDto> getUserCart(
+            @RequestHeader("X-Tenant-ID") UUID tenantId,
+            @RequestHeader("X-User-ID") UUID callerId,
+            @PathVariable UUID userId) {
+        if (!userId.equals(callerId)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        CartDto cart = commerceService.getUserCart(tenantId, userId);
+        return ResponseEntity.ok(cart);
+    }
+
+    // Called on sign-in: moves the guest cart into the user's cart
+    @PostMapping("/cart/users/{userId}/merge")
+    public ResponseEntity<CartDto> mergeCart(
+            @RequestHeader("X-Tenant-ID") UUID tenantId,
+            @RequestHeader("X-User-ID") UUID callerId,
+            @PathVariable UUID userId,
+            @RequestParam String sessionId) {
+        if (!userId.equals(callerId)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        CartDto cart = commerceService.mergeCart(tenantId, sessionId, userId);
         return ResponseEntity.ok(cart);
     }
 }
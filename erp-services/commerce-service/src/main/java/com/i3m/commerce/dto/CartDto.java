@@ -0,0 +1,139 @@
+package com.i3m.commerce.dto;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.UUID;
+
+public class CartDto {
+    private String cartId;
+    
+    private List<CartItemDto> items;
+    
+    private int itemsCount;
+    
+    private BigDecimal subtotal;
+    
+    // Constructors
+    public CartDto() {}
+    
+    public CartDto(String cartId, List<CartItemDto> items, BigDecimal subtotal) {
+        this.cartId = cartId;
+        this.items = items;
+        this.itemsCount = items.size();
+        this.subtotal = subtotal;
+    }
+    
+    // Getters and Setters
+    public String getCartId() {
+        return cartId;
+    }
+    
+    public void setCartId(String cartId) {
+        this.cartId = cartId;
+    }
+    
+    public List<CartItemDto> getItems() {
+        return items;
+    }
+    
+    public void setItems(List<CartItemDto> items) {
+        this.items = items;
+    }
+    
+    public int getItemsCount() {
+        return itemsCount;
+    }
+    
+    public void setItemsCount(int itemsCount) {
+        this.itemsCount = itemsCount;
+    }
+    
+    public BigDecimal getSubtotal() {
+        return subtotal;
+    }
+    
+    public void setSubtotal(BigDecimal subtotal) {
+        this.subtotal = subtotal;
+    }
+    
+    // Inner class for CartItem
+    public static class CartItemDto {
+        private UUID productId;
+        private String productName;
+        private Integer quantity;
+        private BigDecimal unitPrice;
+        private BigDecimal totalPrice;
+        private Long available;
+        private boolean inStock;
+        
+        // Constructors
+        public CartItemDto() {}
+        
+        public CartItemDto(UUID productId, String productName, Integer quantity, BigDecimal unitPrice, Long available) {
+            this.productId = productId;
+            this.productName = productName;
+            this.quantity = quantity;
+            this.unitPrice = unitPrice;
+            this.totalPrice = unitPrice != null ? unitPrice.multiply(BigDecimal.valueOf(quantity)) : null;
+            this.available = available;
+            this.inStock = available != null && available >= quantity;
+        }
+        
+        // Getters and Setters
+        public UUID getProductId() {
+            return productId;
+        }
+        
+        public void setProductId(UUID productId) {
+            this.productId = productId;
+        }
+        
+        public String getProductName() {
+            return productName;
+        }
+        
+        public void setProductName(String productName) {
+            this.productName = productName;
+        }
+        
+        public Integer getQuantity() {
+            return quantity;
+        }
+        
+        public void setQuantity(Integer quantity) {
+            this.quantity = quantity;
+        }
+        
+        public BigDecimal getUnitPrice() {
+            return unitPrice;
+        }
+        
+        public void setUnitPrice(BigDecimal unitPrice) {
+            this.unitPrice = unitPrice;
+        }
+        
+        public BigDecimal getTotalPrice() {
+            return totalPrice;
+        }
+        
+        public void setTotalPrice(BigDecimal totalPrice) {
+            this.totalPrice = totalPrice;
+        }
+        
+        public Long getAvailable() {
+            return available;
+        }
+        
+        public void setAvailable(Long available) {
+            this.available = available;
+        }
+        
+        public boolean isInStock() {
+            return inStock;
+        }
+        
+        public void setInStock(boolean inStock) {
+            this.inStock = inStock;
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.i3m.commerce.dto;
+
+import java.util.List;
+
+/**
+ * One page of a customer's order history. {@code nextCursor} is passed back to
+ * fetch the following page and is null on the last one.
+ */
+public class OrderHistoryPageDto {
+    private List<OrderSummaryDto> orders;
+    
+    private String nextCursor;
+    
+    private boolean hasMore;
+    
+    // Constructors
+    public OrderHistoryPageDto() {}
+    
+    public OrderHistoryPageDto(List<OrderSummaryDto> orders, String nextCursor, boolean hasMore) {
+        this.orders = orders;
+        this.nextCursor = nextCursor;
+        this.hasMore = hasMore;
+    }
+    
+    // Getters and Setters
+    public List<OrderSummaryDto> getOrders() {
+        return orders;
+    }
+    
+    public void setOrders(List<OrderSummaryDto> orders) {
+        this.orders = orders;
+    }
+    
+    public String getNextCursor() {
+        return nextCursor;
+    }
+    
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+    
+    public boolean isHasMore() {
+        return hasMore;
+    }
+    
+    public void setHasMore(boolean hasMore) {
+        this.hasMore = hasMore;
+    }
+}
@@ -0,0 +1,98 @@
+package com.i3m.commerce.dto;
+
+import com.i3m.commerce.model.Order;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Order history row, read straight from the query without loading the order entity.
+ */
+public class OrderSummaryDto {
+    private UUID id;
+    
+    private String orderNumber;
+    
+    private String status;
+    
+    private String paymentStatus;
+    
+    private BigDecimal totalAmount;
+    
+    private String currency;
+    
+    private LocalDateTime createdAt;
+    
+    // Constructors
+    public OrderSummaryDto() {}
+    
+    public OrderSummaryDto(UUID id, String orderNumber, Order.OrderStatus status,
+                           Order.PaymentStatus paymentStatus, BigDecimal totalAmount,
+                           String currency, LocalDateTime createdAt) {
+        this.id = id;
+        this.orderNumber = orderNumber;
+        this.status = status != null ? status.name() : null;
+        this.paymentStatus = paymentStatus != null ? paymentStatus.name() : null;
+        this.totalAmount = totalAmount;
+        this.currency = currency;
+        this.createdAt = createdAt;
+    }
+    
+    // Getters and Setters
+    public UUID getId() {
+        return id;
+    }
+    
+    public void setId(UUID id) {
+        this.id = id;
+    }
+    
+    public String getOrderNumber() {
+        return orderNumber;
+    }
+    
+    public void setOrderNumber(String orderNumber) {
+        this.orderNumber = orderNumber;
+    }
+    
+    public String getStatus() {
+        return status;
+    }
+    
+    public void setStatus(String status) {
+        this.status = status;
+    }
+    
+    public String getPaymentStatus() {
+        return paymentStatus;
+    }
+    
+    public void setPaymentStatus(String paymentStatus) {
+        this.paymentStatus = paymentStatus;
+    }
+    
+    public BigDecimal getTotalAmount() {
+        return totalAmount;
+    }
+    
+    public void setTotalAmount(BigDecimal totalAmount) {
+        this.totalAmount = totalAmount;
+    }
+    
+    public String getCurrency() {
+        return currency;
+    }
+    
+    public void setCurrency(String currency) {
+        this.currency = currency;
+    }
+    
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+    
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+}
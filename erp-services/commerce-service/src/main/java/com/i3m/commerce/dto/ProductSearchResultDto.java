@@ -0,0 +1,50 @@
+package com.i3m.commerce.dto;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One page of ranked search hits with the total match count and facet counts
+ * ("category", "tags") over all matches.
+ */
+public class ProductSearchResultDto {
+    private List<ProductDto> products;
+    
+    private long total;
+    
+    private Map<String, Map<String, Long>> facets;
+    
+    // Constructors
+    public ProductSearchResultDto() {}
+    
+    public ProductSearchResultDto(List<ProductDto> products, long total, Map<String, Map<String, Long>> facets) {
+        this.products = products;
+        this.total = total;
+        this.facets = facets;
+    }
+    
+    // Getters and Setters
+    public List<ProductDto> getProducts() {
+        return products;
+    }
+    
+    public void setProducts(List<ProductDto> products) {
+        this.products = products;
+    }
+    
+    public long getTotal() {
+        return total;
+    }
+    
+    public void setTotal(long total) {
+        this.total = total;
+    }
+    
+    public Map<String, Map<String, Long>> getFacets() {
+        return facets;
+    }
+    
+    public void setFacets(Map<String, Map<String, Long>> facets) {
+        this.facets = facets;
+    }
+}
@@ -0,0 +1,360 @@
+package com.i3m.commerce.inventory;
+
+import com.i3m.commerce.model.Product;
+import com.i3m.commerce.repository.ProductRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Stock counters for checkout, kept in Redis and changed only by Lua scripts so
+ * every reserve, commit and release is one atomic step however many instances
+ * and buyers hit the same SKU. Each product has an {@code available} counter
+ * (sellable units) and a {@code reserved} counter (units held by open
+ * reservations). Committed sales and stock corrections accumulate as
+ * per-product deltas that a scheduled flush applies to {@code commerce.products}
+ * in one JDBC batch, so Postgres sees one row update per product per flush
+ * instead of one per sale. Once a product's counter is seeded, its
+ * {@code quantity_in_stock} column is written only by that flush.
+ * Reservations that are neither committed nor released expire and are returned.
+ * Scripts touch keys they derive from reservation data, so this assumes a
+ * standalone (non-cluster) Redis.
+ */
+@Component
+public class InventoryReservationEngine {
+
+    private static final Logger log = LoggerFactory.getLogger(InventoryReservationEngine.class);
+
+    private static final String KEY_PREFIX = "inventory:";
+    private static final String EXPIRY_KEY = "inventory:reservations:expiry";
+    private static final String PENDING_KEY = "inventory:pending";
+    private static final String IN_FLIGHT_KEY = "inventory:pending:in-flight";
+    private static final String FLUSH_SEQUENCE_KEY = "inventory:flush:sequence";
+    private static final String BATCH_FIELD = "#batch";
+    private static final String TAKEN_FIELD = "#taken";
+    private static final int SWEEP_BATCH_SIZE = 500;
+    // How long a taken batch belongs to the instance that took it before another may retry it
+    private static final long IN_FLIGHT_LEASE_MILLIS = 10_000;
+
+    // Fenced by the batch number, so a retried or stale batch never applies twice
+    private static final String UPDATE_SQL = "UPDATE commerce.products "
+        + "SET quantity_in_stock = COALESCE(quantity_in_stock, 0) + ?, stock_flush_seq = ? "
+        + "WHERE id = ? AND tenant_id = ? AND COALESCE(stock_flush_seq, 0) < ?";
+
+    // KEYS: available, reserved, reservation, expiry; ARGV: quantity, reservation id, expires at, tenant, product
+    private static final RedisScript<Long> RESERVE = new DefaultRedisScript<>("""
+        local available = redis.call('GET', KEYS[1])
+        if not available then return -2 end
+        local quantity = tonumber(ARGV[1])
+        if tonumber(available) < quantity then return -1 end
+        local remaining = redis.call('DECRBY', KEYS[1], quantity)
+        redis.call('INCRBY', KEYS[2], quantity)
+        redis.call('HSET', KEYS[3], 'tenant', ARGV[4], 'product', ARGV[5], 'quantity', quantity)
+        redis.call('ZADD', KEYS[4], ARGV[3], ARGV[2])
+        return remaining
+        """, Long.class);
+
+    // KEYS: reservation, expiry, pending; ARGV: reservation id, tenant ('' for any), key prefix, 1 to commit / 0 to release
+    private static final RedisScript<Long> SETTLE = new DefaultRedisScript<>("""
+        local reservation = redis.call('HMGET', KEYS[1], 'tenant', 'product', 'quantity')
+        if not reservation[1] then
+            redis.call('ZREM', KEYS[2], ARGV[1])
+            return 0
+        end
+        if ARGV[2] ~= '' and reservation[1] ~= ARGV[2] then return 0 end
+        local quantity = tonumber(reservation[3])
+        local field = reservation[1] .. ':' .. reservation[2]
+        redis.call('DECRBY', ARGV[3] .. field .. ':reserved', quantity)
+        if ARGV[4] == '1' then
+            redis.call('HINCRBY', KEYS[3], field, -quantity)
+        else
+            redis.call('INCRBY', ARGV[3] .. field .. ':available', quantity)
+        end
+        redis.call('DEL', KEYS[1])
+        redis.call('ZREM', KEYS[2], ARGV[1])
+        return quantity
+        """, Long.class);
+
+    // KEYS: available, reserved, pending; ARGV: stock in Postgres, pending field
+    private static final RedisScript<Long> LOAD = new DefaultRedisScript<>("""
+        local pending = tonumber(redis.call('HGET', KEYS[3], ARGV[2]) or '0')
+        local reserved = tonumber(redis.call('GET', KEYS[2]) or '0')
+        redis.call('SET', KEYS[1], tonumber(ARGV[1]) + pending - reserved, 'NX')
+        return tonumber(redis.call('GET', KEYS[1]))
+        """, Long.class);
+
+    // KEYS: available, reserved, pending; ARGV: new on-hand stock, pending field
+    // The correction is recorded as a delta like a sale, so it commutes with batches being flushed
+    private static final RedisScript<Long> SET_STOCK = new DefaultRedisScript<>("""
+        local available = redis.call('GET', KEYS[1])
+        if not available then return false end
+        local reserved = tonumber(redis.call('GET', KEYS[2]) or '0')
+        local delta = tonumber(ARGV[1]) - reserved - tonumber(available)
+        if delta ~= 0 then
+            redis.call('INCRBY', KEYS[1], delta)
+            redis.call('HINCRBY', KEYS[3], ARGV[2], delta)
+        end
+        return tonumber(available) + delta
+        """, Long.class);
+
+    // KEYS: pending, in-flight, flush sequence; ARGV: now, lease
+    // Moves the pending deltas to the in-flight hash under a new batch number, or hands
+    // out the in-flight batch again once its lease has lapsed
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> TAKE_PENDING = new DefaultRedisScript<>("""
+        if redis.call('EXISTS', KEYS[2]) == 1 then
+            local taken = tonumber(redis.call('HGET', KEYS[2], '#taken') or '0')
+            if tonumber(ARGV[1]) - taken < tonumber(ARGV[2]) then return {} end
+            redis.call('HSET', KEYS[2], '#taken', ARGV[1])
+        elseif redis.call('EXISTS', KEYS[1]) == 1 then
+            redis.call('RENAME', KEYS[1], KEYS[2])
+            redis.call('HSET', KEYS[2], '#batch', redis.call('INCR', KEYS[3]), '#taken', ARGV[1])
+        else
+            return {}
+        end
+        return redis.call('HGETALL', KEYS[2])
+        """, List.class);
+
+    // KEYS: in-flight; ARGV: batch number
+    private static final RedisScript<Long> ACK_PENDING = new DefaultRedisScript<>("""
+        if redis.call('HGET', KEYS[1], '#batch') ~= ARGV[1] then return 0 end
+        redis.call('DEL', KEYS[1])
+        return 1
+        """, Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final ProductRepository productRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final long defaultTtlSeconds;
+    private final Counter reserved;
+    private final Counter rejected;
+    private final Counter expired;
+    private final Counter flushedProducts;
+
+    public InventoryReservationEngine(StringRedisTemplate redisTemplate,
+                                      ProductRepository productRepository,
+                                      JdbcTemplate jdbcTemplate,
+                                      PlatformTransactionManager transactionManager,
+                                      MeterRegistry meterRegistry,
+                                      @Value("${ecommerce.inventory.reservation-ttl-seconds:900}") long defaultTtlSeconds) {
+        this.redisTemplate = redisTemplate;
+        this.productRepository = productRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.defaultTtlSeconds = defaultTtlSeconds;
+        this.reserved = Counter.builder("commerce.inventory.reservations").tag("outcome", "reserved").register(meterRegistry);
+        this.rejected = Counter.builder("commerce.inventory.reservations").tag("outcome", "rejected").register(meterRegistry);
+        this.expired = Counter.builder("commerce.inventory.reservations").tag("outcome", "expired").register(meterRegistry);
+        this.flushedProducts = Counter.builder("commerce.inventory.flushed.products").register(meterRegistry);
+    }
+
+    /**
+     * Takes {@code quantity} units of a product for {@code ttlSeconds} (the
+     * configured default when null).
+     *
+     * @throws InsufficientStockException if fewer units are available
+     */
+    public Reservation reserve(UUID tenantId, UUID productId, int quantity, Long ttlSeconds) {
+        if (quantity <= 0) {
+            throw new IllegalArgumentException("Quantity must be positive");
+        }
+        long ttl = ttlSeconds != null && ttlSeconds > 0 ? ttlSeconds : defaultTtlSeconds;
+        UUID reservationId = UUID.randomUUID();
+        Instant expiresAt = Instant.now().plusSeconds(ttl);
+        List<String> keys = List.of(availableKey(tenantId, productId), reservedKey(tenantId, productId),
+            reservationKey(reservationId), EXPIRY_KEY);
+        // The reservation hash has no TTL: the sweeper needs its quantity however far behind it runs
+        Object[] args = {String.valueOf(quantity), reservationId.toString(), String.valueOf(expiresAt.toEpochMilli()),
+            tenantId.toString(), productId.toString()};
+
+        Long remaining = redisTemplate.execute(RESERVE, keys, args);
+        if (remaining != null && remaining == -2) {
+            load(tenantId, productId);
+            remaining = redisTemplate.execute(RESERVE, keys, args);
+        }
+        if (remaining == null || remaining < 0) {
+            rejected.increment();
+            throw new InsufficientStockException("Insufficient stock for product: " + productId);
+        }
+        reserved.increment();
+        return new Reservation(reservationId, tenantId, productId, quantity, expiresAt, remaining);
+    }
+
+    /**
+     * Turns a reservation into a sale. Returns false if it no longer exists.
+     */
+    public boolean commit(UUID tenantId, UUID reservationId) {
+        return settle(tenantId, reservationId, true) > 0;
+    }
+
+    /**
+     * Returns a reservation's units to stock. Returns false if it no longer exists.
+     */
+    public boolean release(UUID tenantId, UUID reservationId) {
+        return settle(tenantId, reservationId, false) > 0;
+    }
+
+    /**
+     * Replaces a product's on-hand stock, e.g. after a stock count. Units held by
+     * open reservations stay held. The difference to the current count is queued
+     * like a sale and reaches Postgres with the next flush.
+     */
+    public long setStock(UUID tenantId, UUID productId, int onHand) {
+        List<String> keys = List.of(availableKey(tenantId, productId), reservedKey(tenantId, productId), PENDING_KEY);
+        Object[] args = {String.valueOf(onHand), pendingField(tenantId, productId)};
+        Long available = redisTemplate.execute(SET_STOCK, keys, args);
+        if (available == null) {
+            load(tenantId, productId);
+            available = redisTemplate.execute(SET_STOCK, keys, args);
+        }
+        return available != null ? available : onHand;
+    }
+
+    /**
+     * Sellable stock of several products with one MGET. Products whose counter has
+     * not been seeded yet fall back to the stock recorded in Postgres.
+     */
+    public Map<UUID, Long> available(Collection<Product> products) {
+        List<Product> ordered = new ArrayList<>(products);
+        List<String> values = redisTemplate.opsForValue().multiGet(ordered.stream()
+            .map(product -> availableKey(product.getTenantId(), product.getId()))
+            .toList());
+        Map<UUID, Long> available = new HashMap<>();
+        for (int i = 0; i < ordered.size(); i++) {
+            Product product = ordered.get(i);
+            String value = values != null ? values.get(i) : null;
+            long onHand = product.getQuantityInStock() != null ? product.getQuantityInStock() : 0;
+            available.put(product.getId(), value != null ? Long.parseLong(value) : onHand);
+        }
+        return available;
+    }
+
+    /**
+     * Releases every reservation past its expiry, in batches until none is due, so
+     * a backlog is cleared in one run rather than a batch per interval.
+     */
+    @Scheduled(fixedDelayString = "${ecommerce.inventory.expiry-sweep-interval-ms:5000}")
+    public void releaseExpired() {
+        long now = System.currentTimeMillis();
+        Set<String> due;
+        do {
+            // Settling removes each reservation from the index, so every pass reads the next batch
+            due = redisTemplate.opsForZSet().rangeByScore(EXPIRY_KEY, 0, now, 0, SWEEP_BATCH_SIZE);
+            if (due == null) {
+                return;
+            }
+            for (String reservationId : due) {
+                if (settle(null, UUID.fromString(reservationId), false) > 0) {
+                    expired.increment();
+                }
+            }
+        } while (due.size() == SWEEP_BATCH_SIZE);
+    }
+
+    /**
+     * Applies committed sales and stock corrections to Postgres. Deltas move to an
+     * in-flight hash under a new batch number and are deleted only after the batch
+     * commits; a batch that failed, or whose instance died, is retried once its
+     * lease lapses. Each row records the last batch applied to it, so a retried
+     * batch that had already committed is skipped rather than applied again.
+     */
+    @Scheduled(fixedDelayString = "${ecommerce.inventory.flush-interval-ms:1000}")
+    public void flush() {
+        List<?> pending = redisTemplate.execute(TAKE_PENDING, List.of(PENDING_KEY, IN_FLIGHT_KEY, FLUSH_SEQUENCE_KEY),
+            String.valueOf(System.currentTimeMillis()), String.valueOf(IN_FLIGHT_LEASE_MILLIS));
+        if (pending == null || pending.isEmpty()) {
+            return;
+        }
+        String batch = null;
+        Map<String, Long> deltas = new HashMap<>();
+        for (int i = 0; i + 1 < pending.size(); i += 2) {
+            String field = pending.get(i).toString();
+            String value = pending.get(i + 1).toString();
+            if (BATCH_FIELD.equals(field)) {
+                batch = value;
+            } else if (!TAKEN_FIELD.equals(field)) {
+                deltas.put(field, Long.parseLong(value));
+            }
+        }
+        if (batch == null) {
+            return;
+        }
+        long sequence = Long.parseLong(batch);
+        List<Object[]> updates = new ArrayList<>();
+        deltas.forEach((field, delta) -> {
+            if (delta != 0) {
+                String[] ids = field.split(":");
+                updates.add(new Object[] {delta, sequence, UUID.fromString(ids[1]), UUID.fromString(ids[0]), sequence});
+            }
+        });
+        try {
+            if (!updates.isEmpty()) {
+                transactionTemplate.executeWithoutResult(status -> jdbcTemplate.batchUpdate(UPDATE_SQL, updates));
+                flushedProducts.increment(updates.size());
+            }
+        } catch (RuntimeException e) {
+            log.error("Failed to flush inventory batch {} for {} products, will retry", batch, updates.size(), e);
+            return;
+        }
+        redisTemplate.execute(ACK_PENDING, List.of(IN_FLIGHT_KEY), batch);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    private long settle(UUID tenantId, UUID reservationId, boolean commit) {
+        Long quantity = redisTemplate.execute(SETTLE,
+            List.of(reservationKey(reservationId), EXPIRY_KEY, PENDING_KEY),
+            reservationId.toString(), tenantId != null ? tenantId.toString() : "", KEY_PREFIX, commit ? "1" : "0");
+        return quantity != null ? quantity : 0;
+    }
+
+    // Seeds the counter from Postgres the first time a product is reserved
+    private void load(UUID tenantId, UUID productId) {
+        Product product = productRepository.findByIdAndTenantId(productId, tenantId)
+            .orElseThrow(() -> new RuntimeException("Product not found"));
+        int onHand = product.getQuantityInStock() != null ? product.getQuantityInStock() : 0;
+        redisTemplate.execute(LOAD,
+            List.of(availableKey(tenantId, productId), reservedKey(tenantId, productId), PENDING_KEY),
+            String.valueOf(onHand), pendingField(tenantId, productId));
+    }
+
+    private static String availableKey(UUID tenantId, UUID productId) {
+        return KEY_PREFIX + pendingField(tenantId, productId) + ":available";
+    }
+
+    private static String reservedKey(UUID tenantId, UUID productId) {
+        return KEY_PREFIX + pendingField(tenantId, productId) + ":reserved";
+    }
+
+    private static String reservationKey(UUID reservationId) {
+        return KEY_PREFIX + "reservation:" + reservationId;
+    }
+
+    private static String pendingField(UUID tenantId, UUID productId) {
+        return tenantId + ":" + productId;
+    }
+}
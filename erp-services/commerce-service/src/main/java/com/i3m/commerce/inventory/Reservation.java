@@ -0,0 +1,10 @@
+package com.i3m.commerce.inventory;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Stock held for a checkout until it is committed, released or expires.
+ * {@code remaining} is the stock still available to others right after it was taken.
+ */
+public record Reservation(UUID id, UUID tenantId, UUID productId, int quantity, Instant expiresAt, long remaining) {}
@@ -7,7 +7,12 @@ import java.time.LocalDateTime;
 import java.util.UUID;
 
 @Entity
-@Table(name = "orders", schema = "commerce")
+@Table(name = "orders", schema = "commerce",
+       indexes = {
+           // Serves the customer order history, newest first, with keyset paging
+           @Index(name = "idx_orders_tenant_customer_created",
+                  columnList = "tenant_id, customer_id, created_at DESC, id DESC")
+       })
 public class Order {
     
     @Id
@@ -9,7 +9,16 @@ import java.util.List;
 import java.util.UUID;
 
 @Entity
-@Table(name = "products", schema = "commerce")
+@Table(name = "products", schema = "commerce",
+       indexes = {
+           // Back the filtered product listing: tenant first, then the equality filters
+           @Index(name = "idx_products_tenant_status_created",
+                  columnList = "tenant_id, status, created_at DESC"),
+           @Index(name = "idx_products_tenant_category_status_created",
+                  columnList = "tenant_id, category, status, created_at DESC"),
+           // Serves the search index's incremental sync
+           @Index(name = "idx_products_updated_id", columnList = "updated_at, id")
+       })
 public class Product {
     
     @Id
@@ -44,9 +53,14 @@ public class Product {
     @Column(name = "barcode")
     private String barcode;
     
-    @Column(name = "quantity_in_stock")
+    // Set on insert only; afterwards InventoryReservationEngine owns it, so a full-row save cannot overwrite stock
+    @Column(name = "quantity_in_stock", updatable = false)
     private Integer quantityInStock = 0;
     
+    // Last inventory flush batch applied to quantity_in_stock, written only by the flush
+    @Column(name = "stock_flush_seq", insertable = false, updatable = false)
+    private Long stockFlushSeq;
+    
     @Column(name = "track_quantity")
     private Boolean trackQuantity = true;
     
@@ -144,6 +158,8 @@ public class Product {
     public Integer getQuantityInStock() { return quantityInStock; }
     public void setQuantityInStock(Integer quantityInStock) { this.quantityInStock = quantityInStock; }
     
+    public Long getStockFlushSeq() { return stockFlushSeq; }
+    
     public Boolean getTrackQuantity() { return trackQuantity; }
     public void setTrackQuantity(Boolean trackQuantity) { this.trackQuantity = trackQuantity; }
     
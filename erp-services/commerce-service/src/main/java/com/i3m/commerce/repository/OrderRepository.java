@@ -1,5 +1,6 @@
 package com.i3m.commerce.repository;
 
+import com.i3m.commerce.dto.OrderSummaryDto;
 import com.i3m.commerce.model.Order;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
@@ -41,4 +42,25 @@ public interface OrderRepository extends JpaRepository<Order, UUID> {
                                 @Param("endDate") LocalDateTime endDate);
     
     Long countByTenantIdAndStatus(UUID tenantId, Order.OrderStatus status);
+    
+    // Customer order history, newest first; both queries walk idx_orders_tenant_customer_created,
+    // the row-value comparison letting the cursor seek into it as a single range condition
+    @Query("SELECT new com.i3m.commerce.dto.OrderSummaryDto(o.id, o.orderNumber, o.status, o.paymentStatus, " +
+           "o.totalAmount, o.currency, o.createdAt) FROM Order o " +
+           "WHERE o.tenantId = :tenantId AND o.customerId = :customerId " +
+           "ORDER BY o.createdAt DESC, o.id DESC")
+    List<OrderSummaryDto> findOrderHistory(@Param("tenantId") UUID tenantId,
+                                           @Param("customerId") UUID customerId,
+                                           Pageable pageable);
+    
+    @Query("SELECT new com.i3m.commerce.dto.OrderSummaryDto(o.id, o.orderNumber, o.status, o.paymentStatus, " +
+           "o.totalAmount, o.currency, o.createdAt) FROM Order o " +
+           "WHERE o.tenantId = :tenantId AND o.customerId = :customerId " +
+           "AND (o.createdAt, o.id) < (:createdAt, :id) " +
+           "ORDER BY o.createdAt DESC, o.id DESC")
+    List<OrderSummaryDto> findOrderHistoryBefore(@Param("tenantId") UUID tenantId,
+                                                 @Param("customerId") UUID customerId,
+                                                 @Param("createdAt") LocalDateTime createdAt,
+                                                 @Param("id") UUID id,
+                                                 Pageable pageable);
 }
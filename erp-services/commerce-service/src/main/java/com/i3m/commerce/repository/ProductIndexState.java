@@ -0,0 +1,13 @@
+package com.i3m.commerce.repository;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Just enough of a product to tell whether a search index entry is current.
+ */
+public interface ProductIndexState {
+    UUID getId();
+    UUID getTenantId();
+    LocalDateTime getUpdatedAt();
+}
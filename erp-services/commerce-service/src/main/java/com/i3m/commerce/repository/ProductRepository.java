@@ -4,21 +4,27 @@ import com.i3m.commerce.model.Product;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
 @Repository
-public interface ProductRepository extends JpaRepository<Product, UUID> {
+public interface ProductRepository extends JpaRepository<Product, UUID>,
+        JpaSpecificationExecutor<Product>, ProductRepositoryCustom {
     
     Page<Product> findByTenantId(UUID tenantId, Pageable pageable);
     
     Optional<Product> findByIdAndTenantId(UUID id, UUID tenantId);
     
+    List<Product> findByTenantIdAndIdIn(UUID tenantId, Collection<UUID> ids);
+    
     Page<Product> findByTenantIdAndCategory(UUID tenantId, String category, Pageable pageable);
     
     Page<Product> findByTenantIdAndStatus(UUID tenantId, Product.ProductStatus status, Pageable pageable);
@@ -38,4 +44,13 @@ public interface ProductRepository extends JpaRepository<Product, UUID> {
     Optional<Product> findByTenantIdAndSku(UUID tenantId, String sku);
     
     Long countByTenantIdAndStatus(UUID tenantId, Product.ProductStatus status);
+    
+    @Query("SELECT p.id AS id, p.tenantId AS tenantId, p.updatedAt AS updatedAt FROM Product p")
+    List<ProductIndexState> findIndexStates();
+    
+    // Products changed since a watermark, oldest first, paged by a (updatedAt, id) cursor
+    @Query("SELECT p FROM Product p WHERE (p.updatedAt, p.id) > (:updatedAt, :id) ORDER BY p.updatedAt, p.id")
+    List<Product> findUpdatedAfter(@Param("updatedAt") LocalDateTime updatedAt,
+                                   @Param("id") UUID id,
+                                   Pageable pageable);
 }
@@ -0,0 +1,16 @@
+package com.i3m.commerce.repository;
+
+import com.i3m.commerce.model.Product;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.domain.Specification;
+
+public interface ProductRepositoryCustom {
+    
+    /**
+     * Reads one page of products matching {@code spec} without the {@code COUNT(*)}
+     * a {@link org.springframework.data.domain.Page} needs; one extra row is fetched
+     * to tell whether another page follows.
+     */
+    Slice<Product> findSlice(Specification<Product> spec, Pageable pageable);
+}
@@ -0,0 +1,69 @@
+package com.i3m.commerce.repository;
+
+import com.i3m.commerce.model.Product;
+import jakarta.persistence.criteria.Expression;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.UUID;
+
+/**
+ * Composable product predicates mirroring the {@link ProductRepository} finders.
+ * Null or blank arguments mean "no filter", so any combination ends up as one
+ * WHERE clause in a single statement.
+ */
+public final class ProductSpecifications {
+    
+    private ProductSpecifications() {}
+    
+    public static Specification<Product> filter(UUID tenantId, String category,
+                                                Product.ProductStatus status, String search) {
+        return Specification.where(hasTenant(tenantId))
+            .and(hasCategory(category))
+            .and(hasStatus(status))
+            .and(matches(search));
+    }
+    
+    public static Specification<Product> hasTenant(UUID tenantId) {
+        return (root, query, cb) -> cb.equal(root.get("tenantId"), tenantId);
+    }
+    
+    public static Specification<Product> hasCategory(String category) {
+        if (category == null || category.isBlank()) {
+            return null;
+        }
+        return (root, query, cb) -> cb.equal(root.get("category"), category);
+    }
+    
+    public static Specification<Product> hasStatus(Product.ProductStatus status) {
+        if (status == null) {
+            return null;
+        }
+        return (root, query, cb) -> cb.equal(root.get("status"), status);
+    }
+    
+    // Tags are stored comma-separated; match a whole entry, as the search index does
+    public static Specification<Product> hasTag(String tag) {
+        if (tag == null || tag.isBlank()) {
+            return null;
+        }
+        String escaped = tag.trim().replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+        return (root, query, cb) -> {
+            Expression<String> tags = cb.concat(cb.concat(",", root.<String>get("tags")), ",");
+            return cb.or(
+                cb.like(tags, "%," + escaped + ",%", '\\'),
+                cb.like(tags, "%, " + escaped + ",%", '\\'));
+        };
+    }
+    
+    // Same match as ProductRepository.findByTenantIdAndSearch
+    public static Specification<Product> matches(String search) {
+        if (search == null || search.isBlank()) {
+            return null;
+        }
+        String pattern = "%" + search.toLowerCase() + "%";
+        return (root, query, cb) -> cb.or(
+            cb.like(cb.lower(root.get("name")), pattern),
+            cb.like(cb.lower(root.get("description")), pattern),
+            cb.like(cb.lower(root.get("searchKeywords")), pattern));
+    }
+}
@@ -0,0 +1,20 @@
+package com.i3m.commerce.search;
+
+import com.i3m.commerce.model.Product;
+
+import java.util.UUID;
+
+/**
+ * Published when a product is saved or deleted; the search index applies it
+ * once the transaction commits. {@code product} is null for a deletion.
+ */
+public record ProductIndexEvent(UUID tenantId, UUID productId, Product product) {
+
+    public static ProductIndexEvent saved(Product product) {
+        return new ProductIndexEvent(product.getTenantId(), product.getId(), product);
+    }
+
+    public static ProductIndexEvent deleted(UUID tenantId, UUID productId) {
+        return new ProductIndexEvent(tenantId, productId, null);
+    }
+}
@@ -0,0 +1,351 @@
+package com.i3m.commerce.search;
+
+import com.i3m.commerce.model.Product;
+import com.i3m.commerce.repository.ProductIndexState;
+import com.i3m.commerce.repository.ProductRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * In-process catalog search, one {@link TenantSearchIndex} per tenant. Product
+ * writes made by this instance reach it through {@link ProductIndexEvent}s after
+ * commit. Writes made by other instances are picked up by a periodic sync that
+ * re-reads products updated since the last one, and deletions by a slower full
+ * reconcile. At startup it loads the last local snapshot and reconciles it with
+ * the database, or rebuilds from the database when there is no usable snapshot;
+ * until then {@link #isReady()} is false and callers should fall back to the
+ * database.
+ */
+@Component
+public class ProductSearchIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(ProductSearchIndex.class);
+
+    private static final int SNAPSHOT_MAGIC = 0x50534958;
+    private static final int SNAPSHOT_VERSION = 1;
+    private static final int LOAD_BATCH_SIZE = 500;
+    // Re-read window before the watermark, covering writes stamped before it but committed after
+    private static final Duration SYNC_OVERLAP = Duration.ofMinutes(1);
+    private static final UUID MIN_ID = new UUID(0, 0);
+
+    private final ProductRepository productRepository;
+    private final Path snapshotPath;
+    private final ConcurrentHashMap<UUID, TenantSearchIndex> tenants = new ConcurrentHashMap<>();
+    // Products deleted while a load, sync or reconcile runs, so its stale reads cannot resurrect them
+    private final Set<UUID> deletedDuringLoad = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean dirty = new AtomicBoolean();
+    private volatile boolean loading = true;
+    private volatile boolean ready;
+    // Start of the last pass that read every product changed before it
+    private volatile LocalDateTime watermark;
+
+    public ProductSearchIndex(ProductRepository productRepository,
+                              @Value("${ecommerce.search.snapshot-path:data/product-search.snapshot}") String snapshotPath) {
+        this.productRepository = productRepository;
+        this.snapshotPath = Paths.get(snapshotPath);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void load() {
+        long start = System.currentTimeMillis();
+        LocalDateTime started = LocalDateTime.now();
+        try {
+            List<SearchDocument> snapshot = readSnapshot();
+            if (snapshot == null) {
+                rebuild();
+            } else {
+                snapshot.forEach(this::putIfNewer);
+                reconcile(started);
+            }
+            watermark = started;
+            ready = true;
+            endPass();
+            log.info("Product search index ready with {} products in {} ms",
+                tenants.values().stream().mapToInt(TenantSearchIndex::size).sum(),
+                System.currentTimeMillis() - start);
+        } catch (RuntimeException e) {
+            log.error("Failed to build product search index, searches will use the database", e);
+        }
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public SearchResult search(UUID tenantId, SearchQuery query) {
+        TenantSearchIndex index = tenants.get(tenantId);
+        if (index == null) {
+            return new SearchResult(List.of(), List.of(), 0, Map.of(), Map.of());
+        }
+        return index.search(query);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onProductChanged(ProductIndexEvent event) {
+        if (event.tenantId() == null) {
+            return;
+        }
+        if (event.product() == null) {
+            if (loading) {
+                deletedDuringLoad.add(event.productId());
+            }
+            TenantSearchIndex index = tenants.get(event.tenantId());
+            if (index != null) {
+                index.remove(event.productId());
+            }
+        } else {
+            tenants.computeIfAbsent(event.tenantId(), id -> new TenantSearchIndex())
+                .put(SearchDocument.of(event.product()));
+        }
+        dirty.set(true);
+    }
+
+    /**
+     * Re-reads the products updated since the last sync, catching up with writes
+     * made through other instances.
+     */
+    @Scheduled(fixedDelayString = "${ecommerce.search.sync-interval-ms:30000}")
+    public synchronized void sync() {
+        if (!ready) {
+            return;
+        }
+        LocalDateTime started = LocalDateTime.now();
+        LocalDateTime updatedAt = watermark.minus(SYNC_OVERLAP);
+        UUID id = MIN_ID;
+        int synced = 0;
+        loading = true;
+        try {
+            List<Product> products;
+            do {
+                products = productRepository.findUpdatedAfter(updatedAt, id, PageRequest.of(0, LOAD_BATCH_SIZE));
+                for (Product product : products) {
+                    putIfNewer(SearchDocument.of(product));
+                    updatedAt = product.getUpdatedAt();
+                    id = product.getId();
+                }
+                synced += products.size();
+            } while (products.size() == LOAD_BATCH_SIZE);
+            watermark = started;
+        } catch (RuntimeException e) {
+            log.warn("Failed to sync product search index, will retry", e);
+        } finally {
+            endPass();
+        }
+        if (synced > 0) {
+            dirty.set(true);
+        }
+    }
+
+    /**
+     * Full comparison with the database, which also drops products deleted through
+     * other instances; the incremental sync cannot see deletions.
+     */
+    @Scheduled(initialDelayString = "${ecommerce.search.reconcile-interval-ms:600000}",
+               fixedDelayString = "${ecommerce.search.reconcile-interval-ms:600000}")
+    public synchronized void reconcile() {
+        if (!ready) {
+            return;
+        }
+        loading = true;
+        try {
+            reconcile(LocalDateTime.now());
+        } catch (RuntimeException e) {
+            log.warn("Failed to reconcile product search index, will retry", e);
+        } finally {
+            endPass();
+        }
+    }
+
+    private void endPass() {
+        loading = false;
+        deletedDuringLoad.clear();
+    }
+
+    @Scheduled(fixedDelayString = "${ecommerce.search.snapshot-interval-ms:300000}")
+    public void snapshot() {
+        if (!ready || !dirty.getAndSet(false)) {
+            return;
+        }
+        try {
+            writeSnapshot();
+        } catch (IOException e) {
+            dirty.set(true);
+            log.warn("Failed to write product search snapshot to {}", snapshotPath, e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        snapshot();
+    }
+
+    private void rebuild() {
+        int page = 0;
+        Page<Product> products;
+        do {
+            products = productRepository.findAll(PageRequest.of(page++, LOAD_BATCH_SIZE, Sort.by("id")));
+            products.forEach(product -> putIfNewer(SearchDocument.of(product)));
+        } while (products.hasNext());
+        dirty.set(true);
+    }
+
+    // Drops entries that were deleted since and re-reads the ones that changed. Entries
+    // indexed from writes after started may be missing from the states and are kept.
+    private void reconcile(LocalDateTime started) {
+        Map<UUID, ProductIndexState> states = new HashMap<>();
+        productRepository.findIndexStates().forEach(state -> states.put(state.getId(), state));
+        for (TenantSearchIndex index : tenants.values()) {
+            for (SearchDocument document : index.documents()) {
+                if (!states.containsKey(document.id()) && isBefore(document.updatedAt(), started)) {
+                    index.remove(document.id());
+                    dirty.set(true);
+                }
+            }
+        }
+        List<UUID> stale = new ArrayList<>();
+        for (ProductIndexState state : states.values()) {
+            TenantSearchIndex index = state.getTenantId() == null ? null : tenants.get(state.getTenantId());
+            SearchDocument indexed = index == null ? null : index.get(state.getId());
+            if (indexed == null || isBefore(indexed.updatedAt(), state.getUpdatedAt())) {
+                stale.add(state.getId());
+            }
+        }
+        for (int i = 0; i < stale.size(); i += LOAD_BATCH_SIZE) {
+            productRepository.findAllById(stale.subList(i, Math.min(stale.size(), i + LOAD_BATCH_SIZE)))
+                .forEach(product -> putIfNewer(SearchDocument.of(product)));
+        }
+        if (!stale.isEmpty()) {
+            dirty.set(true);
+        }
+    }
+
+    // Loading races with live updates; never let an older copy replace a newer one
+    private void putIfNewer(SearchDocument document) {
+        if (document.tenantId() == null || deletedDuringLoad.contains(document.id())) {
+            return;
+        }
+        TenantSearchIndex index = tenants.computeIfAbsent(document.tenantId(), id -> new TenantSearchIndex());
+        SearchDocument current = index.get(document.id());
+        if (current == null || !isBefore(document.updatedAt(), current.updatedAt())) {
+            index.put(document);
+        }
+    }
+
+    private static boolean isBefore(LocalDateTime a, LocalDateTime b) {
+        return b != null && (a == null || a.isBefore(b));
+    }
+
+    private void writeSnapshot() throws IOException {
+        Path parent = snapshotPath.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Path temp = snapshotPath.resolveSibling(snapshotPath.getFileName() + ".tmp");
+        List<SearchDocument> documents = new ArrayList<>();
+        tenants.values().forEach(index -> documents.addAll(index.documents()));
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new GZIPOutputStream(Files.newOutputStream(temp))))) {
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeInt(SNAPSHOT_VERSION);
+            out.writeInt(documents.size());
+            for (SearchDocument document : documents) {
+                writeString(out, document.id().toString());
+                writeString(out, document.tenantId().toString());
+                writeString(out, document.name());
+                writeString(out, document.description());
+                writeString(out, document.searchKeywords());
+                writeString(out, document.category());
+                writeString(out, document.tags());
+                writeString(out, document.status());
+                writeString(out, document.updatedAt() != null ? document.updatedAt().toString() : null);
+            }
+        }
+        Files.move(temp, snapshotPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        log.debug("Wrote product search snapshot with {} products", documents.size());
+    }
+
+    private List<SearchDocument> readSnapshot() {
+        if (!Files.isRegularFile(snapshotPath)) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new GZIPInputStream(Files.newInputStream(snapshotPath))))) {
+            if (in.readInt() != SNAPSHOT_MAGIC || in.readInt() != SNAPSHOT_VERSION) {
+                log.warn("Ignoring product search snapshot {} with an unknown format", snapshotPath);
+                return null;
+            }
+            int count = in.readInt();
+            List<SearchDocument> documents = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                UUID id = UUID.fromString(readString(in));
+                UUID tenantId = UUID.fromString(readString(in));
+                String name = readString(in);
+                String description = readString(in);
+                String searchKeywords = readString(in);
+                String category = readString(in);
+                String tags = readString(in);
+                String status = readString(in);
+                String updatedAt = readString(in);
+                documents.add(new SearchDocument(id, tenantId, name, description, searchKeywords, category, tags,
+                    status, updatedAt != null ? LocalDateTime.parse(updatedAt) : null));
+            }
+            return documents;
+        } catch (IOException | RuntimeException e) {
+            log.warn("Ignoring unreadable product search snapshot {}", snapshotPath, e);
+            return null;
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
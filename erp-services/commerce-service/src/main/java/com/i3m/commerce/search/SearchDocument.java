@@ -0,0 +1,21 @@
+package com.i3m.commerce.search;
+
+import com.i3m.commerce.model.Product;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * The product fields the search index is built from; also the unit written to
+ * the on-disk snapshot.
+ */
+public record SearchDocument(UUID id, UUID tenantId, String name, String description,
+                             String searchKeywords, String category, String tags,
+                             String status, LocalDateTime updatedAt) {
+
+    public static SearchDocument of(Product product) {
+        return new SearchDocument(product.getId(), product.getTenantId(), product.getName(),
+            product.getDescription(), product.getSearchKeywords(), product.getCategory(), product.getTags(),
+            product.getStatus() != null ? product.getStatus().name() : null, product.getUpdatedAt());
+    }
+}
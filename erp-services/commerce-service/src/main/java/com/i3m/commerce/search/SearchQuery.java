@@ -0,0 +1,6 @@
+package com.i3m.commerce.search;
+
+/**
+ * A catalog search. Null filters are not applied.
+ */
+public record SearchQuery(String text, String category, String tag, String status, int offset, int limit) {}
@@ -0,0 +1,12 @@
+package com.i3m.commerce.search;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Ranked product ids for one page, the total number of matches, and category
+ * and tag counts over all matches.
+ */
+public record SearchResult(List<UUID> productIds, List<Double> scores, long total,
+                           Map<String, Long> categories, Map<String, Long> tags) {}
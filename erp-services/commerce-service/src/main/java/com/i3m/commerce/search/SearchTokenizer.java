@@ -0,0 +1,50 @@
+package com.i3m.commerce.search;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Splits product text into lower-case, accent-folded terms, so "Điện Thoại"
+ * and "dien thoai" index and query the same way.
+ */
+public final class SearchTokenizer {
+
+    public static final int NGRAM_LENGTH = 3;
+
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private SearchTokenizer() {}
+
+    public static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null || text.isBlank()) {
+            return tokens;
+        }
+        String folded = MARKS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("")
+            .replace('\u0111', 'd').replace('\u0110', 'D')
+            .toLowerCase(Locale.ROOT);
+        for (String token : SEPARATORS.split(folded)) {
+            if (!token.isEmpty()) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * Character n-grams of a term, used to find terms containing a query fragment.
+     */
+    public static Set<String> ngrams(String term) {
+        Set<String> grams = new LinkedHashSet<>();
+        for (int i = 0; i + NGRAM_LENGTH <= term.length(); i++) {
+            grams.add(term.substring(i, i + NGRAM_LENGTH));
+        }
+        return grams;
+    }
+}
@@ -0,0 +1,303 @@
+package com.i3m.commerce.search;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Inverted index over one tenant's products. Each query term matches indexed
+ * terms exactly, by prefix, and by substring through an n-gram index, at
+ * decreasing weights; documents must match every query term and are ranked
+ * with BM25 over field-boosted term frequencies.
+ */
+class TenantSearchIndex {
+
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+    private static final double PREFIX_WEIGHT = 0.7;
+    private static final double INFIX_WEIGHT = 0.4;
+    private static final int MAX_EXPANSIONS = 64;
+
+    private static final int NAME_BOOST = 3;
+    private static final int KEYWORD_BOOST = 2;
+    private static final int TAG_BOOST = 2;
+    private static final int CATEGORY_BOOST = 1;
+    private static final int DESCRIPTION_BOOST = 1;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<UUID, Integer> ordinals = new HashMap<>();
+    private final Map<Integer, Entry> entries = new HashMap<>();
+    // term -> (document ordinal -> boosted term frequency); sorted for prefix lookups
+    private final NavigableMap<String, Map<Integer, Integer>> postings = new TreeMap<>();
+    private final Map<String, Set<String>> termsByNgram = new HashMap<>();
+    private long totalLength;
+    private int nextOrdinal;
+
+    void put(SearchDocument document) {
+        Map<String, Integer> terms = new HashMap<>();
+        addTerms(terms, document.name(), NAME_BOOST);
+        addTerms(terms, document.searchKeywords(), KEYWORD_BOOST);
+        addTerms(terms, document.tags(), TAG_BOOST);
+        addTerms(terms, document.category(), CATEGORY_BOOST);
+        addTerms(terms, document.description(), DESCRIPTION_BOOST);
+        int length = terms.values().stream().mapToInt(Integer::intValue).sum();
+
+        lock.writeLock().lock();
+        try {
+            removeLocked(document.id());
+            int ordinal = nextOrdinal++;
+            ordinals.put(document.id(), ordinal);
+            entries.put(ordinal, new Entry(document, terms, length, splitTags(document.tags())));
+            totalLength += length;
+            terms.forEach((term, frequency) -> {
+                Map<Integer, Integer> docs = postings.get(term);
+                if (docs == null) {
+                    docs = new HashMap<>();
+                    postings.put(term, docs);
+                    for (String gram : SearchTokenizer.ngrams(term)) {
+                        termsByNgram.computeIfAbsent(gram, g -> new HashSet<>()).add(term);
+                    }
+                }
+                docs.put(ordinal, frequency);
+            });
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void remove(UUID productId) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(productId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    SearchDocument get(UUID productId) {
+        lock.readLock().lock();
+        try {
+            Integer ordinal = ordinals.get(productId);
+            return ordinal == null ? null : entries.get(ordinal).document;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    List<SearchDocument> documents() {
+        lock.readLock().lock();
+        try {
+            return entries.values().stream().map(entry -> entry.document).toList();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    int size() {
+        lock.readLock().lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    SearchResult search(SearchQuery query) {
+        List<String> queryTerms = SearchTokenizer.tokenize(query.text()).stream().distinct().toList();
+        lock.readLock().lock();
+        try {
+            Map<Integer, Double> scores = null;
+            double averageLength = entries.isEmpty() ? 1 : (double) totalLength / entries.size();
+            for (String queryTerm : queryTerms) {
+                Map<Integer, Double> termScores = scoreTerm(queryTerm, averageLength);
+                if (scores == null) {
+                    scores = termScores;
+                } else {
+                    // Every query term has to match
+                    Map<Integer, Double> both = new HashMap<>();
+                    for (Map.Entry<Integer, Double> score : scores.entrySet()) {
+                        Double other = termScores.get(score.getKey());
+                        if (other != null) {
+                            both.put(score.getKey(), score.getValue() + other);
+                        }
+                    }
+                    scores = both;
+                }
+                if (scores.isEmpty()) {
+                    break;
+                }
+            }
+            if (scores == null) {
+                scores = Map.of();
+            }
+
+            List<Map.Entry<Integer, Double>> matches = new ArrayList<>();
+            Map<String, Long> categories = new HashMap<>();
+            Map<String, Long> tags = new HashMap<>();
+            for (Map.Entry<Integer, Double> score : scores.entrySet()) {
+                Entry entry = entries.get(score.getKey());
+                if (!entry.matches(query)) {
+                    continue;
+                }
+                matches.add(score);
+                if (entry.document.category() != null) {
+                    categories.merge(entry.document.category(), 1L, Long::sum);
+                }
+                entry.tags.forEach(tag -> tags.merge(tag, 1L, Long::sum));
+            }
+            matches.sort(Map.Entry.<Integer, Double>comparingByValue().reversed()
+                .thenComparing(match -> entries.get(match.getKey()).document.id()));
+
+            List<UUID> ids = new ArrayList<>();
+            List<Double> pageScores = new ArrayList<>();
+            int end = (int) Math.min(matches.size(), (long) query.offset() + query.limit());
+            for (int i = query.offset(); i < end; i++) {
+                ids.add(entries.get(matches.get(i).getKey()).document.id());
+                pageScores.add(matches.get(i).getValue());
+            }
+            return new SearchResult(ids, pageScores, matches.size(), byCount(categories), byCount(tags));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Best BM25 score per document over the terms the query term expands to
+    private Map<Integer, Double> scoreTerm(String queryTerm, double averageLength) {
+        Map<String, Double> expansions = new LinkedHashMap<>();
+        if (postings.containsKey(queryTerm)) {
+            expansions.put(queryTerm, 1.0);
+        }
+        for (String term : postings.subMap(queryTerm, false, queryTerm + Character.MAX_VALUE, false).keySet()) {
+            if (expansions.size() >= MAX_EXPANSIONS) {
+                break;
+            }
+            expansions.putIfAbsent(term, PREFIX_WEIGHT);
+        }
+        if (queryTerm.length() >= SearchTokenizer.NGRAM_LENGTH) {
+            for (String term : termsContaining(queryTerm)) {
+                if (expansions.size() >= MAX_EXPANSIONS) {
+                    break;
+                }
+                expansions.putIfAbsent(term, INFIX_WEIGHT);
+            }
+        }
+
+        Map<Integer, Double> scores = new HashMap<>();
+        int documentCount = entries.size();
+        expansions.forEach((term, weight) -> {
+            Map<Integer, Integer> docs = postings.get(term);
+            double idf = Math.log(1 + (documentCount - docs.size() + 0.5) / (docs.size() + 0.5));
+            docs.forEach((ordinal, frequency) -> {
+                double norm = K1 * (1 - B + B * entries.get(ordinal).length / averageLength);
+                double score = weight * idf * frequency * (K1 + 1) / (frequency + norm);
+                scores.merge(ordinal, score, Math::max);
+            });
+        });
+        return scores;
+    }
+
+    private Collection<String> termsContaining(String fragment) {
+        Set<String> candidates = null;
+        for (String gram : SearchTokenizer.ngrams(fragment)) {
+            Set<String> terms = termsByNgram.get(gram);
+            if (terms == null) {
+                return List.of();
+            }
+            if (candidates == null) {
+                candidates = new HashSet<>(terms);
+            } else {
+                candidates.retainAll(terms);
+            }
+        }
+        List<String> matches = new ArrayList<>();
+        for (String term : candidates) {
+            // Grams can all occur without forming the fragment
+            if (term.contains(fragment)) {
+                matches.add(term);
+            }
+        }
+        return matches;
+    }
+
+    private void removeLocked(UUID productId) {
+        Integer ordinal = ordinals.remove(productId);
+        if (ordinal == null) {
+            return;
+        }
+        Entry entry = entries.remove(ordinal);
+        totalLength -= entry.length;
+        for (String term : entry.terms.keySet()) {
+            Map<Integer, Integer> docs = postings.get(term);
+            docs.remove(ordinal);
+            if (docs.isEmpty()) {
+                postings.remove(term);
+                for (String gram : SearchTokenizer.ngrams(term)) {
+                    Set<String> terms = termsByNgram.get(gram);
+                    terms.remove(term);
+                    if (terms.isEmpty()) {
+                        termsByNgram.remove(gram);
+                    }
+                }
+            }
+        }
+    }
+
+    private static void addTerms(Map<String, Integer> terms, String text, int boost) {
+        for (String token : SearchTokenizer.tokenize(text)) {
+            terms.merge(token, boost, Integer::sum);
+        }
+    }
+
+    static List<String> splitTags(String tags) {
+        List<String> result = new ArrayList<>();
+        if (tags == null) {
+            return result;
+        }
+        for (String tag : tags.split(",")) {
+            String trimmed = tag.trim();
+            if (!trimmed.isEmpty() && !result.contains(trimmed)) {
+                result.add(trimmed);
+            }
+        }
+        return result;
+    }
+
+    private static Map<String, Long> byCount(Map<String, Long> counts) {
+        Map<String, Long> sorted = new LinkedHashMap<>();
+        counts.entrySet().stream()
+            .sorted(Map.Entry.<String, Long>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()))
+            .forEach(count -> sorted.put(count.getKey(), count.getValue()));
+        return sorted;
+    }
+
+    private static final class Entry {
+
+        final SearchDocument document;
+        final Map<String, Integer> terms;
+        final int length;
+        final List<String> tags;
+
+        Entry(SearchDocument document, Map<String, Integer> terms, int length, List<String> tags) {
+            this.document = document;
+            this.terms = terms;
+            this.length = length;
+            this.tags = tags;
+        }
+
+        boolean matches(SearchQuery query) {
+            return (query.category() == null || query.category().equals(document.category()))
+                && (query.status() == null || query.status().equals(document.status()))
+                && (query.tag() == null || tags.contains(query.tag()));
+        }
+    }
+}
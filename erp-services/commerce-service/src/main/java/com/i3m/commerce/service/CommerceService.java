@@ -1,22 +1,38 @@
 package com.i3m.commerce.service;
 
+import com.i3m.commerce.dto.CartDto;
 import com.i3m.commerce.dto.ProductDto;
 import com.i3m.commerce.dto.OrderDto;
+import com.i3m.commerce.dto.OrderHistoryPageDto;
+import com.i3m.commerce.dto.ProductSearchResultDto;
+import com.i3m.commerce.inventory.Reservation;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 public interface CommerceService {
     
     // Product Management
     ProductDto createProduct(ProductDto productDto);
+    ProductDto createProduct(UUID tenantId, ProductDto productDto);
     ProductDto getProductById(UUID id);
     Page<ProductDto> getAllProducts(Pageable pageable);
+    Page<ProductDto> getProducts(UUID tenantId, String category, String status, String search, Pageable pageable);
+    Slice<ProductDto> getProductSlice(UUID tenantId, String category, String status, String search, Pageable pageable);
     ProductDto updateProduct(UUID id, ProductDto productDto);
     void deleteProduct(UUID id);
-    List<ProductDto> searchProducts(String query);
+    ProductSearchResultDto searchProducts(UUID tenantId, String query, String category, String tag,
+                                          String status, Pageable pageable);
+    
+    // Inventory
+    ProductDto updateInventory(UUID tenantId, UUID id, Integer quantity);
+    Reservation reserveInventory(UUID tenantId, UUID productId, Integer quantity, Long ttlSeconds);
+    boolean commitReservation(UUID tenantId, UUID reservationId);
+    boolean releaseReservation(UUID tenantId, UUID reservationId);
     
     // Order Management
     OrderDto createOrder(OrderDto orderDto);
@@ -24,7 +40,14 @@ public interface CommerceService {
     Page<OrderDto> getAllOrders(Pageable pageable);
     OrderDto updateOrder(UUID id, OrderDto orderDto);
     void deleteOrder(UUID id);
-    List<OrderDto> getOrdersByCustomerId(UUID customerId);
+    OrderHistoryPageDto getOrdersByCustomerId(UUID tenantId, UUID customerId, String cursor, int size);
     OrderDto updateOrderStatus(UUID id, String newStatus);
     OrderDto updatePaymentStatus(UUID id, String newStatus);
+    
+    // Cart
+    Map<String, Object> addToCart(UUID tenantId, UUID productId, Integer quantity, String sessionId);
+    CartDto getCart(UUID tenantId, String sessionId);
+    CartDto updateCartItem(UUID tenantId, String sessionId, UUID productId, Integer quantity);
+    CartDto getUserCart(UUID tenantId, UUID userId);
+    CartDto mergeCart(UUID tenantId, String sessionId, UUID userId);
 }
@@ -1,21 +1,46 @@
 package com.i3m.commerce.service.impl;
 
+import com.i3m.commerce.cart.CartStore;
+import com.i3m.commerce.dto.CartDto;
 import com.i3m.commerce.dto.OrderDto;
+import com.i3m.commerce.dto.OrderHistoryPageDto;
+import com.i3m.commerce.dto.OrderSummaryDto;
 import com.i3m.commerce.dto.ProductDto;
+import com.i3m.commerce.dto.ProductSearchResultDto;
+import com.i3m.commerce.inventory.InventoryReservationEngine;
+import com.i3m.commerce.inventory.Reservation;
 import com.i3m.commerce.model.Order;
 import com.i3m.commerce.model.Product;
 import com.i3m.commerce.repository.OrderRepository;
 import com.i3m.commerce.repository.ProductRepository;
+import com.i3m.commerce.repository.ProductSpecifications;
+import com.i3m.commerce.search.ProductIndexEvent;
+import com.i3m.commerce.search.ProductSearchIndex;
+import com.i3m.commerce.search.SearchQuery;
+import com.i3m.commerce.search.SearchResult;
 import com.i3m.commerce.service.CommerceService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Base64;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.UUID;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
@@ -27,19 +52,40 @@ public class CommerceServiceImpl implements CommerceService {
     
     @Autowired
     private OrderRepository orderRepository;
+    
+    @Autowired
+    private ProductSearchIndex productSearchIndex;
+    
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+    
+    @Autowired
+    private InventoryReservationEngine inventoryEngine;
+    
+    @Autowired
+    private CartStore cartStore;
+    
+    private static final int MAX_ORDER_HISTORY_PAGE = 100;
 
     @Override
     public ProductDto createProduct(ProductDto productDto) {
-        Product product = new Product();
+        return createProduct(new Product(), productDto);
+    }
+
+    private ProductDto createProduct(Product product, ProductDto productDto) {
         product.setName(productDto.getName());
         product.setDescription(productDto.getDescription());
         product.setPrice(productDto.getPrice());
         product.setCategory(productDto.getCategory());
         product.setSku(productDto.getSku());
+        // Initial stock only: a new product has no inventory counter yet
         product.setQuantityInStock(productDto.getQuantityInStock());
+        product.setTags(productDto.getTags());
+        product.setSearchKeywords(productDto.getSearchKeywords());
         product.setStatus(Product.ProductStatus.valueOf(productDto.getStatus() != null ? productDto.getStatus() : "DRAFT"));
         
         Product savedProduct = productRepository.save(product);
+        eventPublisher.publishEvent(ProductIndexEvent.saved(savedProduct));
         return convertToDto(savedProduct);
     }
 
@@ -66,21 +112,49 @@ public class CommerceServiceImpl implements CommerceService {
         product.setPrice(productDto.getPrice());
         product.setCategory(productDto.getCategory());
         product.setSku(productDto.getSku());
-        product.setQuantityInStock(productDto.getQuantityInStock());
+        // Stock is changed only through updateInventory
+        product.setTags(productDto.getTags());
+        product.setSearchKeywords(productDto.getSearchKeywords());
         
         Product savedProduct = productRepository.save(product);
+        eventPublisher.publishEvent(ProductIndexEvent.saved(savedProduct));
         return convertToDto(savedProduct);
     }
 
     @Override
     public void deleteProduct(UUID id) {
-        productRepository.deleteById(id);
+        productRepository.findById(id).ifPresent(product -> {
+            productRepository.delete(product);
+            eventPublisher.publishEvent(ProductIndexEvent.deleted(product.getTenantId(), id));
+        });
     }
 
     @Override
-    public List<ProductDto> searchProducts(String query) {
-        // This would need a custom search implementation
-        return List.of();
+    @Transactional(readOnly = true)
+    public ProductSearchResultDto searchProducts(UUID tenantId, String query, String category, String tag,
+                                                 String status, Pageable pageable) {
+        if (query == null || query.isBlank()) {
+            throw new IllegalArgumentException("Search query is required");
+        }
+        if (!productSearchIndex.isReady()) {
+            // Index still loading: answer from the database with the same filters, without facets
+            Page<ProductDto> page = productRepository.findAll(
+                    productFilter(tenantId, category, status, query).and(ProductSpecifications.hasTag(tag)), pageable)
+                .map(this::convertToDto);
+            return new ProductSearchResultDto(page.getContent(), page.getTotalElements(), Map.of());
+        }
+        
+        SearchResult result = productSearchIndex.search(tenantId, new SearchQuery(query, category, tag,
+            status != null ? status.toUpperCase() : null, (int) pageable.getOffset(), pageable.getPageSize()));
+        Map<UUID, Product> products = productRepository.findAllById(result.productIds()).stream()
+            .collect(Collectors.toMap(Product::getId, Function.identity()));
+        List<ProductDto> hits = result.productIds().stream()
+            .map(products::get)
+            .filter(Objects::nonNull)
+            .map(this::convertToDto)
+            .toList();
+        return new ProductSearchResultDto(hits, result.total(),
+            Map.of("category", result.categories(), "tags", result.tags()));
     }
 
     @Override
@@ -125,11 +199,28 @@ public class CommerceServiceImpl implements CommerceService {
     }
 
     @Override
-    public List<OrderDto> getOrdersByCustomerId(UUID customerId) {
-        List<Order> orders = orderRepository.findAll().stream()
-            .filter(order -> order.getCustomerId() != null && order.getCustomerId().equals(customerId))
-            .collect(Collectors.toList());
-        return orders.stream().map(this::convertToDto).collect(Collectors.toList());
+    @Transactional(readOnly = true)
+    public OrderHistoryPageDto getOrdersByCustomerId(UUID tenantId, UUID customerId, String cursor, int size) {
+        if (size < 1 || size > MAX_ORDER_HISTORY_PAGE) {
+            throw new IllegalArgumentException("Page size must be between 1 and " + MAX_ORDER_HISTORY_PAGE);
+        }
+        // One extra row tells whether another page follows, without a count query
+        Pageable limit = PageRequest.of(0, size + 1);
+        List<OrderSummaryDto> orders;
+        if (cursor == null || cursor.isEmpty()) {
+            orders = orderRepository.findOrderHistory(tenantId, customerId, limit);
+        } else {
+            String[] position = decodeCursor(cursor);
+            orders = orderRepository.findOrderHistoryBefore(tenantId, customerId,
+                LocalDateTime.parse(position[0]), UUID.fromString(position[1]), limit);
+        }
+        
+        boolean hasMore = orders.size() > size;
+        if (hasMore) {
+            orders = orders.subList(0, size);
+        }
+        OrderSummaryDto last = hasMore ? orders.get(orders.size() - 1) : null;
+        return new OrderHistoryPageDto(orders, last != null ? encodeCursor(last) : null, hasMore);
     }
 
     @Override
@@ -153,12 +244,46 @@ public class CommerceServiceImpl implements CommerceService {
     }
 
     // Additional methods for CommerceController
+    @Override
     public ProductDto createProduct(UUID tenantId, ProductDto productDto) {
-        return createProduct(productDto);
+        Product product = new Product();
+        product.setTenantId(tenantId);
+        return createProduct(product, productDto);
     }
 
+    @Override
+    @Transactional(readOnly = true)
     public Page<ProductDto> getProducts(UUID tenantId, String category, String status, String search, Pageable pageable) {
-        return getAllProducts(pageable);
+        return productRepository.findAll(productFilter(tenantId, category, status, search), newestFirst(pageable))
+            .map(this::convertToDto);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Slice<ProductDto> getProductSlice(UUID tenantId, String category, String status, String search, Pageable pageable) {
+        return productRepository.findSlice(productFilter(tenantId, category, status, search), newestFirst(pageable))
+            .map(this::convertToDto);
+    }
+
+    private Specification<Product> productFilter(UUID tenantId, String category, String status, String search) {
+        Product.ProductStatus productStatus = null;
+        if (status != null && !status.isBlank()) {
+            try {
+                productStatus = Product.ProductStatus.valueOf(status.toUpperCase());
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown product status: " + status);
+            }
+        }
+        return ProductSpecifications.filter(tenantId, category, productStatus, search);
+    }
+
+    // Unsorted requests get a stable order that the listing indexes can serve
+    private Pageable newestFirst(Pageable pageable) {
+        if (pageable.isUnpaged() || pageable.getSort().isSorted()) {
+            return pageable;
+        }
+        return PageRequest.of(pageable.getPageNumber(), pageable.getPageSize(),
+            Sort.by(Sort.Direction.DESC, "createdAt").and(Sort.by(Sort.Direction.DESC, "id")));
     }
 
     public ProductDto getProduct(UUID tenantId, UUID id) {
@@ -173,9 +298,35 @@ public class CommerceServiceImpl implements CommerceService {
         deleteProduct(id);
     }
 
+    @Override
     public ProductDto updateInventory(UUID tenantId, UUID id, Integer quantity) {
-        // TODO: Implement inventory update
-        return new ProductDto();
+        if (quantity == null || quantity < 0) {
+            throw new IllegalArgumentException("Quantity must not be negative");
+        }
+        Product product = productRepository.findByIdAndTenantId(id, tenantId)
+            .orElseThrow(() -> new RuntimeException("Product not found"));
+        // Goes through the counter, which writes the change to Postgres with its next flush
+        inventoryEngine.setStock(tenantId, id, quantity);
+        ProductDto dto = convertToDto(product);
+        dto.setQuantityInStock(quantity);
+        return dto;
+    }
+
+    // Checkout goes through the reservation engine rather than read-modify-write on the product row
+    @Override
+    @Transactional(readOnly = true)
+    public Reservation reserveInventory(UUID tenantId, UUID productId, Integer quantity, Long ttlSeconds) {
+        return inventoryEngine.reserve(tenantId, productId, quantity != null ? quantity : 1, ttlSeconds);
+    }
+
+    @Override
+    public boolean commitReservation(UUID tenantId, UUID reservationId) {
+        return inventoryEngine.commit(tenantId, reservationId);
+    }
+
+    @Override
+    public boolean releaseReservation(UUID tenantId, UUID reservationId) {
+        return inventoryEngine.release(tenantId, reservationId);
     }
 
     public OrderDto createOrder(UUID tenantId, OrderDto orderDto) {
@@ -209,14 +360,107 @@ public class CommerceServiceImpl implements CommerceService {
         return Map.of("status", "ok");
     }
 
-    public Map<String, Object> addToCart(UUID productId, Integer quantity, String sessionId) {
-        // TODO: Implement add to cart
-        return Map.of("status", "ok");
+    @Override
+    public Map<String, Object> addToCart(UUID tenantId, UUID productId, Integer quantity, String sessionId) {
+        if (quantity == null || quantity == 0) {
+            throw new IllegalArgumentException("Quantity must not be zero");
+        }
+        String session = sessionId != null && !sessionId.isBlank() ? sessionId : UUID.randomUUID().toString();
+        long[] result = cartStore.add(guestCart(tenantId, session), productId, quantity);
+        return Map.of(
+            "sessionId", session,
+            "productId", productId,
+            "quantity", result[0],
+            "itemsCount", result[1]);
     }
 
-    public Map<String, Object> getCart(String sessionId) {
-        // TODO: Implement get cart
-        return Map.of("status", "ok");
+    @Override
+    @Transactional(readOnly = true)
+    public CartDto getCart(UUID tenantId, String sessionId) {
+        return loadCart(tenantId, guestCart(tenantId, sessionId));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public CartDto updateCartItem(UUID tenantId, String sessionId, UUID productId, Integer quantity) {
+        if (quantity == null || quantity < 0) {
+            throw new IllegalArgumentException("Quantity must not be negative");
+        }
+        cartStore.set(guestCart(tenantId, sessionId), productId, quantity);
+        return loadCart(tenantId, guestCart(tenantId, sessionId));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public CartDto getUserCart(UUID tenantId, UUID userId) {
+        return loadCart(tenantId, userCart(tenantId, userId));
+    }
+
+    // On sign-in the guest cart is folded into the user's cart in one atomic step
+    @Override
+    @Transactional(readOnly = true)
+    public CartDto mergeCart(UUID tenantId, String sessionId, UUID userId) {
+        cartStore.merge(guestCart(tenantId, sessionId), userCart(tenantId, userId));
+        return loadCart(tenantId, userCart(tenantId, userId));
+    }
+
+    // Prices come from one product query and stock from one MGET, whatever the cart size.
+    // Only the tenant's own products are shown, whatever ids the cart holds.
+    private CartDto loadCart(UUID tenantId, String cartId) {
+        Map<UUID, Integer> items = cartStore.get(cartId);
+        if (items.isEmpty()) {
+            return new CartDto(cartId, List.of(), BigDecimal.ZERO);
+        }
+        Map<UUID, Product> products = productRepository.findByTenantIdAndIdIn(tenantId, items.keySet()).stream()
+            .collect(Collectors.toMap(Product::getId, Function.identity()));
+        Map<UUID, Long> available = inventoryEngine.available(products.values());
+        
+        List<CartDto.CartItemDto> lines = new ArrayList<>();
+        BigDecimal subtotal = BigDecimal.ZERO;
+        for (Map.Entry<UUID, Integer> item : items.entrySet()) {
+            Product product = products.get(item.getKey());
+            if (product == null) {
+                // Deleted since it was added, or not the tenant's
+                continue;
+            }
+            CartDto.CartItemDto line = new CartDto.CartItemDto(product.getId(), product.getName(),
+                item.getValue(), product.getPrice(), available.get(product.getId()));
+            if (line.getTotalPrice() != null) {
+                subtotal = subtotal.add(line.getTotalPrice());
+            }
+            lines.add(line);
+        }
+        return new CartDto(cartId, lines, subtotal);
+    }
+
+    // Cart keys are scoped by tenant, so one tenant's session or user id never reaches another's cart
+    private static String guestCart(UUID tenantId, String sessionId) {
+        return tenantId + ":session:" + sessionId;
+    }
+
+    private static String userCart(UUID tenantId, UUID userId) {
+        return tenantId + ":user:" + userId;
+    }
+    
+    // Order history cursors carry the (createdAt, id) of the last row returned
+    private String encodeCursor(OrderSummaryDto order) {
+        String position = order.getCreatedAt() + "|" + order.getId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(position.getBytes(StandardCharsets.UTF_8));
+    }
+    
+    private String[] decodeCursor(String cursor) {
+        try {
+            String position = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] parts = position.split("\\|", 2);
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+            LocalDateTime.parse(parts[0]);
+            UUID.fromString(parts[1]);
+            return parts;
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid cursor", e);
+        }
     }
     
     // Helper methods for conversion
@@ -229,6 +473,8 @@ public class CommerceServiceImpl implements CommerceService {
         dto.setCategory(product.getCategory());
         dto.setSku(product.getSku());
         dto.setQuantityInStock(product.getQuantityInStock());
+        dto.setTags(product.getTags());
+        dto.setSearchKeywords(product.getSearchKeywords());
         dto.setStatus(product.getStatus() != null ? product.getStatus().name() : "DRAFT");
         dto.setCreatedAt(product.getCreatedAt());
         dto.setUpdatedAt(product.getUpdatedAt());
@@ -4,10 +4,12 @@ import com.i3m.ecommerce.model.Product;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -19,6 +21,13 @@ public interface ProductRepository extends JpaRepository<Product, UUID> {
     
     Optional<Product> findByIdAndTenantId(UUID id, UUID tenantId);
     
+    // Writes only the stock column, so concurrent product edits are not overwritten
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE Product p SET p.quantityInStock = :quantity, p.updatedAt = :updatedAt " +
+           "WHERE p.id = :id AND p.tenantId = :tenantId")
+    int updateQuantityInStock(@Param("tenantId") UUID tenantId, @Param("id") UUID id,
+                              @Param("quantity") Integer quantity, @Param("updatedAt") LocalDateTime updatedAt);
+    
     Page<Product> findByTenantIdAndCategory(UUID tenantId, String category, Pageable pageable);
     
     Page<Product> findByTenantIdAndStatus(UUID tenantId, Product.ProductStatus status, Pageable pageable);
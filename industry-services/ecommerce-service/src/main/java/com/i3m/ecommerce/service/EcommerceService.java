@@ -11,12 +11,17 @@ import org.springframework.cache.annotation.Cacheable;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.GenericToStringSerializer;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.TimeUnit;
@@ -33,6 +38,15 @@ public class EcommerceService {
     
     @Autowired
     private RedisTemplate<String, Object> redisTemplate;
+    
+    // KEYS: cart; ARGV: product, quantity, ttl seconds. Returns the item count
+    private static final RedisScript<Long> SET_CART_ITEM = new DefaultRedisScript<>(
+        "redis.call('HSET', KEYS[1], ARGV[1], ARGV[2]) " +
+        "redis.call('EXPIRE', KEYS[1], ARGV[3]) " +
+        "return redis.call('HLEN', KEYS[1])", Long.class);
+    
+    private static final StringRedisSerializer STRING_SERIALIZER = StringRedisSerializer.UTF_8;
+    private static final GenericToStringSerializer<Long> LONG_SERIALIZER = new GenericToStringSerializer<>(Long.class);
 
     // Product Management
     public ProductDto createProduct(UUID tenantId, ProductDto dto) {
@@ -81,12 +95,10 @@ public class EcommerceService {
     }
 
     public ProductDto updateInventory(UUID tenantId, UUID id, Integer quantity) {
-        Product product = productRepository.findByIdAndTenantId(id, tenantId)
-            .orElseThrow(() -> new RuntimeException("Product not found"));
-        
-        product.setQuantityInStock(quantity);
-        Product updated = productRepository.save(product);
-        return convertProductToDto(updated);
+        if (productRepository.updateQuantityInStock(tenantId, id, quantity, LocalDateTime.now()) == 0) {
+            throw new RuntimeException("Product not found");
+        }
+        return getProduct(tenantId, id);
     }
 
     // Order Management
@@ -188,17 +200,15 @@ public class EcommerceService {
 
     // Cart Management (Redis-based)
     public Map<String, Object> addToCart(UUID productId, Integer quantity, String sessionId) {
-        String cartKey = "cart:" + (sessionId != null ? sessionId : UUID.randomUUID().toString());
-        
-        // Get current cart
-        Map<Object, Object> cart = redisTemplate.opsForHash().entries(cartKey);
-        cart.put(productId.toString(), quantity);
+        String session = sessionId != null ? sessionId : UUID.randomUUID().toString();
+        String cartKey = "cart:" + session;
         
-        // Save back to Redis with expiration
-        redisTemplate.opsForHash().putAll(cartKey, cart);
-        redisTemplate.expire(cartKey, 24, TimeUnit.HOURS);
+        // Set the one item and refresh the expiry in a single round trip
+        Long itemsCount = redisTemplate.execute(SET_CART_ITEM, STRING_SERIALIZER, LONG_SERIALIZER,
+            List.of(cartKey), productId.toString(), String.valueOf(quantity),
+            String.valueOf(TimeUnit.HOURS.toSeconds(24)));
         
-        return Map.of("sessionId", sessionId, "itemsCount", cart.size());
+        return Map.of("sessionId", session, "itemsCount", itemsCount != null ? itemsCount : 0L);
     }
 
     public Map<String, Object> getCart(String sessionId) {